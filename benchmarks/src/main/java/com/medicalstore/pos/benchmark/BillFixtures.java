@@ -0,0 +1,186 @@
+package com.medicalstore.pos.benchmark;
+
+import com.medicalstore.pos.dto.response.BillItemResponse;
+import com.medicalstore.pos.dto.response.BillResponse;
+import com.medicalstore.pos.dto.response.PaymentResponse;
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.Bill;
+import com.medicalstore.pos.entity.BillItem;
+import com.medicalstore.pos.entity.Medicine;
+import com.medicalstore.pos.entity.Payment;
+import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.service.BillingCalculator;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic bills for the benchmarks: realistic prices (₹5 - ₹500),
+ * the common GST slabs and small line quantities.
+ */
+public final class BillFixtures {
+    
+    private static final BigDecimal[] GST_SLABS = {
+            new BigDecimal("0.00"), new BigDecimal("5.00"), new BigDecimal("12.00"), new BigDecimal("18.00")
+    };
+    
+    private BillFixtures() {
+    }
+    
+    public static BigDecimal[] unitPrices(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BigDecimal[] prices = new BigDecimal[count];
+        for (int i = 0; i < count; i++) {
+            prices[i] = BigDecimal.valueOf(random.nextLong(500, 50_000), 2);
+        }
+        return prices;
+    }
+    
+    public static BigDecimal[] gstPercentages(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BigDecimal[] gst = new BigDecimal[count];
+        for (int i = 0; i < count; i++) {
+            gst[i] = GST_SLABS[random.nextInt(GST_SLABS.length)];
+        }
+        return gst;
+    }
+    
+    public static int[] quantities(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] quantities = new int[count];
+        for (int i = 0; i < count; i++) {
+            quantities[i] = random.nextInt(1, 11);
+        }
+        return quantities;
+    }
+    
+    /**
+     * A saved-looking bill entity (ids and timestamps set) with the given number of lines.
+     */
+    public static Bill bill(int items, long seed) {
+        BigDecimal[] prices = unitPrices(items, seed);
+        BigDecimal[] gst = gstPercentages(items, seed + 1);
+        int[] quantities = quantities(items, seed + 2);
+        
+        User cashier = User.builder()
+                .id(1L)
+                .username("cashier")
+                .fullName("Bench Cashier")
+                .role(User.Role.CASHIER)
+                .build();
+        
+        Bill bill = Bill.builder()
+                .id(1L)
+                .billNumber("BILL202401010001")
+                .billDate(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .cashier(cashier)
+                .customerName("Customer")
+                .customerPhone("9999999999")
+                .paymentStatus(Bill.PaymentStatus.PAID)
+                .cancelled(false)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .build();
+        
+        List<BillItem> billItems = new ArrayList<>(items);
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal totalGst = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            Medicine medicine = Medicine.builder()
+                    .id((long) i + 1)
+                    .name("Medicine " + (i + 1))
+                    .hsnCode("3004")
+                    .gstPercentage(gst[i])
+                    .build();
+            Batch batch = Batch.builder()
+                    .id((long) i + 1)
+                    .medicine(medicine)
+                    .batchNumber("B" + (1000 + i))
+                    .expiryDate(LocalDate.of(2030, 1, 1))
+                    .sellingPrice(prices[i])
+                    .build();
+            BigDecimal lineSubtotal = BillingCalculator.lineSubtotal(prices[i], quantities[i]);
+            BigDecimal gstAmount = BillingCalculator.gstAmount(lineSubtotal, gst[i]);
+            billItems.add(BillItem.builder()
+                    .id((long) i + 1)
+                    .bill(bill)
+                    .medicine(medicine)
+                    .batch(batch)
+                    .batchNumber(batch.getBatchNumber())
+                    .quantity(quantities[i])
+                    .unitPrice(prices[i])
+                    .gstPercentage(gst[i])
+                    .gstAmount(gstAmount)
+                    .totalAmount(lineSubtotal.add(gstAmount))
+                    .build());
+            subtotal = subtotal.add(lineSubtotal);
+            totalGst = totalGst.add(gstAmount);
+        }
+        bill.setBillItems(billItems);
+        bill.setSubtotal(subtotal);
+        bill.setTotalGst(totalGst);
+        bill.setTotalAmount(subtotal.add(totalGst));
+        
+        List<Payment> payments = new ArrayList<>();
+        payments.add(Payment.builder()
+                .id(1L)
+                .bill(bill)
+                .paymentReference("C-BENCH001")
+                .mode(Payment.PaymentMode.CASH)
+                .amount(bill.getTotalAmount())
+                .status(Payment.PaymentStatus.COMPLETED)
+                .paymentDate(bill.getBillDate())
+                .build());
+        bill.setPayments(payments);
+        return bill;
+    }
+    
+    /**
+     * The response DTO of {@link #bill(int, long)}, as handed to the PDF renderer.
+     */
+    public static BillResponse billResponse(int items, long seed) {
+        Bill bill = bill(items, seed);
+        List<BillItemResponse> itemResponses = new ArrayList<>(items);
+        for (BillItem item : bill.getBillItems()) {
+            itemResponses.add(BillItemResponse.builder()
+                    .id(item.getId())
+                    .medicineId(item.getMedicine().getId())
+                    .medicineName(item.getMedicine().getName())
+                    .batchNumber(item.getBatchNumber())
+                    .quantity(item.getQuantity())
+                    .unitPrice(item.getUnitPrice())
+                    .gstPercentage(item.getGstPercentage())
+                    .gstAmount(item.getGstAmount())
+                    .totalAmount(item.getTotalAmount())
+                    .build());
+        }
+        Payment payment = bill.getPayments().get(0);
+        return BillResponse.builder()
+                .id(bill.getId())
+                .billNumber(bill.getBillNumber())
+                .billDate(bill.getBillDate())
+                .cashierId(bill.getCashier().getId())
+                .cashierName(bill.getCashier().getFullName())
+                .customerName(bill.getCustomerName())
+                .customerPhone(bill.getCustomerPhone())
+                .subtotal(bill.getSubtotal())
+                .totalGst(bill.getTotalGst())
+                .totalAmount(bill.getTotalAmount())
+                .paymentStatus(bill.getPaymentStatus())
+                .cancelled(false)
+                .items(itemResponses)
+                .payments(List.of(PaymentResponse.builder()
+                        .id(payment.getId())
+                        .paymentReference(payment.getPaymentReference())
+                        .mode(payment.getMode())
+                        .amount(payment.getAmount())
+                        .status(payment.getStatus())
+                        .paymentDate(payment.getPaymentDate())
+                        .build()))
+                .createdAt(bill.getCreatedAt())
+                .build();
+    }
+}
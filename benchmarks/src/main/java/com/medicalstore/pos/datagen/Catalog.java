@@ -0,0 +1,30 @@
+package com.medicalstore.pos.datagen;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * In-memory view of the generated medicines and batches, indexed by Zipf rank.
+ * Batches of medicine m are at indexes [m * batchesPerMedicine, (m + 1) * batchesPerMedicine),
+ * ordered by expiry date.
+ */
+class Catalog {
+    
+    final long[] medicineIds;
+    final BigDecimal[] gstPercentage;
+    final long[] batchIds;
+    final String[] batchNumbers;
+    final LocalDate[] expiryDate;
+    final BigDecimal[] sellingPrice;
+    final int[] openingStock;
+    
+    Catalog(int medicines, int batches) {
+        this.medicineIds = new long[medicines];
+        this.gstPercentage = new BigDecimal[medicines];
+        this.batchIds = new long[batches];
+        this.batchNumbers = new String[batches];
+        this.expiryDate = new LocalDate[batches];
+        this.sellingPrice = new BigDecimal[batches];
+        this.openingStock = new int[batches];
+    }
+}
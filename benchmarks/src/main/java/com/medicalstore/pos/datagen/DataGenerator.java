@@ -0,0 +1,385 @@
+package com.medicalstore.pos.datagen;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.Medicine;
+import com.medicalstore.pos.service.SalesRollup;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk-loads a deterministic synthetic dataset with COPY: medicines, batches, unit barcodes,
+ * and a sales history of bills, bill items, payments and audit logs with Zipf-skewed SKUs.
+ * The same options and seed always produce the same rows. Batch stock is left at
+ * opening stock minus units sold, with one OPENING stock movement per batch holding that
+ * quantity so the stock ledger balances, and the medicines' stock summary columns filled in.
+ * Runs in one transaction on an existing schema.
+ */
+public class DataGenerator {
+    
+    private static final BigDecimal[] GST_SLABS = {
+            new BigDecimal("0.00"), new BigDecimal("5.00"), new BigDecimal("12.00"), new BigDecimal("18.00")
+    };
+    private static final double[] GST_WEIGHTS = {0.05, 0.25, 0.60, 0.10};
+    private static final String[] CATEGORIES = {
+            "Analgesic", "Antibiotic", "Antacid", "Antihistamine", "Antidiabetic", "Cardiac",
+            "Vitamin", "Dermatology", "Respiratory", "Ophthalmic"
+    };
+    private static final String[] IDENTITY_TABLES = {"medicines", "batches"};
+    // Pooled sequences (allocationSize 50) hand out max - 49..max, so they restart a full block above max(id)
+    private static final String[] POOLED_TABLES = {"stock_barcodes", "bills", "bill_items", "payments", "audit_logs"};
+    private static final int POOLED_ALLOCATION_SIZE = 50;
+    
+    private final DataGeneratorOptions options;
+    
+    public DataGenerator(DataGeneratorOptions options) {
+        this.options = options;
+    }
+    
+    /**
+     * Generates the dataset and commits. Returns the medicine ids by popularity (most sold first).
+     */
+    public Result generate(Connection connection) throws Exception {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            Result result = generateInTransaction(connection);
+            connection.commit();
+            return result;
+        } catch (Exception e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+    
+    private Result generateInTransaction(Connection connection) throws Exception {
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        LocalDate today = LocalDate.now();
+        LocalDateTime now = LocalDateTime.now();
+        Result result = new Result();
+        long start = System.nanoTime();
+        
+        if (options.isTruncate()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("TRUNCATE medicines, batches, stock_barcodes, bills, bill_items, payments, " +
+                        "audit_logs, returns, return_items, stock_movements, daily_sales_rollups, daily_gst_rollups " +
+                        "RESTART IDENTITY CASCADE");
+            }
+        }
+        
+        SalesSimulation.Ids ids = nextIds(connection);
+        ZipfSampler zipf = new ZipfSampler(options.getMedicines(), options.getZipfExponent());
+        Catalog catalog = buildCatalog(ids, zipf, today);
+        
+        try (CopyWriter medicines = new CopyWriter(copyManager, "medicines",
+                "id, name, manufacturer, category, barcode, hsn_code, gst_percentage, prescription_required, " +
+                "status, reorder_level, created_at, updated_at, version")) {
+            SplittableRandom random = new SplittableRandom(options.getSeed());
+            for (int m = 0; m < options.getMedicines(); m++) {
+                medicines.row(catalog.medicineIds[m], options.getTag() + " Medicine " + m,
+                        "Manufacturer " + (m % 200), CATEGORIES[m % CATEGORIES.length],
+                        options.getTag() + "-P" + m, options.getTag() + "-" + m, catalog.gstPercentage[m],
+                        random.nextInt(10) < 3, "ACTIVE", Medicine.DEFAULT_REORDER_LEVEL, now, now, 0);
+            }
+            result.medicines = medicines.getRows();
+        }
+        
+        try (CopyWriter batches = new CopyWriter(copyManager, "batches",
+                "id, medicine_id, batch_number, expiry_date, purchase_price, selling_price, quantity_available, " +
+                "expiry_status, created_at, updated_at, version")) {
+            for (int b = 0; b < catalog.batchIds.length; b++) {
+                int medicine = b / options.getBatchesPerMedicine();
+                BigDecimal purchasePrice = catalog.sellingPrice[b].multiply(new BigDecimal("0.80"))
+                        .setScale(2, RoundingMode.HALF_UP);
+                batches.row(catalog.batchIds[b], catalog.medicineIds[medicine], catalog.batchNumbers[b],
+                        catalog.expiryDate[b], purchasePrice, catalog.sellingPrice[b], catalog.openingStock[b],
+                        Batch.ExpiryStatus.of(catalog.expiryDate[b], today), now, now, 0);
+            }
+            result.batches = batches.getRows();
+        }
+        
+        if (options.getBarcodesPerBatch() > 0) {
+            try (CopyWriter barcodes = new CopyWriter(copyManager, "stock_barcodes",
+                    "id, batch_id, barcode, sold, created_at, updated_at")) {
+                long id = ids.stockBarcode;
+                for (int b = 0; b < catalog.batchIds.length; b++) {
+                    for (int unit = 0; unit < options.getBarcodesPerBatch(); unit++) {
+                        barcodes.row(id++, catalog.batchIds[b],
+                                options.getTag() + "-U" + catalog.batchIds[b] + "-" + unit, false, now, now);
+                    }
+                }
+                result.stockBarcodes = barcodes.getRows();
+            }
+        }
+        
+        if (options.getBills() > 0) {
+            long[] cashierIds = findCashierIds(connection);
+            SalesSimulation simulation = new SalesSimulation(options, catalog, cashierIds, zipf, today);
+            int[] remaining = writeSales(copyManager, simulation, ids, catalog, result);
+            updateStock(connection, catalog, remaining);
+        }
+        writeOpeningMovements(connection, ids.batch);
+        writeStockSummaries(connection, ids.medicine);
+        writeSalesRollups(connection, ids.bill);
+        
+        resetIdentities(connection);
+        
+        for (long id : catalog.medicineIds) {
+            result.medicineIds.add(id);
+        }
+        result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return result;
+    }
+    
+    private Catalog buildCatalog(SalesSimulation.Ids ids, ZipfSampler zipf, LocalDate today) {
+        int batchesPerMedicine = options.getBatchesPerMedicine();
+        Catalog catalog = new Catalog(options.getMedicines(), options.getMedicines() * batchesPerMedicine);
+        SplittableRandom random = new SplittableRandom(options.getSeed() + 1);
+        double expectedUnits = options.getBills() * SalesSimulation.meanLinesPerBill()
+                * SalesSimulation.meanQuantityPerLine();
+        
+        for (int m = 0; m < options.getMedicines(); m++) {
+            catalog.medicineIds[m] = ids.medicine + m;
+            catalog.gstPercentage[m] = GST_SLABS[pickGst(random)];
+            long basePaise = random.nextLong(300, 60_000);
+            // Demand-sized stock: 30% more than this medicine's expected sales, spread over its batches
+            int demandPerBatch = (int) Math.ceil(zipf.probability(m) * expectedUnits * 1.3 / batchesPerMedicine);
+            
+            for (int k = 0; k < batchesPerMedicine; k++) {
+                int b = m * batchesPerMedicine + k;
+                catalog.batchIds[b] = ids.batch + b;
+                catalog.batchNumbers[b] = options.getTag() + "B" + m + "-" + k;
+                boolean expired = k == 0 && random.nextDouble() < options.getExpiredBatchShare();
+                catalog.expiryDate[b] = expired
+                        ? today.minusDays(options.getDays() + 1L + random.nextInt(90))
+                        : today.plusDays(30L + (long) k * 120 + random.nextInt(60));
+                catalog.sellingPrice[b] = BigDecimal.valueOf(basePaise + random.nextLong(0, basePaise / 10 + 1), 2);
+                catalog.openingStock[b] = options.getStockPerBatch() > 0
+                        ? options.getStockPerBatch()
+                        : demandPerBatch + 20 + random.nextInt(200);
+            }
+        }
+        return catalog;
+    }
+    
+    private int[] writeSales(CopyManager copyManager, SalesSimulation simulation, SalesSimulation.Ids ids,
+                             Catalog catalog, Result result) throws Exception {
+        int[] remaining;
+        try (CopyWriter bills = new CopyWriter(copyManager, "bills",
+                "id, bill_number, bill_date, cashier_id, customer_name, customer_phone, subtotal, total_gst, " +
+                "total_amount, payment_status, created_at, updated_at, cancelled, cancellation_reason")) {
+            remaining = simulation.run(ids, bill -> bills.row(bill.id(), bill.billNumber(), bill.billDate(),
+                    bill.cashierId(), null, null, bill.subtotal(), bill.totalGst(), bill.totalAmount(), "PAID",
+                    bill.billDate(), bill.billDate(), false, null));
+            result.bills = bills.getRows();
+        }
+        
+        try (CopyWriter items = new CopyWriter(copyManager, "bill_items",
+                "id, bill_id, medicine_id, batch_id, batch_number, quantity, unit_price, gst_percentage, " +
+                "gst_amount, total_amount")) {
+            simulation.run(ids, bill -> {
+                for (SalesSimulation.Line line : bill.lines()) {
+                    items.row(line.id(), bill.id(), catalog.medicineIds[line.medicine()],
+                            catalog.batchIds[line.batch()], catalog.batchNumbers[line.batch()], line.quantity(),
+                            line.unitPrice(), line.gstPercentage(), line.gstAmount(),
+                            line.subtotal().add(line.gstAmount()));
+                }
+            });
+            result.billItems = items.getRows();
+        }
+        
+        try (CopyWriter payments = new CopyWriter(copyManager, "payments",
+                "id, bill_id, payment_reference, mode, amount, status, payment_date, created_at")) {
+            long offset = ids.payment - ids.bill;
+            simulation.run(ids, bill -> payments.row(bill.id() + offset, bill.id(),
+                    options.getTag() + "-" + bill.paymentMode().charAt(0) + "-" + bill.id(), bill.paymentMode(),
+                    bill.totalAmount(), "COMPLETED", bill.billDate(), bill.billDate()));
+            result.payments = payments.getRows();
+        }
+        
+        try (CopyWriter audits = new CopyWriter(copyManager, "audit_logs",
+                "id, user_id, action, entity_type, entity_id, description, old_value, new_value, \"timestamp\", " +
+                "ip_address")) {
+            long offset = ids.auditLog - ids.bill;
+            simulation.run(ids, bill -> audits.row(bill.id() + offset, bill.cashierId(), "BILL_CREATED", "Bill",
+                    bill.id(), "Bill created: " + bill.billNumber(), null, null, bill.billDate(), "10.0.0.1"));
+            result.auditLogs = audits.getRows();
+        }
+        return remaining;
+    }
+    
+    private void updateStock(Connection connection, Catalog catalog, int[] remaining) throws SQLException {
+        Long[] batchIds = new Long[catalog.batchIds.length];
+        Integer[] quantities = new Integer[remaining.length];
+        for (int b = 0; b < batchIds.length; b++) {
+            batchIds[b] = catalog.batchIds[b];
+            quantities[b] = remaining[b];
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE batches b SET quantity_available = v.quantity " +
+                "FROM unnest(?::bigint[], ?::int[]) AS v(id, quantity) WHERE b.id = v.id")) {
+            Array ids = connection.createArrayOf("bigint", batchIds);
+            Array counts = connection.createArrayOf("integer", quantities);
+            statement.setArray(1, ids);
+            statement.setArray(2, counts);
+            statement.executeUpdate();
+        }
+    }
+    
+    private void writeOpeningMovements(Connection connection, long firstBatchId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO stock_movements (batch_id, medicine_id, type, quantity, unit_cost, reference, created_at) " +
+                "SELECT id, medicine_id, 'OPENING', quantity_available, purchase_price, batch_number, now() " +
+                "FROM batches WHERE id >= ? AND quantity_available <> 0 ORDER BY id")) {
+            statement.setLong(1, firstBatchId);
+            statement.executeUpdate();
+        }
+    }
+    
+    private void writeStockSummaries(Connection connection, long firstMedicineId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE medicines m SET total_stock = s.total, available_stock = s.available, " +
+                "expired_stock = s.total - s.available, next_expiry_date = s.next_expiry FROM (" +
+                "  SELECT medicine_id, SUM(quantity_available) AS total, " +
+                "  COALESCE(SUM(quantity_available) FILTER (WHERE expiry_status <> 'EXPIRED'), 0) AS available, " +
+                "  MIN(expiry_date) FILTER (WHERE quantity_available > 0 AND expiry_status <> 'EXPIRED') AS next_expiry " +
+                "  FROM batches WHERE medicine_id >= ? GROUP BY medicine_id" +
+                ") s WHERE m.id = s.medicine_id")) {
+            statement.setLong(1, firstMedicineId);
+            statement.executeUpdate();
+        }
+    }
+    
+    // Adds the generated bills to the rollups the sales and GST reports read, as SalesRollup does per bill
+    private void writeSalesRollups(Connection connection, long firstBillId) throws SQLException {
+        String stripe = "b.id % " + SalesRollup.STRIPES;
+        try (PreparedStatement daily = connection.prepareStatement(
+                "INSERT INTO daily_sales_rollups AS r (sales_date, stripe, bills, sales, gst) " +
+                "SELECT b.bill_date::date, " + stripe + ", COUNT(*), SUM(b.total_amount), SUM(b.total_gst) " +
+                "FROM bills b WHERE b.id >= ? AND NOT b.cancelled GROUP BY b.bill_date::date, " + stripe + " " +
+                "ON CONFLICT (sales_date, stripe) DO UPDATE SET bills = r.bills + EXCLUDED.bills, " +
+                "sales = r.sales + EXCLUDED.sales, gst = r.gst + EXCLUDED.gst");
+             PreparedStatement gst = connection.prepareStatement(
+                "INSERT INTO daily_gst_rollups AS r " +
+                "(sales_date, hsn_code, gst_percentage, entry_type, stripe, quantity, taxable_amount, gst_amount) " +
+                "SELECT b.bill_date::date, m.hsn_code, bi.gst_percentage, 'SALE', " + stripe + ", " +
+                "SUM(bi.quantity), SUM(bi.unit_price * bi.quantity), SUM(bi.gst_amount) " +
+                "FROM bill_items bi JOIN bills b ON b.id = bi.bill_id JOIN medicines m ON m.id = bi.medicine_id " +
+                "WHERE b.id >= ? AND NOT b.cancelled " +
+                "GROUP BY b.bill_date::date, m.hsn_code, bi.gst_percentage, " + stripe + " " +
+                "ON CONFLICT (sales_date, hsn_code, gst_percentage, entry_type, stripe) DO UPDATE SET " +
+                "quantity = r.quantity + EXCLUDED.quantity, taxable_amount = r.taxable_amount + EXCLUDED.taxable_amount, " +
+                "gst_amount = r.gst_amount + EXCLUDED.gst_amount")) {
+            daily.setLong(1, firstBillId);
+            daily.executeUpdate();
+            gst.setLong(1, firstBillId);
+            gst.executeUpdate();
+        }
+    }
+    
+    private SalesSimulation.Ids nextIds(Connection connection) throws SQLException {
+        SalesSimulation.Ids ids = new SalesSimulation.Ids();
+        ids.medicine = maxId(connection, "medicines") + 1;
+        ids.batch = maxId(connection, "batches") + 1;
+        ids.stockBarcode = maxId(connection, "stock_barcodes") + 1;
+        ids.bill = maxId(connection, "bills") + 1;
+        ids.billItem = maxId(connection, "bill_items") + 1;
+        ids.payment = maxId(connection, "payments") + 1;
+        ids.auditLog = maxId(connection, "audit_logs") + 1;
+        return ids;
+    }
+    
+    private long maxId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+    
+    /**
+     * Ids were assigned explicitly, so move the id generators past them.
+     */
+    private void resetIdentities(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : IDENTITY_TABLES) {
+                statement.execute("SELECT setval(pg_get_serial_sequence('" + table + "', 'id'), " +
+                        "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + table + "), false)");
+            }
+            for (String table : POOLED_TABLES) {
+                statement.execute("SELECT setval('" + table + "_seq', " +
+                        "(SELECT COALESCE(MAX(id), 0) + " + POOLED_ALLOCATION_SIZE + " FROM " + table + "), false)");
+            }
+        }
+    }
+    
+    private long[] findCashierIds(Connection connection) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT id FROM users WHERE role = 'CASHIER' AND active = true ORDER BY id")) {
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No active CASHIER users found. " +
+                    "Start the application once so DataInitializer creates the default users.");
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+    
+    private static int pickGst(SplittableRandom random) {
+        double target = random.nextDouble();
+        for (int i = 0; i < GST_WEIGHTS.length; i++) {
+            target -= GST_WEIGHTS[i];
+            if (target < 0) {
+                return i;
+            }
+        }
+        return GST_WEIGHTS.length - 1;
+    }
+    
+    public static class Result {
+        long medicines;
+        long batches;
+        long stockBarcodes;
+        long bills;
+        long billItems;
+        long payments;
+        long auditLogs;
+        long elapsedMillis;
+        final List<Long> medicineIds = new ArrayList<>();
+        
+        public List<Long> getMedicineIds() {
+            return medicineIds;
+        }
+        
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%,d medicines, %,d batches, %,d stock barcodes, %,d bills, %,d bill items, " +
+                            "%,d payments, %,d audit logs in %,d ms", medicines, batches, stockBarcodes, bills,
+                    billItems, payments, auditLogs, elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.medicalstore.pos.datagen;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+/**
+ * Command line entry point of the data generator:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.medicalstore.pos.datagen.DataGeneratorCli \
+ *     --database=jdbc:postgresql://localhost:5432/medical_store_pos --bills=1000000 --seed=42
+ * </pre>
+ * The schema must exist (start the application once).
+ */
+public class DataGeneratorCli {
+    
+    public static void main(String[] args) throws Exception {
+        DataGeneratorOptions options = DataGeneratorOptions.parse(args);
+        try (Connection connection = DriverManager.getConnection(options.getDatabase(), options.getUsername(),
+                options.getPassword())) {
+            DataGenerator.Result result = new DataGenerator(options).generate(connection);
+            System.out.println("Generated " + result);
+        }
+    }
+}
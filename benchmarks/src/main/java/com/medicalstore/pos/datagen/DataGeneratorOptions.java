@@ -0,0 +1,61 @@
+package com.medicalstore.pos.datagen;
+
+import lombok.Data;
+
+/**
+ * Options of the synthetic data generator, given as --name=value.
+ * Defaults produce 10k medicines, 100k batches, 2M unit barcodes and 1M bills.
+ */
+@Data
+public class DataGeneratorOptions {
+    
+    private int medicines = 10_000;
+    private int batchesPerMedicine = 10;
+    private int barcodesPerBatch = 20;
+    
+    // Fixed opening stock per batch; 0 sizes each batch from its expected Zipf demand
+    private int stockPerBatch = 0;
+    
+    private int bills = 1_000_000;
+    private int days = 365;
+    private double zipfExponent = 1.07;
+    private double expiredBatchShare = 0.05;
+    private long seed = 42;
+    
+    // Prefix of generated names, HSN codes and barcodes so several datasets can coexist
+    private String tag = "GEN";
+    private boolean truncate = false;
+    
+    private String database = "jdbc:postgresql://localhost:5432/medical_store_pos";
+    private String username = "postgres";
+    private String password = "password";
+    
+    public static DataGeneratorOptions parse(String[] args) {
+        DataGeneratorOptions options = new DataGeneratorOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "medicines" -> options.setMedicines(Integer.parseInt(value));
+                case "batches-per-medicine" -> options.setBatchesPerMedicine(Integer.parseInt(value));
+                case "barcodes-per-batch" -> options.setBarcodesPerBatch(Integer.parseInt(value));
+                case "stock-per-batch" -> options.setStockPerBatch(Integer.parseInt(value));
+                case "bills" -> options.setBills(Integer.parseInt(value));
+                case "days" -> options.setDays(Integer.parseInt(value));
+                case "zipf" -> options.setZipfExponent(Double.parseDouble(value));
+                case "expired-share" -> options.setExpiredBatchShare(Double.parseDouble(value));
+                case "seed" -> options.setSeed(Long.parseLong(value));
+                case "tag" -> options.setTag(value);
+                case "truncate" -> options.setTruncate(Boolean.parseBoolean(value));
+                case "database" -> options.setDatabase(value);
+                case "username" -> options.setUsername(value);
+                case "password" -> options.setPassword(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return options;
+    }
+}
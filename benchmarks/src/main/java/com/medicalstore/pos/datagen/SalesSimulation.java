@@ -0,0 +1,191 @@
+package com.medicalstore.pos.datagen;
+
+import com.medicalstore.pos.service.BillingCalculator;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic replay of the generated sales history.
+ * A connection can only run one COPY at a time, so bills, bill items, payments and audit
+ * logs are each written in their own pass over the same simulation; every pass starts from
+ * the same seed and opening stock and therefore produces identical bills.
+ */
+class SalesSimulation {
+    
+    // Lines per bill: 1 - 6, most bills have one or two
+    private static final double[] LINE_WEIGHTS = {0.45, 0.25, 0.14, 0.08, 0.05, 0.03};
+    // Units per line: strips of 1 - 3 dominate, occasional larger packs
+    private static final double[] QUANTITY_WEIGHTS = {0.55, 0.2, 0.1, 0.05, 0.03, 0.02, 0.01, 0.01, 0.01, 0.02};
+    // Bill share per hour of day: morning and evening rush, closed overnight
+    private static final double[] HOUR_WEIGHTS = {
+            0, 0, 0, 0, 0, 0, 0, 0.01, 0.04, 0.08, 0.10, 0.10,
+            0.07, 0.05, 0.04, 0.04, 0.05, 0.07, 0.10, 0.11, 0.09, 0.04, 0.01, 0
+    };
+    private static final double[] PAYMENT_MODE_WEIGHTS = {0.45, 0.45, 0.10};
+    private static final String[] PAYMENT_MODES = {"CASH", "UPI", "CARD"};
+    
+    private final DataGeneratorOptions options;
+    private final Catalog catalog;
+    private final long[] cashierIds;
+    private final ZipfSampler zipf;
+    private final LocalDate firstDay;
+    
+    SalesSimulation(DataGeneratorOptions options, Catalog catalog, long[] cashierIds, ZipfSampler zipf, LocalDate today) {
+        this.options = options;
+        this.catalog = catalog;
+        this.cashierIds = cashierIds;
+        this.zipf = zipf;
+        this.firstDay = today.minusDays(options.getDays());
+    }
+    
+    static double meanLinesPerBill() {
+        return mean(LINE_WEIGHTS);
+    }
+    
+    static double meanQuantityPerLine() {
+        return mean(QUANTITY_WEIGHTS);
+    }
+    
+    /**
+     * Replays the whole history, handing every bill to the consumer in bill id order.
+     * Returns the stock left per batch index.
+     */
+    int[] run(Ids ids, BillConsumer consumer) throws Exception {
+        SplittableRandom random = new SplittableRandom(options.getSeed() * 31 + 7);
+        int[] remaining = catalog.openingStock.clone();
+        long billId = ids.bill;
+        long itemId = ids.billItem;
+        int dayOfBill = -1;
+        int sequenceOfDay = 0;
+        
+        for (int i = 0; i < options.getBills(); i++) {
+            int day = (int) ((long) i * options.getDays() / options.getBills());
+            if (day != dayOfBill) {
+                dayOfBill = day;
+                sequenceOfDay = 0;
+            }
+            LocalDate date = firstDay.plusDays(day);
+            LocalDateTime billDate = date.atTime(pick(HOUR_WEIGHTS, random), random.nextInt(60), random.nextInt(60));
+            
+            int lineCount = 1 + pick(LINE_WEIGHTS, random);
+            List<Line> lines = new ArrayList<>(lineCount);
+            for (int attempt = 0; attempt < lineCount * 3 && lines.size() < lineCount; attempt++) {
+                int medicine = zipf.sample(random);
+                int quantity = 1 + pick(QUANTITY_WEIGHTS, random);
+                if (containsMedicine(lines, medicine)) {
+                    continue;
+                }
+                int batch = allocate(medicine, quantity, remaining, date);
+                if (batch < 0) {
+                    continue;
+                }
+                remaining[batch] -= quantity;
+                BigDecimal unitPrice = catalog.sellingPrice[batch];
+                BigDecimal gstPercentage = catalog.gstPercentage[medicine];
+                BigDecimal lineSubtotal = BillingCalculator.lineSubtotal(unitPrice, quantity);
+                BigDecimal gstAmount = BillingCalculator.gstAmount(lineSubtotal, gstPercentage);
+                lines.add(new Line(itemId++, medicine, batch, quantity, unitPrice, gstPercentage,
+                        lineSubtotal, gstAmount));
+            }
+            if (lines.isEmpty()) {
+                continue;
+            }
+            
+            BigDecimal subtotal = BigDecimal.ZERO;
+            BigDecimal totalGst = BigDecimal.ZERO;
+            for (Line line : lines) {
+                subtotal = subtotal.add(line.subtotal);
+                totalGst = totalGst.add(line.gstAmount);
+            }
+            
+            sequenceOfDay++;
+            String billNumber = String.format("BILL%d%02d%02d%04d", date.getYear(), date.getMonthValue(),
+                    date.getDayOfMonth(), sequenceOfDay);
+            long cashierId = cashierIds[random.nextInt(cashierIds.length)];
+            String paymentMode = PAYMENT_MODES[pick(PAYMENT_MODE_WEIGHTS, random)];
+            consumer.accept(new SimulatedBill(billId, billNumber, billDate, cashierId, subtotal, totalGst,
+                    subtotal.add(totalGst), paymentMode, lines));
+            billId++;
+        }
+        return remaining;
+    }
+    
+    /**
+     * FIFO: the earliest-expiring unexpired batch of the medicine with enough stock.
+     */
+    private int allocate(int medicine, int quantity, int[] remaining, LocalDate date) {
+        int first = medicine * options.getBatchesPerMedicine();
+        for (int batch = first; batch < first + options.getBatchesPerMedicine(); batch++) {
+            if (!catalog.expiryDate[batch].isBefore(date) && remaining[batch] >= quantity) {
+                return batch;
+            }
+        }
+        return -1;
+    }
+    
+    private static boolean containsMedicine(List<Line> lines, int medicine) {
+        for (Line line : lines) {
+            if (line.medicine == medicine) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static int pick(double[] weights, SplittableRandom random) {
+        double target = random.nextDouble() * sum(weights);
+        for (int i = 0; i < weights.length; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+    
+    private static double sum(double[] weights) {
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+        }
+        return sum;
+    }
+    
+    private static double mean(double[] weights) {
+        double weighted = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weighted += (i + 1) * weights[i];
+        }
+        return weighted / sum(weights);
+    }
+    
+    interface BillConsumer {
+        void accept(SimulatedBill bill) throws Exception;
+    }
+    
+    record Line(long id, int medicine, int batch, int quantity, BigDecimal unitPrice, BigDecimal gstPercentage,
+                BigDecimal subtotal, BigDecimal gstAmount) {
+    }
+    
+    record SimulatedBill(long id, String billNumber, LocalDateTime billDate, long cashierId, BigDecimal subtotal,
+                         BigDecimal totalGst, BigDecimal totalAmount, String paymentMode, List<Line> lines) {
+    }
+    
+    /**
+     * First ids to use per table (existing max id + 1).
+     */
+    static class Ids {
+        long medicine;
+        long batch;
+        long stockBarcode;
+        long bill;
+        long billItem;
+        long payment;
+        long auditLog;
+    }
+}
@@ -0,0 +1,41 @@
+package com.medicalstore.pos.datagen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Zipf distribution over ranks 0..n-1 (rank 0 most frequent), sampled by binary search
+ * over the precomputed CDF. Pharmacy sales are close to Zipf with an exponent around 1:
+ * a few hundred SKUs make up most of the lines.
+ */
+class ZipfSampler {
+    
+    private final double[] cdf;
+    private final double[] probabilities;
+    
+    ZipfSampler(int n, double exponent) {
+        this.cdf = new double[n];
+        this.probabilities = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            probabilities[rank] = 1.0 / Math.pow(rank + 1, exponent);
+            sum += probabilities[rank];
+        }
+        double cumulative = 0;
+        for (int rank = 0; rank < n; rank++) {
+            probabilities[rank] /= sum;
+            cumulative += probabilities[rank];
+            cdf[rank] = cumulative;
+        }
+        cdf[n - 1] = 1.0;
+    }
+    
+    int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+    
+    double probability(int rank) {
+        return probabilities[rank];
+    }
+}
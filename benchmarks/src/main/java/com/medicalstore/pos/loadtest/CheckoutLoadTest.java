@@ -0,0 +1,148 @@
+package com.medicalstore.pos.loadtest;
+
+import com.medicalstore.pos.MedicalStorePosApplication;
+import com.medicalstore.pos.datagen.DataGenerator;
+import com.medicalstore.pos.datagen.DataGeneratorOptions;
+import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.repository.UserRepository;
+import com.medicalstore.pos.service.BillingService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Concurrent checkout load test.
+ * Boots the application against Postgres, seeds a synthetic catalog, then runs N virtual
+ * cashiers calling BillingService.createBill with a hot-SKU skew, and reports throughput,
+ * latency percentiles, lock conflicts, retries and a stock consistency check.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.medicalstore.pos.loadtest.CheckoutLoadTest \
+ *     --cashiers=50 --duration=60 --hot-skus=5 --hot-share=0.8 --database=container
+ * </pre>
+ * Exits with status 1 when stock is inconsistent.
+ */
+public class CheckoutLoadTest {
+    
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        
+        PostgreSQLContainer<?> container = null;
+        String url = options.getDatabase();
+        String username = options.getUsername();
+        String password = options.getPassword();
+        if ("container".equals(options.getDatabase())) {
+            container = new PostgreSQLContainer<>("postgres:16-alpine");
+            container.start();
+            url = container.getJdbcUrl();
+            username = container.getUsername();
+            password = container.getPassword();
+        }
+        
+        boolean consistent;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MedicalStorePosApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.username=" + username,
+                        "spring.datasource.password=" + password,
+                        "spring.datasource.hikari.maximum-pool-size=" + (options.getCashiers() + 5),
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "pos.sql-budget.enabled=false",
+                        "logging.level.root=WARN")
+                .run()) {
+            consistent = run(context, options);
+        } finally {
+            if (container != null) {
+                container.stop();
+            }
+        }
+        System.exit(consistent ? 0 : 1);
+    }
+    
+    private static boolean run(ConfigurableApplicationContext context, LoadTestOptions options) throws Exception {
+        String runId = "LT" + Long.toString(System.currentTimeMillis(), 36).toUpperCase(Locale.ROOT);
+        
+        // Catalog only, ids in popularity order so the first hotSkus medicines are the hot set
+        DataGeneratorOptions catalog = new DataGeneratorOptions();
+        catalog.setMedicines(options.getMedicines());
+        catalog.setBatchesPerMedicine(options.getBatchesPerMedicine());
+        catalog.setStockPerBatch(options.getStockPerBatch());
+        catalog.setBarcodesPerBatch(0);
+        catalog.setBills(0);
+        catalog.setExpiredBatchShare(0);
+        catalog.setSeed(options.getSeed());
+        catalog.setTag(runId);
+        DataGenerator.Result seeded;
+        try (Connection connection = context.getBean(DataSource.class).getConnection()) {
+            seeded = new DataGenerator(catalog).generate(connection);
+        }
+        List<Long> medicineIds = seeded.getMedicineIds();
+        System.out.printf("Seeded %d medicines x %d batches in %d ms (run %s)%n", medicineIds.size(),
+                options.getBatchesPerMedicine(), seeded.getElapsedMillis(), runId);
+        
+        // The default cashier account is created by DataInitializer on startup
+        User cashier = context.getBean(UserRepository.class).findByUsername("cashier")
+                .orElseThrow(() -> new IllegalStateException("Cashier user not found"));
+        BillingService billingService = context.getBean(BillingService.class);
+        
+        LoadTestStats stats = new LoadTestStats();
+        AtomicBoolean measuring = new AtomicBoolean();
+        List<VirtualCashier> cashiers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < options.getCashiers(); i++) {
+            VirtualCashier virtualCashier = new VirtualCashier(billingService, cashier, options, medicineIds,
+                    options.getSeed() + 1 + i, stats, measuring::get);
+            cashiers.add(virtualCashier);
+            threads.add(new Thread(virtualCashier, "cashier-" + i));
+        }
+        
+        threads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.getWarmupSeconds()));
+        measuring.set(true);
+        long measureStart = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.getDurationSeconds()));
+        measuring.set(false);
+        long measuredNanos = System.nanoTime() - measureStart;
+        cashiers.forEach(VirtualCashier::stop);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        List<LatencyHistogram> histograms = cashiers.stream().map(VirtualCashier::getLatencies).toList();
+        long[] latencies = LatencyHistogram.mergeSorted(histograms);
+        StockConsistencyCheck.Result stock = new StockConsistencyCheck(context.getBean(JdbcTemplate.class))
+                .run(medicineIds, options.getStockPerBatch());
+        
+        double seconds = measuredNanos / 1e9;
+        System.out.println();
+        System.out.printf("Cashiers: %d, hot SKUs: %d (%.0f%% of lines), measured %.1f s%n",
+                options.getCashiers(), options.getHotSkus(), options.getHotShare() * 100, seconds);
+        System.out.printf("Throughput:   %.1f bills/s (%d bills, %d failed)%n",
+                stats.bills.sum() / seconds, stats.bills.sum(), stats.failedBills.sum());
+        System.out.printf("Latency ms:   p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                millis(LatencyHistogram.percentile(latencies, 50)),
+                millis(LatencyHistogram.percentile(latencies, 99)),
+                millis(LatencyHistogram.percentile(latencies, 99.9)),
+                millis(LatencyHistogram.percentile(latencies, 100)));
+        System.out.printf("Retries:      %d (deadlocks %d, serialization %d, optimistic %d, lock timeouts %d)%n",
+                stats.retries.sum(), stats.deadlocks.sum(), stats.serializationFailures.sum(),
+                stats.optimisticLockFailures.sum(), stats.lockTimeouts.sum());
+        System.out.printf("Stock:        %s - %d batches, %d units sold, %d mismatched, %d negative%n",
+                stock.isConsistent() ? "CONSISTENT" : "INCONSISTENT", stock.batches, stock.unitsSold,
+                stock.mismatchedBatches, stock.negativeBatches);
+        return stock.isConsistent();
+    }
+    
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
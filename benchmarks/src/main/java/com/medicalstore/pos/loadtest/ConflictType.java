@@ -0,0 +1,47 @@
+package com.medicalstore.pos.loadtest;
+
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.sql.SQLException;
+
+/**
+ * Concurrency failures of a checkout that are worth retrying.
+ */
+enum ConflictType {
+    DEADLOCK,
+    SERIALIZATION,
+    OPTIMISTIC_LOCK,
+    LOCK_TIMEOUT;
+    
+    /**
+     * Walks the cause chain; returns null for failures that a retry would not fix
+     * (validation, insufficient stock, ...).
+     */
+    static ConflictType classify(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                switch (sqlException.getSQLState()) {
+                    case "40P01":
+                        return DEADLOCK;
+                    case "40001":
+                        return SERIALIZATION;
+                    case "55P03":
+                        return LOCK_TIMEOUT;
+                    default:
+                        break;
+                }
+            }
+            if (cause instanceof OptimisticLockingFailureException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof StaleStateException) {
+                return OPTIMISTIC_LOCK;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+}
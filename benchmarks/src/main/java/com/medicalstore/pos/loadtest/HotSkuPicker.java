@@ -0,0 +1,31 @@
+package com.medicalstore.pos.loadtest;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Picks medicines for bill lines: hotShare of picks go uniformly to the hot set,
+ * the rest uniformly to the remaining catalog. One instance per cashier thread.
+ */
+class HotSkuPicker {
+    
+    private final List<Long> medicineIds;
+    private final int hotSkus;
+    private final double hotShare;
+    private final SplittableRandom random;
+    
+    HotSkuPicker(List<Long> medicineIds, int hotSkus, double hotShare, SplittableRandom random) {
+        this.medicineIds = medicineIds;
+        this.hotSkus = hotSkus;
+        this.hotShare = hotShare;
+        this.random = random;
+    }
+    
+    long next() {
+        int size = medicineIds.size();
+        if (hotSkus > 0 && (hotSkus == size || random.nextDouble() < hotShare)) {
+            return medicineIds.get(random.nextInt(hotSkus));
+        }
+        return medicineIds.get(hotSkus + random.nextInt(size - hotSkus));
+    }
+}
@@ -0,0 +1,46 @@
+package com.medicalstore.pos.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Raw latency samples of one cashier thread; merged and sorted once at the end of the run.
+ */
+class LatencyHistogram {
+    
+    private long[] samples = new long[1 << 14];
+    private int count;
+    
+    void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+    
+    int getCount() {
+        return count;
+    }
+    
+    static long[] mergeSorted(Iterable<LatencyHistogram> histograms) {
+        int total = 0;
+        for (LatencyHistogram histogram : histograms) {
+            total += histogram.count;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyHistogram histogram : histograms) {
+            System.arraycopy(histogram.samples, 0, merged, offset, histogram.count);
+            offset += histogram.count;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+    
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,69 @@
+package com.medicalstore.pos.loadtest;
+
+import lombok.Data;
+
+/**
+ * Command line options of the checkout load test, given as --name=value.
+ */
+@Data
+public class LoadTestOptions {
+    
+    // Concurrent virtual cashiers (one thread each)
+    private int cashiers = 50;
+    
+    // Measured run length after warmup
+    private int durationSeconds = 60;
+    private int warmupSeconds = 10;
+    
+    // Synthetic catalog
+    private int medicines = 200;
+    private int batchesPerMedicine = 3;
+    private int stockPerBatch = 1_000_000;
+    
+    // Skew: hotShare of all bill lines go to the first hotSkus medicines
+    private int hotSkus = 5;
+    private double hotShare = 0.8;
+    
+    private int maxItemsPerBill = 5;
+    private int maxQuantityPerItem = 3;
+    private int maxRetries = 5;
+    private long seed = 42;
+    
+    // "container" starts a throwaway Postgres with Testcontainers, otherwise a JDBC URL
+    private String database = "jdbc:postgresql://localhost:5432/medical_store_pos_load";
+    private String username = "postgres";
+    private String password = "password";
+    
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "cashiers" -> options.setCashiers(Integer.parseInt(value));
+                case "duration" -> options.setDurationSeconds(Integer.parseInt(value));
+                case "warmup" -> options.setWarmupSeconds(Integer.parseInt(value));
+                case "medicines" -> options.setMedicines(Integer.parseInt(value));
+                case "batches-per-medicine" -> options.setBatchesPerMedicine(Integer.parseInt(value));
+                case "stock-per-batch" -> options.setStockPerBatch(Integer.parseInt(value));
+                case "hot-skus" -> options.setHotSkus(Integer.parseInt(value));
+                case "hot-share" -> options.setHotShare(Double.parseDouble(value));
+                case "max-items" -> options.setMaxItemsPerBill(Integer.parseInt(value));
+                case "max-quantity" -> options.setMaxQuantityPerItem(Integer.parseInt(value));
+                case "max-retries" -> options.setMaxRetries(Integer.parseInt(value));
+                case "seed" -> options.setSeed(Long.parseLong(value));
+                case "database" -> options.setDatabase(value);
+                case "username" -> options.setUsername(value);
+                case "password" -> options.setPassword(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        if (options.getHotSkus() > options.getMedicines()) {
+            throw new IllegalArgumentException("--hot-skus cannot exceed --medicines");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,27 @@
+package com.medicalstore.pos.loadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome counters shared by all cashier threads; only updated while measuring.
+ */
+class LoadTestStats {
+    
+    final LongAdder bills = new LongAdder();
+    final LongAdder failedBills = new LongAdder();
+    final LongAdder retries = new LongAdder();
+    final LongAdder deadlocks = new LongAdder();
+    final LongAdder serializationFailures = new LongAdder();
+    final LongAdder optimisticLockFailures = new LongAdder();
+    final LongAdder lockTimeouts = new LongAdder();
+    final LongAdder unitsSold = new LongAdder();
+    
+    void recordConflict(ConflictType type) {
+        switch (type) {
+            case DEADLOCK -> deadlocks.increment();
+            case SERIALIZATION -> serializationFailures.increment();
+            case OPTIMISTIC_LOCK -> optimisticLockFailures.increment();
+            case LOCK_TIMEOUT -> lockTimeouts.increment();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.medicalstore.pos.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Verifies that every seeded batch satisfies
+ * seeded stock - units on non-cancelled bill lines = quantity_available, and never went negative.
+ */
+class StockConsistencyCheck {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    StockConsistencyCheck(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    Result run(List<Long> medicineIds, int seededStockPerBatch) {
+        Long[] ids = medicineIds.toArray(new Long[0]);
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT b.id, b.quantity_available, COALESCE(s.sold, 0) AS sold " +
+                "FROM batches b " +
+                "LEFT JOIN (SELECT bi.batch_id, SUM(bi.quantity) AS sold " +
+                "           FROM bill_items bi JOIN bills bl ON bl.id = bi.bill_id " +
+                "           WHERE bl.cancelled = false GROUP BY bi.batch_id) s ON s.batch_id = b.id " +
+                "WHERE b.medicine_id = ANY(?)",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)},
+                (Object) ids);
+        
+        Result result = new Result();
+        for (long[] row : rows) {
+            result.batches++;
+            result.unitsSold += row[2];
+            if (row[1] < 0) {
+                result.negativeBatches++;
+            }
+            if (seededStockPerBatch - row[2] != row[1]) {
+                result.mismatchedBatches++;
+            }
+        }
+        return result;
+    }
+    
+    static class Result {
+        int batches;
+        int mismatchedBatches;
+        int negativeBatches;
+        long unitsSold;
+        
+        boolean isConsistent() {
+            return mismatchedBatches == 0 && negativeBatches == 0;
+        }
+    }
+}
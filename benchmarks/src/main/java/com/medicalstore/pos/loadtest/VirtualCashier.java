@@ -0,0 +1,129 @@
+package com.medicalstore.pos.loadtest;
+
+import com.medicalstore.pos.dto.request.BillItemRequest;
+import com.medicalstore.pos.dto.request.CreateBillRequest;
+import com.medicalstore.pos.dto.request.PaymentRequest;
+import com.medicalstore.pos.entity.Payment;
+import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.service.BillingService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * One cashier ringing up bills back to back through BillingService.createBill.
+ * Deadlocks, serialization failures and optimistic lock conflicts are retried with
+ * a short randomized backoff; the recorded latency covers all attempts.
+ */
+class VirtualCashier implements Runnable {
+    
+    // Overpayment is accepted, so every bill ends up PAID without pricing it first
+    private static final BigDecimal PAYMENT = new BigDecimal("1000000.00");
+    
+    private final BillingService billingService;
+    private final User cashier;
+    private final LoadTestOptions options;
+    private final HotSkuPicker picker;
+    private final SplittableRandom random;
+    private final LoadTestStats stats;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final BooleanSupplier measuring;
+    private volatile boolean running = true;
+    
+    VirtualCashier(BillingService billingService, User cashier, LoadTestOptions options, List<Long> medicineIds,
+                   long seed, LoadTestStats stats, BooleanSupplier measuring) {
+        this.billingService = billingService;
+        this.cashier = cashier;
+        this.options = options;
+        this.random = new SplittableRandom(seed);
+        this.picker = new HotSkuPicker(medicineIds, options.getHotSkus(), options.getHotShare(), random);
+        this.stats = stats;
+        this.measuring = measuring;
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            CreateBillRequest request = nextBill();
+            long start = System.nanoTime();
+            boolean created = checkout(request);
+            long elapsed = System.nanoTime() - start;
+            if (measuring.getAsBoolean()) {
+                if (created) {
+                    latencies.record(elapsed);
+                    stats.bills.increment();
+                    stats.unitsSold.add(request.getItems().stream().mapToInt(BillItemRequest::getQuantity).sum());
+                } else {
+                    stats.failedBills.increment();
+                }
+            }
+        }
+    }
+    
+    void stop() {
+        running = false;
+    }
+    
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+    
+    private boolean checkout(CreateBillRequest request) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                billingService.createBill(request, cashier, null);
+                return true;
+            } catch (RuntimeException e) {
+                ConflictType conflict = ConflictType.classify(e);
+                if (conflict == null || attempt >= options.getMaxRetries()) {
+                    return false;
+                }
+                if (measuring.getAsBoolean()) {
+                    stats.recordConflict(conflict);
+                    stats.retries.increment();
+                }
+                backoff(attempt);
+            }
+        }
+    }
+    
+    private void backoff(int attempt) {
+        try {
+            Thread.sleep(random.nextLong(1, 5L << Math.min(attempt, 4)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    private CreateBillRequest nextBill() {
+        int lines = 1 + random.nextInt(options.getMaxItemsPerBill());
+        Set<Long> medicineIds = new LinkedHashSet<>();
+        // Bounded so a narrow hot set cannot spin forever looking for distinct medicines
+        for (int pick = 0; pick < lines * 4 && medicineIds.size() < lines; pick++) {
+            medicineIds.add(picker.next());
+        }
+        
+        List<BillItemRequest> items = new ArrayList<>(medicineIds.size());
+        for (Long medicineId : medicineIds) {
+            BillItemRequest item = new BillItemRequest();
+            item.setMedicineId(medicineId);
+            item.setQuantity(1 + random.nextInt(options.getMaxQuantityPerItem()));
+            items.add(item);
+        }
+        
+        PaymentRequest payment = new PaymentRequest();
+        payment.setMode(Payment.PaymentMode.CASH);
+        payment.setAmount(PAYMENT);
+        
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(items);
+        request.setPayments(List.of(payment));
+        return request;
+    }
+}
@@ -0,0 +1,49 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.benchmark.BillFixtures;
+import com.medicalstore.pos.dto.response.BillResponse;
+import com.medicalstore.pos.entity.Bill;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping of BillingService (mapToResponse / mapItemToResponse).
+ * Runs on detached entities, so only the CPU and allocation cost of mapping is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillMappingBenchmark {
+    
+    @Param({"1", "5", "20", "50"})
+    private int items;
+    
+    private BillingService billingService;
+    private Bill bill;
+    
+    @Setup
+    public void setUp() {
+        // Mapping touches none of the collaborators
+        billingService = new BillingService(null, null, null, null, null, null, null, null);
+        bill = BillFixtures.bill(items, 42);
+    }
+    
+    @Benchmark
+    public BillResponse mapToResponse() {
+        return billingService.mapToResponse(bill);
+    }
+}
@@ -0,0 +1,58 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.benchmark.BillFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line subtotal, GST and bill totals as computed in BillingService.createBill.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillingCalculatorBenchmark {
+    
+    @Param({"1", "5", "20", "50"})
+    private int items;
+    
+    private BigDecimal[] unitPrices;
+    private BigDecimal[] gstPercentages;
+    private int[] quantities;
+    
+    @Setup
+    public void setUp() {
+        unitPrices = BillFixtures.unitPrices(items, 42);
+        gstPercentages = BillFixtures.gstPercentages(items, 43);
+        quantities = BillFixtures.quantities(items, 44);
+    }
+    
+    @Benchmark
+    public void billTotals(Blackhole blackhole) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal totalGst = BigDecimal.ZERO;
+        for (int i = 0; i < items; i++) {
+            BigDecimal lineSubtotal = BillingCalculator.lineSubtotal(unitPrices[i], quantities[i]);
+            BigDecimal gstAmount = BillingCalculator.gstAmount(lineSubtotal, gstPercentages[i]);
+            blackhole.consume(lineSubtotal.add(gstAmount));
+            subtotal = subtotal.add(lineSubtotal);
+            totalGst = totalGst.add(gstAmount);
+        }
+        blackhole.consume(subtotal.add(totalGst));
+    }
+}
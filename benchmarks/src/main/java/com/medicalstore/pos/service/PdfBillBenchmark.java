@@ -0,0 +1,47 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.benchmark.BillFixtures;
+import com.medicalstore.pos.dto.response.BillResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bill PDF rendering (PdfBillService.generateBillPdf).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PdfBillBenchmark {
+    
+    @Param({"1", "5", "20", "50"})
+    private int items;
+    
+    private PdfBillService pdfBillService;
+    private BillResponse bill;
+    
+    @Setup
+    public void setUp() {
+        pdfBillService = new PdfBillService();
+        bill = BillFixtures.billResponse(items, 42);
+    }
+    
+    @Benchmark
+    public byte[] generateBillPdf() throws IOException {
+        return pdfBillService.generateBillPdf(bill);
+    }
+}
@@ -0,0 +1,54 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.benchmark.BillFixtures;
+import com.medicalstore.pos.entity.Bill;
+import com.medicalstore.pos.entity.BillItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Proportional refund math of ReturnService.processReturn, returning half of every line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefundBenchmark {
+    
+    @Param({"1", "5", "20", "50"})
+    private int items;
+    
+    private List<BillItem> billItems;
+    
+    @Setup
+    public void setUp() {
+        Bill bill = BillFixtures.bill(items, 42);
+        billItems = bill.getBillItems();
+    }
+    
+    @Benchmark
+    public BigDecimal totalRefund() {
+        BigDecimal totalRefund = BigDecimal.ZERO;
+        for (BillItem item : billItems) {
+            int returnQuantity = Math.max(1, item.getQuantity() / 2);
+            totalRefund = totalRefund.add(BillingCalculator.refundAmount(item.getTotalAmount(),
+                    item.getQuantity(), returnQuantity));
+        }
+        return totalRefund;
+    }
+}
@@ -0,0 +1,36 @@
+package com.medicalstore.pos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rate limiting configuration (pos.rate-limit.*).
+ * Each endpoint group has its own per-user and per-client-IP token buckets.
+ * A rate of 0 disables that dimension for the group.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "pos.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Number of buckets per group and dimension (rounded up to a power of two)
+    private int stripes = 1024;
+
+    private List<Group> groups = new ArrayList<>();
+
+    @Data
+    public static class Group {
+        private String name;
+        private List<String> patterns = new ArrayList<>();
+        private int userRequestsPerMinute;
+        private int userBurst;
+        private int ipRequestsPerMinute;
+        private int ipBurst;
+    }
+}
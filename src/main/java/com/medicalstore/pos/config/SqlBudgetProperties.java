@@ -0,0 +1,27 @@
+package com.medicalstore.pos.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-request SQL budget (pos.sql-budget.*).
+ * Requests that run more statements than allowed, or repeat one statement shape
+ * too often (the N+1 signature), are logged with their repeated shapes.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "pos.sql-budget")
+public class SqlBudgetProperties {
+    
+    private boolean enabled = true;
+    
+    // Maximum statements per HTTP request before a warning is logged
+    private int maxStatements = 30;
+    
+    // A statement shape executed this many times in one request is reported as N+1
+    private int repeatThreshold = 5;
+    
+    // Number of repeated shapes included in the log line
+    private int reportedShapes = 5;
+}
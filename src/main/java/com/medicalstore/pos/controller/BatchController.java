@@ -1,24 +1,31 @@
 package com.medicalstore.pos.controller;
 
+import com.medicalstore.pos.dto.request.AddBarcodeRangeRequest;
 import com.medicalstore.pos.dto.request.AddBarcodesRequest;
 import com.medicalstore.pos.dto.request.CreateBatchRequest;
 import com.medicalstore.pos.dto.request.UpdateBatchRequest;
 import com.medicalstore.pos.dto.request.UpdateStockRequest;
 import com.medicalstore.pos.dto.response.BatchResponse;
+import com.medicalstore.pos.dto.response.StockBarcodeRangeResponse;
 import com.medicalstore.pos.dto.response.StockBarcodeResponse;
+import com.medicalstore.pos.dto.response.StockTakeResponse;
 import com.medicalstore.pos.entity.User;
 import com.medicalstore.pos.service.BatchService;
 import com.medicalstore.pos.service.StockBarcodeService;
+import com.medicalstore.pos.service.StockTakeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -29,10 +36,13 @@ public class BatchController {
     
     private final BatchService batchService;
     private final StockBarcodeService stockBarcodeService;
+    private final StockTakeService stockTakeService;
     
-    public BatchController(BatchService batchService, StockBarcodeService stockBarcodeService) {
+    public BatchController(BatchService batchService, StockBarcodeService stockBarcodeService,
+                           StockTakeService stockTakeService) {
         this.batchService = batchService;
         this.stockBarcodeService = stockBarcodeService;
+        this.stockTakeService = stockTakeService;
     }
     
     @PostMapping
@@ -46,32 +56,46 @@ public class BatchController {
     }
     
     @GetMapping("/medicine/{medicineId}")
-    @Operation(summary = "Get batches by medicine", description = "Retrieve all batches for a medicine")
-    public ResponseEntity<List<BatchResponse>> getBatchesByMedicine(@PathVariable Long medicineId) {
-        List<BatchResponse> response = batchService.getBatchesByMedicine(medicineId);
-        return ResponseEntity.ok(response);
+    @Operation(summary = "Get batches by medicine", description = "Retrieve a page of batches for a medicine, earliest expiry first. Total count in X-Total-Count.")
+    public ResponseEntity<List<BatchResponse>> getBatchesByMedicine(
+            @PathVariable Long medicineId,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "50") Integer size) {
+        return pageResponse(batchService.getBatchesByMedicine(medicineId, page, size));
     }
     
     @GetMapping("/expired")
-    @Operation(summary = "Get expired batches", description = "Retrieve all expired batches")
-    public ResponseEntity<List<BatchResponse>> getExpiredBatches() {
-        List<BatchResponse> response = batchService.getExpiredBatches();
-        return ResponseEntity.ok(response);
+    @Operation(summary = "Get expired batches", description = "Retrieve a page of expired batches with stock. Total count in X-Total-Count.")
+    public ResponseEntity<List<BatchResponse>> getExpiredBatches(
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "50") Integer size) {
+        return pageResponse(batchService.getExpiredBatches(page, size));
+    }
+    
+    @GetMapping("/expiring")
+    @Operation(summary = "Get expiring batches", description = "Retrieve a page of batches with stock expiring within 30 or 90 days. Total count in X-Total-Count.")
+    public ResponseEntity<List<BatchResponse>> getExpiringBatches(
+            @RequestParam(defaultValue = "30") Integer days,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "50") Integer size) {
+        return pageResponse(batchService.getExpiringBatches(days, page, size));
     }
     
     @GetMapping("/low-stock")
-    @Operation(summary = "Get low stock batches", description = "Retrieve batches with low stock")
+    @Operation(summary = "Get low stock batches", description = "Retrieve a page of batches with low stock, lowest first. Total count in X-Total-Count.")
     public ResponseEntity<List<BatchResponse>> getLowStockBatches(
-            @RequestParam(defaultValue = "10") Integer threshold) {
-        List<BatchResponse> response = batchService.getLowStockBatches(threshold);
-        return ResponseEntity.ok(response);
+            @RequestParam(defaultValue = "10") Integer threshold,
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "50") Integer size) {
+        return pageResponse(batchService.getLowStockBatches(threshold, page, size));
     }
     
     @GetMapping
-    @Operation(summary = "Get all batches", description = "Retrieve all batches ordered by creation date (purchase history)")
-    public ResponseEntity<List<BatchResponse>> getAllBatches() {
-        List<BatchResponse> response = batchService.getAllBatches();
-        return ResponseEntity.ok(response);
+    @Operation(summary = "Get all batches", description = "Retrieve a page of batches ordered by creation date (purchase history). Total count in X-Total-Count.")
+    public ResponseEntity<List<BatchResponse>> getAllBatches(
+            @RequestParam(defaultValue = "0") Integer page,
+            @RequestParam(defaultValue = "50") Integer size) {
+        return pageResponse(batchService.getAllBatches(page, size));
     }
     
     @GetMapping("/barcode/{barcode}")
@@ -121,6 +145,16 @@ public class BatchController {
         return ResponseEntity.noContent().build();
     }
     
+    @PostMapping(value = "/stock-take", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    @Operation(summary = "Stock take", description = "Upload a whole physical count as CSV: one \"batchId,countedQuantity\" or scanned unit barcode per line. Differences are applied in one pass and audited once per session; dryRun only reports them.")
+    public ResponseEntity<StockTakeResponse> stockTake(
+            @RequestParam(defaultValue = "false") Boolean dryRun,
+            @AuthenticationPrincipal User user,
+            HttpServletRequest httpRequest) throws IOException {
+        StockTakeResponse response = stockTakeService.reconcile(httpRequest.getReader(), dryRun, user, httpRequest);
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/{id}/barcodes")
     @Operation(summary = "Get barcodes for batch", description = "Retrieve all barcodes (available and sold) for a batch")
     public ResponseEntity<List<StockBarcodeResponse>> getBarcodesByBatch(@PathVariable Long id) {
@@ -149,5 +183,51 @@ public class BatchController {
         stockBarcodeService.deleteBarcodesFromBatch(id, barcodeIds, user, httpRequest);
         return ResponseEntity.noContent().build();
     }
+    
+    @DeleteMapping("/{id}/barcodes/unsold")
+    @Operation(summary = "Delete all unsold barcodes from batch", description = "Recall: delete every unsold unit barcode of a batch (including range units) and decrease stock count. Sold units are kept for returns.")
+    public ResponseEntity<Void> deleteUnsoldBarcodesFromBatch(
+            @PathVariable Long id,
+            @AuthenticationPrincipal User user,
+            HttpServletRequest httpRequest) {
+        stockBarcodeService.deleteUnsoldBarcodesFromBatch(id, user, httpRequest);
+        return ResponseEntity.noContent().build();
+    }
+    
+    @GetMapping("/{id}/barcode-ranges")
+    @Operation(summary = "Get barcode ranges for batch", description = "Retrieve sequential serial barcode ranges stored for a batch")
+    public ResponseEntity<List<StockBarcodeRangeResponse>> getBarcodeRangesByBatch(@PathVariable Long id) {
+        List<StockBarcodeRangeResponse> response = stockBarcodeService.getBarcodeRangesByBatchId(id);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/{id}/barcode-ranges")
+    @Operation(summary = "Add barcode range to batch", description = "Add sequential barcodes from firstBarcode to lastBarcode (e.g. LOT123-000001 to LOT123-005000) as one range and update stock count")
+    public ResponseEntity<StockBarcodeRangeResponse> addBarcodeRangeToBatch(
+            @PathVariable Long id,
+            @Valid @RequestBody AddBarcodeRangeRequest request,
+            @AuthenticationPrincipal User user,
+            HttpServletRequest httpRequest) {
+        StockBarcodeRangeResponse response = stockBarcodeService.addBarcodeRangeToBatch(id, request, user, httpRequest);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+    
+    @DeleteMapping("/{id}/barcode-ranges/{rangeId}")
+    @Operation(summary = "Delete barcode range from batch", description = "Delete the available units of a barcode range and decrease stock count. Sold units are kept for returns.")
+    public ResponseEntity<Void> deleteBarcodeRangeFromBatch(
+            @PathVariable Long id,
+            @PathVariable Long rangeId,
+            @AuthenticationPrincipal User user,
+            HttpServletRequest httpRequest) {
+        stockBarcodeService.deleteBarcodeRangeFromBatch(id, rangeId, user, httpRequest);
+        return ResponseEntity.noContent().build();
+    }
+    
+    // The body stays a plain list; the total for the pager goes in a header
+    private static <T> ResponseEntity<List<T>> pageResponse(Page<T> page) {
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(page.getTotalElements()))
+                .body(page.getContent());
+    }
 }
 
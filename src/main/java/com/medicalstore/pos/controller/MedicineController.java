@@ -54,6 +54,14 @@ public class MedicineController {
         return ResponseEntity.ok(response);
     }
     
+    @GetMapping("/low-stock")
+    @Operation(summary = "Get low stock medicines", description = "Medicines at or below their reorder level; with includeOutOfStock, also those with no unexpired stock")
+    public ResponseEntity<List<MedicineResponse>> getLowStockMedicines(
+            @RequestParam(defaultValue = "false") boolean includeOutOfStock) {
+        List<MedicineResponse> response = medicineService.getLowStockMedicines(includeOutOfStock);
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/search")
     @Operation(summary = "Search medicines", description = "Search medicines by name or barcode")
     public ResponseEntity<List<MedicineResponse>> searchMedicines(@RequestParam String name) {
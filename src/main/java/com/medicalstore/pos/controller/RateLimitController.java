@@ -0,0 +1,32 @@
+package com.medicalstore.pos.controller;
+
+import com.medicalstore.pos.dto.response.RateLimitStatsResponse;
+import com.medicalstore.pos.security.RateLimitFilter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/rate-limits")
+@Tag(name = "Rate Limits", description = "Rate limiting statistics APIs")
+@SecurityRequirement(name = "bearerAuth")
+public class RateLimitController {
+
+    private final RateLimitFilter rateLimitFilter;
+
+    public RateLimitController(RateLimitFilter rateLimitFilter) {
+        this.rateLimitFilter = rateLimitFilter;
+    }
+
+    @GetMapping
+    @Operation(summary = "Get rate limit statistics", description = "Allowed and throttled request counts per endpoint group")
+    public ResponseEntity<List<RateLimitStatsResponse>> getStats() {
+        return ResponseEntity.ok(rateLimitFilter.getStats());
+    }
+}
@@ -1,9 +1,13 @@
 package com.medicalstore.pos.controller;
 
 import com.medicalstore.pos.dto.response.GstReportResponse;
+import com.medicalstore.pos.dto.response.LowStockReportResponse;
 import com.medicalstore.pos.dto.response.SalesReportResponse;
+import com.medicalstore.pos.dto.response.StockLedgerCheckResponse;
+import com.medicalstore.pos.dto.response.StockMovementReportResponse;
 import com.medicalstore.pos.dto.response.StockReportResponse;
 import com.medicalstore.pos.service.ReportingService;
+import com.medicalstore.pos.service.StockLedgerVerifier;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -20,9 +24,11 @@ import java.time.LocalDate;
 public class ReportController {
     
     private final ReportingService reportingService;
+    private final StockLedgerVerifier stockLedgerVerifier;
     
-    public ReportController(ReportingService reportingService) {
+    public ReportController(ReportingService reportingService, StockLedgerVerifier stockLedgerVerifier) {
         this.reportingService = reportingService;
+        this.stockLedgerVerifier = stockLedgerVerifier;
     }
     
     @GetMapping("/sales")
@@ -59,5 +65,27 @@ public class ReportController {
         StockReportResponse response = reportingService.getStockReport();
         return ResponseEntity.ok(response);
     }
+    
+    @GetMapping("/low-stock")
+    @Operation(summary = "Get low stock report", description = "Get medicines at or below their reorder level and those out of stock")
+    public ResponseEntity<LowStockReportResponse> getLowStockReport() {
+        LowStockReportResponse response = reportingService.getLowStockReport();
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/stock-movements")
+    @Operation(summary = "Get stock movement report", description = "Get movement velocity and ledger stock value per medicine over the last N days")
+    public ResponseEntity<StockMovementReportResponse> getStockMovementReport(
+            @RequestParam(defaultValue = "30") Integer days) {
+        StockMovementReportResponse response = reportingService.getStockMovementReport(days);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/stock-ledger/verify")
+    @Operation(summary = "Verify stock ledger", description = "Check that every batch quantity equals the sum of its stock movements")
+    public ResponseEntity<StockLedgerCheckResponse> verifyStockLedger() {
+        StockLedgerCheckResponse response = stockLedgerVerifier.verify();
+        return ResponseEntity.ok(response);
+    }
 }
 
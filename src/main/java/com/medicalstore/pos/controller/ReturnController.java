@@ -2,6 +2,7 @@ package com.medicalstore.pos.controller;
 
 import com.medicalstore.pos.dto.request.ReturnRequest;
 import com.medicalstore.pos.dto.response.BillResponse;
+import com.medicalstore.pos.dto.response.ReturnPageResponse;
 import com.medicalstore.pos.dto.response.ReturnResponse;
 import com.medicalstore.pos.entity.User;
 import com.medicalstore.pos.service.ReturnService;
@@ -10,11 +11,13 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -40,10 +43,21 @@ public class ReturnController {
     }
     
     @GetMapping
-    @Operation(summary = "Get all returns", description = "Get a list of all processed returns")
-    public ResponseEntity<List<ReturnResponse>> getAllReturns() {
-        List<ReturnResponse> returns = returnService.getAllReturns();
-        return ResponseEntity.ok(returns);
+    @Operation(summary = "Get returns", description = "Get a page of processed returns, newest first, optionally " +
+            "within a date range (inclusive) and for one bill. Pass the X-Next-Cursor header back as 'after' " +
+            "for the next page; it is absent on the last page.")
+    public ResponseEntity<List<ReturnResponse>> getReturns(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long billId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") Integer size) {
+        ReturnPageResponse page = returnService.getReturns(from, to, billId, after, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getReturns());
     }
     
     @GetMapping("/{id}")
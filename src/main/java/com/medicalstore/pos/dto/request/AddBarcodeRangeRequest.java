@@ -0,0 +1,13 @@
+package com.medicalstore.pos.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class AddBarcodeRangeRequest {
+    @NotBlank(message = "First barcode is required")
+    private String firstBarcode; // e.g. LOT123-000001
+    
+    @NotBlank(message = "Last barcode is required")
+    private String lastBarcode; // e.g. LOT123-005000
+}
@@ -4,6 +4,8 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class BillItemRequest {
     // Either medicineId or barcode must be provided
@@ -11,6 +13,8 @@ public class BillItemRequest {
     
     private String barcode; // Optional: for barcode scanning
     
+    private List<String> unitBarcodes; // Optional: scanned unit barcodes, one per unit sold (quantity must match)
+    
     @NotNull(message = "Quantity is required")
     @Min(value = 1, message = "Quantity must be at least 1")
     private Integer quantity;
@@ -34,6 +34,9 @@ public class CreateMedicineRequest {
     @NotNull(message = "Prescription required flag is required")
     private Boolean prescriptionRequired;
     
+    @PositiveOrZero(message = "Reorder level must be positive or zero")
+    private Integer reorderLevel; // Optional: low stock at or below this (default: 10)
+    
     // Optional: Initial stock and pricing (creates batch automatically)
     private Integer initialStock;
     
@@ -4,6 +4,8 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class ReturnItemRequest {
     @NotNull(message = "Bill item ID is required")
@@ -12,6 +14,8 @@ public class ReturnItemRequest {
     @NotNull(message = "Quantity is required")
     @Min(value = 1, message = "Quantity must be at least 1")
     private Integer quantity;
+    
+    private List<String> unitBarcodes; // Optional: unit barcodes being returned (quantity must match)
 }
 
 
@@ -1,5 +1,6 @@
 package com.medicalstore.pos.dto.request;
 
+import com.medicalstore.pos.entity.Payment;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
@@ -19,6 +20,10 @@ public class ReturnRequest {
     @NotEmpty(message = "Return items cannot be empty")
     @Valid
     private List<ReturnItemRequest> items;
+    
+    private Payment.PaymentMode refundMode;  // Optional: defaults to how the bill was paid
+    
+    private String refundReference;          // Optional: e.g. the UPI or card reversal id
 }
 
 
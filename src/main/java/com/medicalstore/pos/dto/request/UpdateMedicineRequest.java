@@ -28,5 +28,8 @@ public class UpdateMedicineRequest {
     
     @NotNull(message = "Prescription required flag is required")
     private Boolean prescriptionRequired;
+    
+    @PositiveOrZero(message = "Reorder level must be positive or zero")
+    private Integer reorderLevel; // Optional: unchanged when omitted
 }
 
@@ -1,5 +1,6 @@
 package com.medicalstore.pos.dto.response;
 
+import com.medicalstore.pos.entity.Batch;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -23,6 +24,7 @@ public class BatchResponse {
     private BigDecimal sellingPrice;
     private Integer quantityAvailable;
     private Boolean expired;
+    private Batch.ExpiryStatus expiryStatus;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
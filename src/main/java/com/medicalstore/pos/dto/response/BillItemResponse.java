@@ -17,6 +17,8 @@ public class BillItemResponse {
     private String medicineName;
     private String batchNumber;
     private Integer quantity;
+    private Integer returnedQuantity;
+    private Integer netQuantity;        // quantity - returnedQuantity
     private BigDecimal unitPrice;
     private BigDecimal gstPercentage;
     private BigDecimal gstAmount;
@@ -18,8 +18,12 @@ public class GstReportResponse {
     private LocalDate endDate;
     private BigDecimal totalCgst;
     private BigDecimal totalSgst;
-    private BigDecimal totalGst;
-    private List<GstBreakup> gstBreakup;
+    private BigDecimal totalGst;            // Output GST on sales
+    private BigDecimal creditNoteCgst;      // GST given back on returns, as negative amounts
+    private BigDecimal creditNoteSgst;
+    private BigDecimal creditNoteGst;
+    private BigDecimal netGst;              // totalGst + creditNoteGst
+    private List<GstBreakup> gstBreakup;    // One SALE and one CREDIT_NOTE line per HSN code and rate
     
     @Data
     @NoArgsConstructor
@@ -29,6 +33,8 @@ public class GstReportResponse {
         private String hsnCode;
         private String medicineName;
         private BigDecimal gstPercentage;
+        private String entryType;           // SALE or CREDIT_NOTE; credit note amounts are negative
+        private Integer quantity;
         private BigDecimal taxableAmount;
         private BigDecimal cgst;
         private BigDecimal sgst;
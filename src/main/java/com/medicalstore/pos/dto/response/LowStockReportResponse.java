@@ -0,0 +1,36 @@
+package com.medicalstore.pos.dto.response;
+
+import com.medicalstore.pos.entity.Medicine;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LowStockReportResponse {
+    private LocalDate reportDate;
+    private Integer lowStockMedicines;
+    private Integer outOfStockMedicines;
+    private List<Item> lowStockItems;       // Lowest available stock first
+    private List<Item> outOfStockItems;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private Long medicineId;
+        private String medicineName;
+        private String manufacturer;
+        private String category;
+        private Medicine.Status status;
+        private Integer availableStock;     // Unexpired stock
+        private Integer reorderLevel;
+    }
+}
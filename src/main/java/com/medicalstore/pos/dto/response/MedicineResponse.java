@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Data
@@ -24,12 +25,14 @@ public class MedicineResponse {
     private Boolean prescriptionRequired;
     private Medicine.Status status;
     
-    // Stock information (real-time)
+    // Stock information (maintained with every stock change)
     private Integer totalStock;           // Total stock across all batches
     private Integer availableStock;       // Stock in non-expired batches only
+    private Integer expiredStock;         // Stock in expired batches
+    private LocalDate nextExpiryDate;     // Earliest expiry among non-expired batches with stock
     private Boolean lowStock;              // True if stock is below threshold
     private Boolean outOfStock;           // True if no available stock
-    private Integer lowStockThreshold;    // Threshold for low stock alert (default: 10)
+    private Integer lowStockThreshold;    // The medicine's reorder level (default: 10)
     
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
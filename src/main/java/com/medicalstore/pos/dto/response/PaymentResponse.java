@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 public class PaymentResponse {
     private Long id;
     private String paymentReference;
+    private Payment.PaymentType type;
     private Payment.PaymentMode mode;
     private BigDecimal amount;
     private Payment.PaymentStatus status;
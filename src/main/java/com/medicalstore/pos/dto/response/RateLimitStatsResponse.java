@@ -0,0 +1,17 @@
+package com.medicalstore.pos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RateLimitStatsResponse {
+    private String group;
+    private Long allowed;
+    private Long throttledByUser;
+    private Long throttledByIp;
+}
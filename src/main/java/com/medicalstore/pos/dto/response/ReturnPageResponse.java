@@ -0,0 +1,17 @@
+package com.medicalstore.pos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReturnPageResponse {
+    private List<ReturnResponse> returns;   // Newest first
+    private String nextCursor;              // Pass back as "after" for the next page; null on the last page
+}
@@ -1,5 +1,6 @@
 package com.medicalstore.pos.dto.response;
 
+import com.medicalstore.pos.entity.Payment;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,9 +20,15 @@ public class SalesReportResponse {
     private Integer totalBills;
     private BigDecimal totalSales;
     private BigDecimal totalGst;
+    private Integer totalReturns;
+    private BigDecimal totalRefunds;        // GST inclusive, on the day of the return
+    private BigDecimal refundedGst;
+    private BigDecimal netSales;            // totalSales - totalRefunds
+    private BigDecimal netGst;              // totalGst - refundedGst
     private BigDecimal totalCash;
     private BigDecimal totalUpi;
     private BigDecimal totalCard;
+    private List<PaymentModeTotal> paymentModes;    // Collected, refunded and net per mode
     private List<DailySales> dailySales;
     
     @Data
@@ -32,6 +39,20 @@ public class SalesReportResponse {
         private LocalDate date;
         private Integer billCount;
         private BigDecimal totalAmount;
+        private Integer returnCount;
+        private BigDecimal refundAmount;
+        private BigDecimal netAmount;
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PaymentModeTotal {
+        private Payment.PaymentMode mode;
+        private BigDecimal collected;
+        private BigDecimal refunded;            // Negative
+        private BigDecimal net;                 // What the mode should hold, e.g. the cash drawer
     }
 }
 
@@ -0,0 +1,25 @@
+package com.medicalstore.pos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockBarcodeRangeResponse {
+    private Long id;
+    private Long batchId;
+    private String firstBarcode;
+    private String lastBarcode;
+    private Integer units;
+    private Integer soldCount;
+    private Integer removedCount;
+    private Integer availableCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,33 @@
+package com.medicalstore.pos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockLedgerCheckResponse {
+    private LocalDateTime checkedAt;
+    private Long batchesChecked;
+    private Integer partitions;         // Batch id ranges checked in parallel
+    private Long durationMs;
+    private List<Mismatch> mismatches;  // Batches whose quantity differs from the sum of their movements
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Mismatch {
+        private Long batchId;
+        private String batchNumber;
+        private Integer quantityAvailable;
+        private Integer ledgerQuantity;
+        private Integer difference;     // quantityAvailable - ledgerQuantity
+    }
+}
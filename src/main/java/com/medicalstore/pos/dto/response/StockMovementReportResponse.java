@@ -0,0 +1,39 @@
+package com.medicalstore.pos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockMovementReportResponse {
+    private LocalDateTime since;
+    private Integer days;
+    private BigDecimal totalStockValue;         // Ledger stock at the cost it was received at
+    private List<MedicineMovement> medicines;   // Fastest moving first
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class MedicineMovement {
+        private Long medicineId;
+        private String medicineName;
+        private Integer received;               // Units in the window, by movement type
+        private Integer sold;
+        private Integer returned;
+        private Integer cancelled;
+        private Integer adjusted;               // Net of manual edits, removals and stock-takes
+        private Integer netChange;
+        private BigDecimal unitsSoldPerDay;     // Sales net of returns, over the window
+        private Integer stockOnHand;            // Sum of all movements
+        private BigDecimal stockValue;
+    }
+}
@@ -0,0 +1,37 @@
+package com.medicalstore.pos.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockTakeResponse {
+    private String sessionId;
+    private Boolean dryRun;             // true: differences computed, nothing changed
+    private Integer linesRead;
+    private Integer batchesCounted;
+    private Integer batchesAdjusted;
+    private Integer unitsAdded;         // Sum of positive differences
+    private Integer unitsRemoved;       // Sum of negative differences (as a positive number)
+    private List<Long> unknownBatchIds;
+    private List<String> unknownBarcodes;
+    private List<Adjustment> adjustments;  // Batches whose count differs from the stored quantity
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Adjustment {
+        private Long batchId;
+        private String batchNumber;
+        private Integer expectedQuantity;
+        private Integer countedQuantity;
+        private Integer difference;
+    }
+}
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
     @Index(name = "idx_batch_medicine", columnList = "medicine_id"),
     @Index(name = "idx_batch_expiry", columnList = "expiryDate"),
     @Index(name = "idx_batch_number", columnList = "batchNumber"),
-    @Index(name = "idx_batch_medicine_expiry", columnList = "medicine_id,expiryDate")
+    @Index(name = "idx_batch_medicine_expiry", columnList = "medicine_id,expiryDate"),
+    @Index(name = "idx_batch_expiry_status", columnList = "expiryStatus")
 })
 @Data
 @NoArgsConstructor
@@ -46,6 +47,12 @@ public class Batch {
     @Column(nullable = false)
     private Integer quantityAvailable;
     
+    // Kept current by the nightly expiry sweep; recomputed whenever the batch is saved
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private ExpiryStatus expiryStatus = ExpiryStatus.OK;
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
@@ -58,20 +65,43 @@ public class Batch {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        expiryStatus = ExpiryStatus.of(expiryDate, LocalDate.now());
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        expiryStatus = ExpiryStatus.of(expiryDate, LocalDate.now());
     }
     
+    // A batch can no longer be sold from its expiry date on
     public boolean isExpired() {
-        return expiryDate.isBefore(LocalDate.now());
+        return expiryStatus == ExpiryStatus.EXPIRED;
     }
     
     public boolean hasStock(int quantity) {
         return quantityAvailable >= quantity;
     }
+    
+    public enum ExpiryStatus {
+        OK,
+        EXPIRING_90,  // Expires within 90 days
+        EXPIRING_30,  // Expires within 30 days
+        EXPIRED;
+        
+        public static ExpiryStatus of(LocalDate expiryDate, LocalDate today) {
+            if (!expiryDate.isAfter(today)) {
+                return EXPIRED;
+            }
+            if (!expiryDate.isAfter(today.plusDays(30))) {
+                return EXPIRING_30;
+            }
+            if (!expiryDate.isAfter(today.plusDays(90))) {
+                return EXPIRING_90;
+            }
+            return OK;
+        }
+    }
 }
 
 
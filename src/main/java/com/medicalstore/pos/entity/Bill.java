@@ -28,7 +28,8 @@ import java.util.List;
 public class Bill {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bill_seq")
+    @SequenceGenerator(name = "bill_seq", sequenceName = "bills_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, unique = true, length = 50)
@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 
@@ -24,7 +25,8 @@ import java.math.BigDecimal;
 public class BillItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bill_item_seq")
+    @SequenceGenerator(name = "bill_item_seq", sequenceName = "bill_items_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -56,6 +58,19 @@ public class BillItem {
     
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal totalAmount;
+    
+    // Units returned so far across all returns; ReturnService updates it while holding the bill lock
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer returnedQuantity = 0;
+    
+    /**
+     * Units sold and not returned
+     */
+    public int netQuantity() {
+        return quantity - returnedQuantity;
+    }
 }
 
 
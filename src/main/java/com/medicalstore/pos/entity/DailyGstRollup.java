@@ -0,0 +1,73 @@
+package com.medicalstore.pos.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One stripe of a day's sold or returned units of an HSN code and GST rate. Written only by
+ * SalesRollup's upserts; amounts are stored positive for both entry types.
+ */
+@Entity
+@Table(name = "daily_gst_rollups")
+@IdClass(DailyGstRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyGstRollup {
+    
+    @Id
+    private LocalDate salesDate;
+    
+    @Id
+    @Column(length = 20)
+    private String hsnCode;
+    
+    @Id
+    @Column(precision = 5, scale = 2)
+    private BigDecimal gstPercentage;
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private EntryType entryType;
+    
+    @Id
+    private Integer stripe; // Bill id modulo SalesRollup.STRIPES
+    
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Integer quantity;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    @ColumnDefault("0")
+    private BigDecimal taxableAmount;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    @ColumnDefault("0")
+    private BigDecimal gstAmount;
+    
+    public enum EntryType {
+        SALE,        // Bill lines, taken back out when the bill is cancelled
+        CREDIT_NOTE  // Returned lines, on the return date
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDate;
+        private String hsnCode;
+        private BigDecimal gstPercentage;
+        private EntryType entryType;
+        private Integer stripe;
+    }
+}
@@ -0,0 +1,64 @@
+package com.medicalstore.pos.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One stripe of a day's sales and returns. Written only by SalesRollup's upserts and read by summing
+ * a day's stripes; mapped so the table is created and validated with the rest of the schema.
+ */
+@Entity
+@Table(name = "daily_sales_rollups")
+@IdClass(DailySalesRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailySalesRollup {
+    
+    @Id
+    private LocalDate salesDate;
+    
+    @Id
+    private Integer stripe; // Bill id modulo SalesRollup.STRIPES
+    
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Integer bills;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    @ColumnDefault("0")
+    private BigDecimal sales;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    @ColumnDefault("0")
+    private BigDecimal gst;
+    
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Integer returns;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    @ColumnDefault("0")
+    private BigDecimal refunds; // GST inclusive
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    @ColumnDefault("0")
+    private BigDecimal refundGst;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDate;
+        private Integer stripe;
+    }
+}
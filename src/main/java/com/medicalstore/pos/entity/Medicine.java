@@ -5,8 +5,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
@@ -22,6 +24,8 @@ import java.time.LocalDateTime;
 @Builder
 public class Medicine {
     
+    public static final int DEFAULT_REORDER_LEVEL = 10;
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -53,6 +57,27 @@ public class Medicine {
     @Builder.Default
     private Status status = Status.ACTIVE;
     
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer reorderLevel = DEFAULT_REORDER_LEVEL; // Available stock at or below this is low stock
+    
+    // Stock summary over this medicine's batches, written only by SQL: StockLedger refreshes it in the
+    // transaction of every stock change and the expiry sweep when batches change bucket
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer totalStock;
+    
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer availableStock; // In batches that are not expired
+    
+    @Column(nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer expiredStock;
+    
+    @Column(insertable = false, updatable = false)
+    private LocalDate nextExpiryDate; // Earliest expiry among unexpired batches with stock
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
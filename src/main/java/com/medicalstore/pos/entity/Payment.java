@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -21,18 +22,29 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@ToString(exclude = {"bill"})
-@EqualsAndHashCode(exclude = {"bill"})
+@ToString(exclude = {"bill", "returnEntity"})
+@EqualsAndHashCode(exclude = {"bill", "returnEntity"})
 public class Payment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "bill_id", nullable = false, foreignKey = @ForeignKey(name = "fk_payment_bill"))
     private Bill bill;
     
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "return_id", foreignKey = @ForeignKey(name = "fk_payment_return"))
+    private Return returnEntity; // Return a REFUND was paid out for
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @ColumnDefault("'SALE'")
+    @Builder.Default
+    private PaymentType type = PaymentType.SALE;
+    
     @Column(nullable = false, length = 100, unique = true)
     private String paymentReference;
     
@@ -41,7 +53,7 @@ public class Payment {
     private PaymentMode mode;
     
     @Column(nullable = false, precision = 10, scale = 2)
-    private BigDecimal amount;
+    private BigDecimal amount; // Negative for refunds, so summing a mode gives its net takings
     
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
@@ -61,6 +73,11 @@ public class Payment {
         }
     }
     
+    public enum PaymentType {
+        SALE,    // Taken against a bill
+        REFUND   // Paid back for a return
+    }
+    
     public enum PaymentMode {
         CASH, UPI, CARD
     }
@@ -20,7 +20,8 @@ import java.math.BigDecimal;
 public class ReturnItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "return_item_seq")
+    @SequenceGenerator(name = "return_item_seq", sequenceName = "return_items_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
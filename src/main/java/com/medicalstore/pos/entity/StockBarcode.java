@@ -20,8 +20,13 @@ import java.time.LocalDateTime;
 @Builder
 public class StockBarcode {
     
+    // Pooled sequence so inserts can be batched; bulk ingest allocates ids from the same blocks
+    public static final String ID_SEQUENCE = "stock_barcodes_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+    
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_barcode_seq")
+    @SequenceGenerator(name = "stock_barcode_seq", sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,6 +40,10 @@ public class StockBarcode {
     @Builder.Default
     private Boolean sold = false; // Track if this item has been sold
     
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bill_item_id", foreignKey = @ForeignKey(name = "fk_barcode_bill_item"))
+    private BillItem billItem; // Bill item the unit was sold on, so returns can only restore units from that line
+    
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
     
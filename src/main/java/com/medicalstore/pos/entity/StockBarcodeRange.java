@@ -0,0 +1,231 @@
+package com.medicalstore.pos.entity;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+/**
+ * A run of sequential unit barcodes stored as one row: prefix + zero-padded serial,
+ * e.g. LOT123-000001 .. LOT123-005000. Sold and removed units are tracked in bitmaps
+ * indexed by (serial - startSerial), so a 5000-unit batch costs one row and ~1 KB.
+ * Coexists with individual StockBarcode rows; a barcode is never in both.
+ */
+@Entity
+@Table(name = "stock_barcode_ranges", indexes = {
+    @Index(name = "idx_barcode_range_lookup", columnList = "prefix,serialWidth,startSerial"),
+    @Index(name = "idx_barcode_range_batch", columnList = "batch_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockBarcodeRange {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "batch_id", nullable = false, foreignKey = @ForeignKey(name = "fk_barcode_range_batch"))
+    @ToString.Exclude
+    private Batch batch;
+    
+    @Column(nullable = false, length = 100)
+    private String prefix;
+    
+    @Column(nullable = false)
+    private Integer serialWidth; // Digits in the serial, including leading zeros
+    
+    @Column(nullable = false)
+    private Long startSerial;
+    
+    @Column(nullable = false)
+    private Long endSerial;
+    
+    @Column(nullable = false)
+    @Builder.Default
+    @ToString.Exclude
+    private byte[] soldUnits = new byte[0];
+    
+    @Column(nullable = false)
+    @Builder.Default
+    @ToString.Exclude
+    private byte[] removedUnits = new byte[0];
+    
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer soldCount = 0;
+    
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer removedCount = 0;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime updatedAt;
+    
+    @Version
+    private Long version;
+    
+    // Bitmaps decoded on first use and encoded back into the columns before insert or update.
+    // Every bit change also moves soldCount or removedCount, so the row is always seen as dirty.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient BitSet soldBits;
+    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient BitSet removedBits;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+        encodeBits();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+        encodeBits();
+    }
+    
+    // Loads and refreshes replace the columns, so decode them again
+    @PostLoad
+    protected void onLoad() {
+        soldBits = null;
+        removedBits = null;
+    }
+    
+    public byte[] getSoldUnits() {
+        encodeBits();
+        return soldUnits;
+    }
+    
+    public void setSoldUnits(byte[] soldUnits) {
+        this.soldUnits = soldUnits;
+        soldBits = null;
+    }
+    
+    public byte[] getRemovedUnits() {
+        encodeBits();
+        return removedUnits;
+    }
+    
+    public void setRemovedUnits(byte[] removedUnits) {
+        this.removedUnits = removedUnits;
+        removedBits = null;
+    }
+    
+    public int size() {
+        return (int) (endSerial - startSerial + 1);
+    }
+    
+    public String barcodeAt(long serial) {
+        return new Serial(prefix, serialWidth, serial).toBarcode();
+    }
+    
+    public boolean isSold(long serial) {
+        return soldBits().get(offset(serial));
+    }
+    
+    public boolean isRemoved(long serial) {
+        return removedBits().get(offset(serial));
+    }
+    
+    public void setSold(long serial, boolean sold) {
+        BitSet bits = soldBits();
+        int offset = offset(serial);
+        if (bits.get(offset) != sold) {
+            bits.set(offset, sold);
+            soldCount += sold ? 1 : -1;
+        }
+    }
+    
+    /**
+     * Marks every unit that is neither sold nor already removed as removed.
+     * Returns the number of units removed.
+     */
+    public int removeAvailable() {
+        BitSet available = new BitSet(size());
+        available.set(0, size());
+        available.andNot(soldBits());
+        available.andNot(removedBits());
+        int count = available.cardinality();
+        removedBits().or(available);
+        removedCount += count;
+        return count;
+    }
+    
+    public int getAvailableCount() {
+        return size() - soldCount - removedCount;
+    }
+    
+    private int offset(long serial) {
+        return (int) (serial - startSerial);
+    }
+    
+    private BitSet soldBits() {
+        if (soldBits == null) {
+            soldBits = BitSet.valueOf(soldUnits);
+        }
+        return soldBits;
+    }
+    
+    private BitSet removedBits() {
+        if (removedBits == null) {
+            removedBits = BitSet.valueOf(removedUnits);
+        }
+        return removedBits;
+    }
+    
+    private void encodeBits() {
+        if (soldBits != null) {
+            soldUnits = soldBits.toByteArray();
+        }
+        if (removedBits != null) {
+            removedUnits = removedBits.toByteArray();
+        }
+    }
+    
+    /**
+     * A barcode split into its non-numeric prefix and trailing numeric serial
+     */
+    public record Serial(String prefix, int width, long value) {
+        
+        private static final int MAX_WIDTH = 18;
+        
+        /**
+         * Returns null when the barcode has no trailing digits (or too many to fit a long)
+         */
+        public static Serial parse(String barcode) {
+            int end = barcode.length();
+            int start = end;
+            while (start > 0 && Character.isDigit(barcode.charAt(start - 1)) && barcode.charAt(start - 1) < 128) {
+                start--;
+            }
+            int width = end - start;
+            if (width == 0 || width > MAX_WIDTH) {
+                return null;
+            }
+            return new Serial(barcode.substring(0, start), width, Long.parseLong(barcode.substring(start)));
+        }
+        
+        public String toBarcode() {
+            String digits = Long.toString(value);
+            return prefix + "0".repeat(Math.max(0, width - digits.length())) + digits;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.medicalstore.pos.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One change to a batch's quantityAvailable, in an append-only ledger: rows are only ever inserted
+ * (by StockLedger, once per transaction), so a batch's quantity is the sum of its movements.
+ * Batch and medicine are plain ids rather than foreign keys so the history outlives deleted batches.
+ */
+@Entity
+@Table(name = "stock_movements", indexes = {
+    @Index(name = "idx_stock_movement_batch", columnList = "batchId"),
+    @Index(name = "idx_stock_movement_medicine_time", columnList = "medicineId,createdAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockMovement {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, updatable = false)
+    private Long batchId;
+    
+    @Column(nullable = false, updatable = false)
+    private Long medicineId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false, length = 20)
+    private MovementType type;
+    
+    @Column(nullable = false, updatable = false)
+    private Integer quantity; // Signed change to quantityAvailable
+    
+    @Column(nullable = false, updatable = false, precision = 10, scale = 2)
+    private BigDecimal unitCost; // Batch purchase price when the movement was recorded
+    
+    @Column(updatable = false, length = 100)
+    private String reference; // Bill number, return number or stock-take session
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    public enum MovementType {
+        OPENING,     // Balance carried over when the ledger was introduced
+        RECEIPT,     // New batch or units added to one
+        SALE,
+        RETURN,
+        CANCEL,      // Stock restored by a cancelled bill
+        ADJUSTMENT   // Manual edits, unit removals and stock-take corrections
+    }
+}
@@ -0,0 +1,44 @@
+package com.medicalstore.pos.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits one operation into phases.
+ * Each mark() attributes the time since the previous mark to the named phase;
+ * phases that repeat (e.g. allocation per bill item) are summed and recorded once on stop().
+ * Not thread-safe: one instance per invocation.
+ */
+public class PhaseTimer {
+    
+    private final MeterRegistry registry;
+    private final String operation;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private long last;
+    
+    PhaseTimer(MeterRegistry registry, String operation) {
+        this.registry = registry;
+        this.operation = operation;
+        this.last = System.nanoTime();
+    }
+    
+    public void mark(String phase) {
+        long now = System.nanoTime();
+        phaseNanos.merge(phase, now - last, Long::sum);
+        last = now;
+    }
+    
+    public void stop() {
+        phaseNanos.forEach((phase, nanos) -> Timer.builder("pos.operation.phase")
+                .description("Time spent per phase of a POS operation")
+                .tag("operation", operation)
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS));
+    }
+}
@@ -0,0 +1,28 @@
+package com.medicalstore.pos.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Entry point for POS hot path metrics.
+ * Totals are recorded with @Timed on the service methods, the per-phase
+ * breakdown (allocation, locking, persistence, audit) with {@link PhaseTimer}.
+ */
+@Component
+public class PosMetrics {
+    
+    public static final String ALLOCATION = "allocation";
+    public static final String LOCKING = "locking";
+    public static final String PERSISTENCE = "persistence";
+    public static final String AUDIT = "audit";
+    
+    private final MeterRegistry registry;
+    
+    public PosMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+    
+    public PhaseTimer startPhases(String operation) {
+        return new PhaseTimer(registry, operation);
+    }
+}
@@ -0,0 +1,92 @@
+package com.medicalstore.pos.metrics;
+
+import com.medicalstore.pos.config.SqlBudgetProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records the number of SQL statements and entity loads of each HTTP request,
+ * tagged by the matched URI pattern. Requests over the configured SQL budget
+ * are logged with their repeated statement shapes.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestSqlMetricsFilter extends OncePerRequestFilter {
+    
+    private final MeterRegistry registry;
+    private final SqlBudgetProperties budget;
+    
+    public RequestSqlMetricsFilter(MeterRegistry registry, SqlBudgetProperties budget) {
+        this.registry = registry;
+        this.budget = budget;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        SqlStatementCounter.Counts counts = SqlStatementCounter.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            SqlStatementCounter.end();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+            record(request, uri, counts);
+            if (budget.isEnabled()) {
+                checkBudget(request, uri, counts);
+            }
+        }
+    }
+    
+    private void record(HttpServletRequest request, String uri, SqlStatementCounter.Counts counts) {
+        
+        DistributionSummary.builder("pos.request.sql.statements")
+                .description("SQL statements executed per HTTP request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry)
+                .record(counts.getStatements());
+        
+        DistributionSummary.builder("pos.request.entity.loads")
+                .description("Entities loaded by Hibernate per HTTP request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry)
+                .record(counts.getEntityLoads());
+    }
+    
+    private void checkBudget(HttpServletRequest request, String uri, SqlStatementCounter.Counts counts) {
+        List<Map.Entry<String, Integer>> repeated = counts.getRepeatedShapes(budget.getRepeatThreshold());
+        if (counts.getStatements() <= budget.getMaxStatements() && repeated.isEmpty()) {
+            return;
+        }
+        String shapes = repeated.stream()
+                .limit(budget.getReportedShapes())
+                .map(entry -> entry.getValue() + "x " + entry.getKey())
+                .collect(Collectors.joining("\n  ", "\n  ", ""));
+        log.warn("SQL budget exceeded for {} {}: {} statements (budget {}), {} entity loads, " +
+                        "{} statement shapes repeated {}+ times{}",
+                request.getMethod(), uri, counts.getStatements(), budget.getMaxStatements(),
+                counts.getEntityLoads(), repeated.size(), budget.getRepeatThreshold(),
+                repeated.isEmpty() ? "" : shapes);
+    }
+}
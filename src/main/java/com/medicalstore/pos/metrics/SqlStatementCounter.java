@@ -0,0 +1,97 @@
+package com.medicalstore.pos.metrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Per-thread counters of SQL statements and entity loads for the current HTTP request.
+ * Fed by {@link CountingStatementInspector} and the POST_LOAD listener registered
+ * in {@link HibernateMetricsConfig}; nothing is counted outside begin()/end().
+ * Statements are also grouped by shape (literals and whitespace normalized) so
+ * repeated queries can be reported.
+ */
+public final class SqlStatementCounter {
+    
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+    
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private SqlStatementCounter() {
+    }
+    
+    /**
+     * Starts counting on this thread. Scopes nest: end() restores the enclosing counts.
+     */
+    public static Counts begin() {
+        Counts counts = new Counts(CURRENT.get());
+        CURRENT.set(counts);
+        return counts;
+    }
+    
+    public static void end() {
+        Counts counts = CURRENT.get();
+        if (counts == null || counts.parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(counts.parent);
+        }
+    }
+    
+    static void recordStatement(String sql) {
+        for (Counts counts = CURRENT.get(); counts != null; counts = counts.parent) {
+            counts.statements++;
+            counts.shapes.merge(shapeOf(sql), 1, Integer::sum);
+        }
+    }
+    
+    static void recordEntityLoad() {
+        for (Counts counts = CURRENT.get(); counts != null; counts = counts.parent) {
+            counts.entityLoads++;
+        }
+    }
+    
+    /**
+     * Normalizes a statement so executions that differ only in literals or IN-list length compare equal.
+     */
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("(?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+    
+    public static class Counts {
+        private final Counts parent;
+        private final Map<String, Integer> shapes = new HashMap<>();
+        private int statements;
+        private int entityLoads;
+        
+        private Counts(Counts parent) {
+            this.parent = parent;
+        }
+        
+        public int getStatements() {
+            return statements;
+        }
+        
+        public int getEntityLoads() {
+            return entityLoads;
+        }
+        
+        /**
+         * Statement shapes executed at least minCount times, most frequent first.
+         */
+        public List<Map.Entry<String, Integer>> getRepeatedShapes(int minCount) {
+            return shapes.entrySet().stream()
+                    .filter(entry -> entry.getValue() >= minCount)
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .collect(Collectors.toList());
+        }
+    }
+}
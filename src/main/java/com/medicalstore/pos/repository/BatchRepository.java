@@ -2,6 +2,8 @@ package com.medicalstore.pos.repository;
 
 import com.medicalstore.pos.entity.Batch;
 import com.medicalstore.pos.entity.Medicine;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
@@ -14,7 +16,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BatchRepository extends JpaRepository<Batch, Long> {
+public interface BatchRepository extends JpaRepository<Batch, Long>, BatchRepositoryCustom {
     
     List<Batch> findByMedicine(Medicine medicine);
     
@@ -22,30 +24,50 @@ public interface BatchRepository extends JpaRepository<Batch, Long> {
     
     // FIFO: Get batches ordered by expiry date (earliest first) with available stock
     @Query("SELECT b FROM Batch b WHERE b.medicine = :medicine " +
-           "AND b.expiryDate > :currentDate " +
+           "AND b.expiryStatus <> com.medicalstore.pos.entity.Batch.ExpiryStatus.EXPIRED " +
            "AND b.quantityAvailable > 0 " +
            "ORDER BY b.expiryDate ASC")
-    List<Batch> findAvailableBatchesByMedicineOrderByExpiry(@Param("medicine") Medicine medicine, 
-                                                             @Param("currentDate") LocalDate currentDate);
+    List<Batch> findAvailableBatchesByMedicineOrderByExpiry(@Param("medicine") Medicine medicine);
     
     // Lock batch for update (pessimistic locking for concurrent billing)
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT b FROM Batch b WHERE b.id = :batchId")
     Optional<Batch> findByIdForUpdate(@Param("batchId") Long batchId);
     
-    // Find expired batches
-    @Query("SELECT b FROM Batch b WHERE b.expiryDate < :currentDate AND b.quantityAvailable > 0")
-    List<Batch> findExpiredBatches(@Param("currentDate") LocalDate currentDate);
+    // Find batches in expiry buckets (set by the expiry sweep) that still hold stock, with their medicine
+    @Query("SELECT b FROM Batch b JOIN FETCH b.medicine " +
+           "WHERE b.expiryStatus IN :statuses AND b.quantityAvailable > 0 " +
+           "ORDER BY b.expiryDate ASC, b.id ASC")
+    List<Batch> findByExpiryStatusWithStock(@Param("statuses") List<Batch.ExpiryStatus> statuses);
     
-    // Find low stock batches (quantity below threshold)
-    @Query("SELECT b FROM Batch b WHERE b.quantityAvailable <= :threshold AND b.quantityAvailable > 0")
-    List<Batch> findLowStockBatches(@Param("threshold") Integer threshold);
+    // Paged variant of findByExpiryStatusWithStock for the batch screens
+    @Query(value = "SELECT b FROM Batch b JOIN FETCH b.medicine " +
+                   "WHERE b.expiryStatus IN :statuses AND b.quantityAvailable > 0 " +
+                   "ORDER BY b.expiryDate ASC, b.id ASC",
+           countQuery = "SELECT COUNT(b) FROM Batch b " +
+                        "WHERE b.expiryStatus IN :statuses AND b.quantityAvailable > 0")
+    Page<Batch> findPageByExpiryStatusWithStock(@Param("statuses") List<Batch.ExpiryStatus> statuses,
+                                                Pageable pageable);
+    
+    // Find low stock batches (quantity below threshold), lowest stock first
+    @Query(value = "SELECT b FROM Batch b JOIN FETCH b.medicine " +
+                   "WHERE b.quantityAvailable <= :threshold AND b.quantityAvailable > 0 " +
+                   "ORDER BY b.quantityAvailable ASC, b.id ASC",
+           countQuery = "SELECT COUNT(b) FROM Batch b " +
+                        "WHERE b.quantityAvailable <= :threshold AND b.quantityAvailable > 0")
+    Page<Batch> findLowStockBatches(@Param("threshold") Integer threshold, Pageable pageable);
+    
+    // Batches of one medicine with the medicine fetched, earliest expiry first
+    @Query(value = "SELECT b FROM Batch b JOIN FETCH b.medicine WHERE b.medicine.id = :medicineId " +
+                   "ORDER BY b.expiryDate ASC, b.id ASC",
+           countQuery = "SELECT COUNT(b) FROM Batch b WHERE b.medicine.id = :medicineId")
+    Page<Batch> findPageByMedicineId(@Param("medicineId") Long medicineId, Pageable pageable);
     
     // Get total available quantity for a medicine (non-expired batches only)
     @Query("SELECT COALESCE(SUM(b.quantityAvailable), 0) FROM Batch b " +
-           "WHERE b.medicine = :medicine AND b.expiryDate > :currentDate")
-    Integer getTotalAvailableQuantity(@Param("medicine") Medicine medicine, 
-                                      @Param("currentDate") LocalDate currentDate);
+           "WHERE b.medicine = :medicine " +
+           "AND b.expiryStatus <> com.medicalstore.pos.entity.Batch.ExpiryStatus.EXPIRED")
+    Integer getTotalAvailableQuantity(@Param("medicine") Medicine medicine);
     
     // Get total stock quantity for a medicine (all batches, including expired)
     @Query("SELECT COALESCE(SUM(b.quantityAvailable), 0) FROM Batch b " +
@@ -59,7 +81,8 @@ public interface BatchRepository extends JpaRepository<Batch, Long> {
     List<Object[]> getTotalStockQuantitiesByMedicineIds(@Param("medicineIds") List<Long> medicineIds);
     
     // Get all batches ordered by creation date (for purchase history)
-    @Query("SELECT b FROM Batch b ORDER BY b.createdAt DESC")
-    List<Batch> findAllOrderByCreatedAtDesc();
+    @Query(value = "SELECT b FROM Batch b JOIN FETCH b.medicine ORDER BY b.createdAt DESC, b.id DESC",
+           countQuery = "SELECT COUNT(b) FROM Batch b")
+    Page<Batch> findAllOrderByCreatedAtDesc(Pageable pageable);
 }
 
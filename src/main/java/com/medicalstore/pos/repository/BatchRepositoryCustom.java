@@ -0,0 +1,31 @@
+package com.medicalstore.pos.repository;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BatchRepositoryCustom {
+    
+    /**
+     * A counted batch with its quantity before the count
+     */
+    record StockCount(long batchId, String batchNumber, int expectedQuantity, int countedQuantity) {
+        
+        public int difference() {
+            return countedQuantity - expectedQuantity;
+        }
+    }
+    
+    /**
+     * Compares counted quantities with the stored ones in one statement and, when apply is set,
+     * locks the batches in id order and sets the counted quantities in the same statement.
+     * Only batches that exist are returned, in id order.
+     */
+    List<StockCount> reconcileCounts(List<Long> batchIds, List<Integer> countedQuantities, boolean apply);
+    
+    /**
+     * Adds the signed quantities to their batches in one statement, locking the batches in id order.
+     * Returns each batch's new quantityAvailable; a batch that doesn't exist, or that a negative
+     * quantity would take below zero, is left untouched and missing from the result.
+     */
+    Map<Long, Integer> addQuantities(List<Long> batchIds, List<Integer> quantities);
+}
@@ -0,0 +1,104 @@
+package com.medicalstore.pos.repository;
+
+import com.medicalstore.pos.entity.Batch;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based stock-take and stock changes: quantities go in as arrays and are joined against batches,
+ * instead of one locked read, save and audit insert per batch. Runs in the caller's transaction.
+ */
+public class BatchRepositoryImpl implements BatchRepositoryCustom {
+    
+    private static final String COMPARE_SQL =
+            "SELECT b.id, b.batch_number, b.quantity_available, c.counted " +
+            "FROM unnest(?::bigint[], ?::int[]) AS c(batch_id, counted) " +
+            "JOIN batches b ON b.id = c.batch_id ORDER BY b.id";
+    
+    // Locks in id order so concurrent sessions, sales and returns can't deadlock, then writes only the changed rows
+    private static final String APPLY_SQL =
+            "WITH counted AS (" +
+            "  SELECT b.id, b.batch_number, b.quantity_available AS expected, c.counted " +
+            "  FROM unnest(?::bigint[], ?::int[]) AS c(batch_id, counted) " +
+            "  JOIN batches b ON b.id = c.batch_id ORDER BY b.id FOR UPDATE OF b" +
+            "), changed AS (" +
+            "  UPDATE batches b SET quantity_available = c.counted, " +
+            "  version = COALESCE(b.version, 0) + 1, updated_at = ? " +
+            "  FROM counted c WHERE b.id = c.id AND c.expected <> c.counted" +
+            ") " +
+            "SELECT id, batch_number, expected, counted FROM counted ORDER BY id";
+    
+    // Same id-order locking as APPLY_SQL. Sales, returns and cancellations take all their batch locks
+    // in this one statement (unit rows are flipped afterwards without touching batches), so they can't
+    // deadlock with each other or with a stock-take
+    private static final String ADD_SQL =
+            "WITH locked AS (" +
+            "  SELECT b.id, a.quantity " +
+            "  FROM unnest(?::bigint[], ?::int[]) AS a(batch_id, quantity) " +
+            "  JOIN batches b ON b.id = a.batch_id ORDER BY b.id FOR UPDATE OF b" +
+            ") " +
+            "UPDATE batches b SET quantity_available = b.quantity_available + l.quantity, " +
+            "version = COALESCE(b.version, 0) + 1, updated_at = ? " +
+            "FROM locked l WHERE b.id = l.id AND b.quantity_available + l.quantity >= 0 " +
+            "RETURNING b.id, b.quantity_available";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    
+    public BatchRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+    
+    @Override
+    public List<StockCount> reconcileCounts(List<Long> batchIds, List<Integer> countedQuantities, boolean apply) {
+        if (batchIds.isEmpty()) {
+            return List.of();
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(apply ? APPLY_SQL : COMPARE_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", batchIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("integer", countedQuantities.toArray()));
+            if (apply) {
+                statement.setTimestamp(3, now);
+            }
+            return statement;
+        }, (rs, rowNum) -> new StockCount(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getInt(4)));
+    }
+    
+    @Override
+    public Map<Long, Integer> addQuantities(List<Long> batchIds, List<Integer> quantities) {
+        Map<Long, Integer> changed = new LinkedHashMap<>();
+        if (batchIds.isEmpty()) {
+            return changed;
+        }
+        // Pending batch edits must reach the database before the statement reads the rows
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ADD_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", batchIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("integer", quantities.toArray()));
+            statement.setTimestamp(3, now);
+            return statement;
+        }, rs -> {
+            changed.put(rs.getLong(1), rs.getInt(2));
+        });
+        
+        // Batches already loaded in this session would otherwise keep, and later write back, the old quantity
+        changed.keySet().stream()
+                .map(batchId -> entityManager.getReference(Batch.class, batchId))
+                .filter(Hibernate::isInitialized)
+                .forEach(entityManager::refresh);
+        return changed;
+    }
+}
@@ -2,7 +2,9 @@ package com.medicalstore.pos.repository;
 
 import com.medicalstore.pos.entity.Bill;
 import com.medicalstore.pos.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,6 +17,15 @@ import java.util.Optional;
 public interface BillRepository extends JpaRepository<Bill, Long> {
     Optional<Bill> findByBillNumber(String billNumber);
     
+    // Lock bill for update so concurrent returns against it are serialized
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Bill b WHERE b.id = :billId")
+    Optional<Bill> findByIdForUpdate(@Param("billId") Long billId);
+    
+    // Bill items with their medicines in one query (initializes the collection of an already loaded bill)
+    @Query("SELECT DISTINCT b FROM Bill b LEFT JOIN FETCH b.billItems i LEFT JOIN FETCH i.medicine WHERE b.id = :billId")
+    Optional<Bill> findWithItemsById(@Param("billId") Long billId);
+    
     List<Bill> findByCashierAndBillDateBetween(User cashier, LocalDateTime start, LocalDateTime end);
     
     @Query("SELECT b FROM Bill b WHERE b.billDate BETWEEN :startDate AND :endDate")
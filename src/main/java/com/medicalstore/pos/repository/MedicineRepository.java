@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface MedicineRepository extends JpaRepository<Medicine, Long> {
+public interface MedicineRepository extends JpaRepository<Medicine, Long>, MedicineRepositoryCustom {
     Optional<Medicine> findByHsnCode(String hsnCode);
     Optional<Medicine> findByBarcode(String barcode); // Barcode identifies medicine product
     List<Medicine> findByNameContainingIgnoreCase(String name);
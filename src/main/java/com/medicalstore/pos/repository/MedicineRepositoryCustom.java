@@ -0,0 +1,12 @@
+package com.medicalstore.pos.repository;
+
+import java.util.Collection;
+
+public interface MedicineRepositoryCustom {
+    
+    /**
+     * Locks the medicines of the given batches in id order and recomputes their stock summary
+     * columns from their batches. Runs in the caller's transaction; returns the medicines updated.
+     */
+    int refreshStockSummariesForBatches(Collection<Long> batchIds);
+}
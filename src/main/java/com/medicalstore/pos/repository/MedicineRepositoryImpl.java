@@ -0,0 +1,60 @@
+package com.medicalstore.pos.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains the stock summary columns on medicines (total, available and expired quantity,
+ * next expiry). The medicine rows are locked before the recompute. At READ COMMITTED each
+ * statement reads the latest committed rows, so the recompute then includes every batch change
+ * committed by an earlier holder of the lock. Under REPEATABLE READ the lock would instead fail
+ * with a serialization error whenever another transaction had changed the row since the snapshot,
+ * which is why StockLedger refuses stock changes above READ COMMITTED.
+ */
+public class MedicineRepositoryImpl implements MedicineRepositoryCustom {
+    
+    // Ordered locks: concurrent bills touching the same medicines queue instead of deadlocking
+    private static final String LOCK_SQL =
+            "SELECT id FROM medicines WHERE id IN (" +
+            "  SELECT medicine_id FROM batches WHERE id = ANY(?::bigint[])" +
+            ") ORDER BY id FOR UPDATE";
+    
+    private static final String REFRESH_SQL =
+            "UPDATE medicines m SET total_stock = s.total, available_stock = s.available, " +
+            "expired_stock = s.total - s.available, next_expiry_date = s.next_expiry " +
+            "FROM (" +
+            "  SELECT ids.id, COALESCE(SUM(b.quantity_available), 0) AS total, " +
+            "  COALESCE(SUM(b.quantity_available) FILTER (WHERE b.expiry_status <> 'EXPIRED'), 0) AS available, " +
+            "  MIN(b.expiry_date) FILTER (WHERE b.quantity_available > 0 AND b.expiry_status <> 'EXPIRED') AS next_expiry " +
+            "  FROM unnest(?::bigint[]) AS ids(id) LEFT JOIN batches b ON b.medicine_id = ids.id GROUP BY ids.id" +
+            ") s WHERE m.id = s.id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public MedicineRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    @Override
+    public int refreshStockSummariesForBatches(Collection<Long> batchIds) {
+        if (batchIds.isEmpty()) {
+            return 0;
+        }
+        List<Long> medicineIds = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(LOCK_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", batchIds.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getLong(1));
+        if (medicineIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REFRESH_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", medicineIds.toArray()));
+            return statement;
+        });
+    }
+}
@@ -19,6 +19,14 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     @Query("SELECT p FROM Payment p WHERE p.paymentDate BETWEEN :startDate AND :endDate")
     List<Payment> findPaymentsByDateRange(@Param("startDate") LocalDateTime startDate,
                                           @Param("endDate") LocalDateTime endDate);
+    
+    // Rows of [mode, type, sum of amount]: one range scan of idx_payment_date, refunds summing negative
+    @Query("SELECT p.mode, p.type, SUM(p.amount) FROM Payment p " +
+           "WHERE p.status = :status AND p.paymentDate BETWEEN :startDate AND :endDate " +
+           "GROUP BY p.mode, p.type")
+    List<Object[]> sumByModeAndType(@Param("status") Payment.PaymentStatus status,
+                                    @Param("startDate") LocalDateTime startDate,
+                                    @Param("endDate") LocalDateTime endDate);
 }
 
 
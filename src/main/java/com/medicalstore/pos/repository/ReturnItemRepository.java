@@ -16,6 +16,12 @@ public interface ReturnItemRepository extends JpaRepository<ReturnItem, Long> {
            "LEFT JOIN FETCH ri.batch " +
            "WHERE ri.returnEntity = :returnEntity")
     List<ReturnItem> findByReturnEntity(@Param("returnEntity") Return returnEntity);
+    
+    // Items of a whole page of returns in one query
+    @Query("SELECT ri FROM ReturnItem ri " +
+           "JOIN FETCH ri.medicine " +
+           "WHERE ri.returnEntity IN :returns ORDER BY ri.id")
+    List<ReturnItem> findByReturnEntityIn(@Param("returns") List<Return> returns);
 }
 
 
@@ -1,6 +1,7 @@
 package com.medicalstore.pos.repository;
 
 import com.medicalstore.pos.entity.Return;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,6 +20,23 @@ public interface ReturnRepository extends JpaRepository<Return, Long> {
     @Query("SELECT r FROM Return r WHERE r.returnDate BETWEEN :startDate AND :endDate")
     List<Return> findReturnsByDateRange(@Param("startDate") LocalDateTime startDate,
                                         @Param("endDate") LocalDateTime endDate);
+    
+    // Keyset page, newest first: rows strictly after the (returnDate, id) cursor, with bill and user in the same query
+    @Query("SELECT r FROM Return r JOIN FETCH r.originalBill JOIN FETCH r.processedBy " +
+           "WHERE r.returnDate >= :from AND r.returnDate < :to " +
+           "AND (:billId IS NULL OR r.originalBill.id = :billId) " +
+           "AND (r.returnDate < :afterDate OR (r.returnDate = :afterDate AND r.id < :afterId)) " +
+           "ORDER BY r.returnDate DESC, r.id DESC")
+    List<Return> findPage(@Param("from") LocalDateTime from,
+                          @Param("to") LocalDateTime to,
+                          @Param("billId") Long billId,
+                          @Param("afterDate") LocalDateTime afterDate,
+                          @Param("afterId") Long afterId,
+                          Pageable pageable);
+    
+    @Query("SELECT r FROM Return r JOIN FETCH r.originalBill JOIN FETCH r.processedBy " +
+           "WHERE r.originalBill.id = :billId ORDER BY r.returnDate DESC, r.id DESC")
+    List<Return> findByOriginalBillIdWithDetails(@Param("billId") Long billId);
 }
 
 
@@ -0,0 +1,45 @@
+package com.medicalstore.pos.repository;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockBarcodeRangeRepository extends JpaRepository<StockBarcodeRange, Long> {
+    
+    List<StockBarcodeRange> findByBatch(Batch batch);
+    
+    /**
+     * Range holding the serial, with its batch (read-only scan path)
+     */
+    @Query("SELECT r FROM StockBarcodeRange r JOIN FETCH r.batch " +
+           "WHERE r.prefix = :prefix AND r.serialWidth = :width " +
+           "AND r.startSerial <= :serial AND r.endSerial >= :serial")
+    Optional<StockBarcodeRange> findContaining(@Param("prefix") String prefix,
+                                               @Param("width") Integer width,
+                                               @Param("serial") Long serial);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockBarcodeRange r " +
+           "WHERE r.prefix = :prefix AND r.serialWidth = :width " +
+           "AND r.startSerial <= :serial AND r.endSerial >= :serial")
+    Optional<StockBarcodeRange> findContainingForUpdate(@Param("prefix") String prefix,
+                                                        @Param("width") Integer width,
+                                                        @Param("serial") Long serial);
+    
+    @Query("SELECT r FROM StockBarcodeRange r " +
+           "WHERE r.prefix = :prefix AND r.serialWidth = :width " +
+           "AND r.startSerial <= :endSerial AND r.endSerial >= :startSerial")
+    List<StockBarcodeRange> findOverlapping(@Param("prefix") String prefix,
+                                            @Param("width") Integer width,
+                                            @Param("startSerial") Long startSerial,
+                                            @Param("endSerial") Long endSerial);
+}
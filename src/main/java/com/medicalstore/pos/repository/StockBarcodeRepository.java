@@ -9,11 +9,12 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface StockBarcodeRepository extends JpaRepository<StockBarcode, Long> {
+public interface StockBarcodeRepository extends JpaRepository<StockBarcode, Long>, StockBarcodeRepositoryCustom {
     
     Optional<StockBarcode> findByBarcode(String barcode);
     
@@ -21,6 +22,12 @@ public interface StockBarcodeRepository extends JpaRepository<StockBarcode, Long
     @Query("SELECT s FROM StockBarcode s WHERE s.barcode = :barcode AND s.sold = false")
     Optional<StockBarcode> findAvailableByBarcode(@Param("barcode") String barcode);
     
+    /**
+     * Read-only lookup for scans (no row lock, batch fetched in the same query)
+     */
+    @Query("SELECT s FROM StockBarcode s JOIN FETCH s.batch WHERE s.barcode = :barcode")
+    Optional<StockBarcode> findWithBatchByBarcode(@Param("barcode") String barcode);
+    
     List<StockBarcode> findByBatch(Batch batch);
     
     List<StockBarcode> findByBatchAndSold(Batch batch, Boolean sold);
@@ -29,16 +36,54 @@ public interface StockBarcodeRepository extends JpaRepository<StockBarcode, Long
     long countAvailableByBatch(@Param("batch") Batch batch);
     
     /**
-     * Search available barcodes by prefix (for incremental search)
-     * Returns barcodes that match the prefix and are available
+     * (barcode, batch id) pairs for the given unit barcodes, e.g. to attribute stock-take scans to batches
+     */
+    @Query("SELECT s.barcode, s.batch.id FROM StockBarcode s WHERE s.barcode IN :barcodes")
+    List<Object[]> findBatchIdsByBarcodes(@Param("barcodes") Collection<String> barcodes);
+    
+    /**
+     * (barcode, bill item id) pairs of the units still sold on the given bill items
      */
-    @Query("SELECT s FROM StockBarcode s " +
-           "JOIN FETCH s.batch b " +
-           "JOIN FETCH b.medicine m " +
-           "WHERE UPPER(s.barcode) LIKE UPPER(CONCAT(:prefix, '%')) " +
+    @Query("SELECT s.barcode, s.billItem.id FROM StockBarcode s WHERE s.sold = true AND s.billItem.id IN :billItemIds")
+    List<Object[]> findSoldBarcodesByBillItemIds(@Param("billItemIds") Collection<Long> billItemIds);
+    
+    /**
+     * Distinct medicines with available units whose barcode starts with the prefix, in barcode order.
+     * Individual units are served by the partial expression index idx_barcode_upper_available
+     * (see db/migration/V2__unit_barcode_prefix_index.sql). Serial ranges (one row per run, so few)
+     * match when the typed text is a prefix of theirs, or runs on into digits that some serial in the
+     * range starts with; they are ordered by their first serial in that span. The prefix must already be
+     * upper-cased and the pattern is its escaped LIKE form ending in %.
+     */
+    @Query(value = "SELECT medicine_id FROM (" +
+           "SELECT b.medicine_id, UPPER(s.barcode) AS barcode FROM stock_barcodes s " +
+           "JOIN batches b ON b.id = s.batch_id " +
+           "WHERE UPPER(s.barcode) LIKE :pattern " +
            "AND s.sold = false " +
-           "AND b.quantityAvailable > 0 " +
-           "ORDER BY s.barcode")
-    List<StockBarcode> findAvailableByBarcodePrefix(@Param("prefix") String prefix);
+           "AND b.quantity_available > 0 " +
+           "UNION ALL " +
+           "SELECT b.medicine_id, UPPER(r.prefix) || LPAD(CAST(GREATEST(r.start_serial, m.low) AS text), " +
+           "r.serial_width, '0') FROM stock_barcode_ranges r " +
+           "JOIN batches b ON b.id = r.batch_id " +
+           // Digits typed past the range prefix, '' when the prefix alone matches, null when nothing can
+           "CROSS JOIN LATERAL (SELECT CASE " +
+           "WHEN UPPER(r.prefix) LIKE :pattern THEN '' " +
+           "WHEN LEFT(:prefix, LENGTH(r.prefix)) = UPPER(r.prefix) " +
+           "AND SUBSTRING(:prefix FROM LENGTH(r.prefix) + 1) ~ '^[0-9]+$' " +
+           "AND LENGTH(:prefix) - LENGTH(r.prefix) <= r.serial_width " +
+           "THEN SUBSTRING(:prefix FROM LENGTH(r.prefix) + 1) END AS digits) d " +
+           // Serials starting with those digits: low .. low + span - 1
+           "CROSS JOIN LATERAL (SELECT CAST(POWER(10, r.serial_width - LENGTH(d.digits)) AS bigint) AS span, " +
+           "CAST('0' || d.digits AS bigint) * CAST(POWER(10, r.serial_width - LENGTH(d.digits)) AS bigint) AS low) m " +
+           "WHERE d.digits IS NOT NULL " +
+           "AND r.start_serial < m.low + m.span AND r.end_serial >= m.low " +
+           "AND r.end_serial - r.start_serial + 1 > r.sold_count + r.removed_count " +
+           "AND b.quantity_available > 0" +
+           ") matches " +
+           "GROUP BY medicine_id " +
+           "ORDER BY MIN(barcode) " +
+           "LIMIT :limit", nativeQuery = true)
+    List<Long> findAvailableMedicineIdsByBarcodePrefix(@Param("prefix") String prefix,
+                                                       @Param("pattern") String pattern,
+                                                       @Param("limit") int limit);
 }
-
@@ -0,0 +1,63 @@
+package com.medicalstore.pos.repository;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.StockBarcode;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface StockBarcodeRepositoryCustom {
+    
+    /**
+     * Unit barcodes deleted from one batch, with the batch's quantity afterwards and the change actually
+     * applied to it (stock is floored at zero, so this can be smaller than the number of barcodes)
+     */
+    record RemovedUnits(List<String> barcodes, int quantityAvailable, int quantityChange) {
+    }
+    
+    /**
+     * Inserts unsold unit barcodes for a batch in a single statement.
+     * Barcodes that already exist are skipped; only the inserted rows are returned.
+     */
+    List<StockBarcode> insertAllIgnoringExisting(Batch batch, List<String> barcodes);
+    
+    /**
+     * Serializes barcode ingest per serial prefix until the transaction ends,
+     * so individual rows and ranges for the same prefix can't be inserted concurrently.
+     */
+    void lockSerialPrefixes(Collection<String> prefixes);
+    
+    /**
+     * Individual barcode rows that fall inside the serial range first..last (inclusive)
+     */
+    List<String> findRowsInSerialRange(StockBarcodeRange.Serial first, StockBarcodeRange.Serial last);
+    
+    /**
+     * The given barcodes that are already covered by a stored range
+     */
+    List<String> findCoveredByRanges(Collection<String> barcodes);
+    
+    /**
+     * Marks the units sold against their bill items and returns the barcodes changed; units that are
+     * missing or already sold are not returned. Batch stock is left to the caller.
+     * Pending persistence context changes are flushed first.
+     */
+    List<String> sellUnits(List<String> barcodes, List<Long> billItemIds);
+    
+    /**
+     * Reverse of sellUnits: units sold on the given bill items become available again
+     */
+    List<String> returnUnits(List<String> barcodes, List<Long> billItemIds);
+    
+    /**
+     * Deletes the given unit rows that belong to the batch and are not sold, and decrements
+     * the batch by the number deleted (but not below zero), in one statement.
+     */
+    RemovedUnits deleteUnsoldUnits(long batchId, List<Long> barcodeIds);
+    
+    /**
+     * Deletes every unsold unit row of the batch (e.g. on recall) and decrements the batch to match
+     */
+    RemovedUnits deleteAllUnsoldUnits(long batchId);
+}
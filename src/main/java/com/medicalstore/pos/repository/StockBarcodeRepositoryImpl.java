@@ -0,0 +1,255 @@
+package com.medicalstore.pos.repository;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.StockBarcode;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based barcode ingest: one INSERT ... SELECT FROM unnest(array) ON CONFLICT DO NOTHING
+ * instead of a duplicate SELECT and an INSERT per unit. Runs in the caller's transaction.
+ * Ids come from the entity's pooled sequence: each nextval reserves the block (value - 49 .. value),
+ * exactly as Hibernate's pooled optimizer does, so both can allocate from the same sequence.
+ */
+public class StockBarcodeRepositoryImpl implements StockBarcodeRepositoryCustom {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_barcodes (id, batch_id, barcode, sold, created_at, updated_at) " +
+            "SELECT b.id, ?, b.barcode, false, ?, ? FROM unnest(?::bigint[], ?::text[]) AS b(id, barcode) " +
+            "ON CONFLICT (barcode) DO NOTHING " +
+            "RETURNING id, barcode, created_at";
+    
+    // ~>=~ / ~<=~ compare bytewise and are served by idx_barcode_pattern (text_pattern_ops)
+    private static final String ROWS_IN_RANGE_SQL =
+            "SELECT barcode FROM stock_barcodes " +
+            "WHERE barcode ~>=~ ? AND barcode ~<=~ ? AND length(barcode) = ?";
+    
+    private static final String COVERED_SQL =
+            "SELECT u.barcode FROM unnest(?::text[], ?::text[], ?::int[], ?::bigint[]) AS u(barcode, prefix, width, serial) " +
+            "WHERE EXISTS (SELECT 1 FROM stock_barcode_ranges r " +
+            "WHERE r.prefix = u.prefix AND r.serial_width = u.width " +
+            "AND r.start_serial <= u.serial AND r.end_serial >= u.serial)";
+    
+    // Only flips the units: their batches' stock is moved by the caller, which locks all of a
+    // transaction's batches in one id-ordered statement (see BatchRepositoryImpl)
+    private static final String SELL_SQL =
+            "UPDATE stock_barcodes s SET sold = true, bill_item_id = u.bill_item_id, updated_at = ? " +
+            "FROM unnest(?::text[], ?::bigint[]) AS u(barcode, bill_item_id) " +
+            "WHERE s.barcode = u.barcode AND s.sold = false " +
+            "RETURNING s.barcode";
+    
+    private static final String RETURN_SQL =
+            "UPDATE stock_barcodes s SET sold = false, bill_item_id = NULL, updated_at = ? " +
+            "FROM unnest(?::text[], ?::bigint[]) AS u(barcode, bill_item_id) " +
+            "WHERE s.barcode = u.barcode AND s.sold = true AND s.bill_item_id = u.bill_item_id " +
+            "RETURNING s.barcode";
+    
+    // Deletes unsold units of one batch and takes them out of its stock in one round trip. Stock never
+    // drops below zero, so the batch row is locked first to report how much it actually changed by
+    private static final String DELETE_UNSOLD_SQL =
+            "WITH removed AS (" +
+            "  DELETE FROM stock_barcodes WHERE batch_id = ? AND sold = false%s " +
+            "  RETURNING barcode" +
+            "), before AS (" +
+            "  SELECT id, quantity_available FROM batches " +
+            "  WHERE id = ? AND EXISTS (SELECT 1 FROM removed) FOR UPDATE" +
+            "), stock AS (" +
+            "  UPDATE batches b SET quantity_available = GREATEST(b.quantity_available - (SELECT COUNT(*) FROM removed), 0), " +
+            "  version = COALESCE(b.version, 0) + 1, updated_at = ? " +
+            "  FROM before o WHERE b.id = o.id " +
+            "  RETURNING b.quantity_available, b.quantity_available - o.quantity_available AS quantity_change" +
+            ") " +
+            "SELECT r.barcode, s.quantity_available, s.quantity_change FROM removed r CROSS JOIN stock s";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    
+    public StockBarcodeRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+    
+    @Override
+    public List<StockBarcode> insertAllIgnoringExisting(Batch batch, List<String> barcodes) {
+        Long[] ids = allocateIds(barcodes.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
+            statement.setLong(1, batch.getId());
+            statement.setTimestamp(2, now);
+            statement.setTimestamp(3, now);
+            statement.setArray(4, connection.createArrayOf("bigint", ids));
+            statement.setArray(5, connection.createArrayOf("text", barcodes.toArray()));
+            return statement;
+        }, (rs, rowNum) -> StockBarcode.builder()
+                .id(rs.getLong("id"))
+                .batch(batch)
+                .barcode(rs.getString("barcode"))
+                .sold(false)
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .updatedAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .build());
+    }
+    
+    @Override
+    public void lockSerialPrefixes(Collection<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            return;
+        }
+        // Sorted so concurrent ingests take the locks in the same order
+        String[] sorted = prefixes.stream().distinct().sorted().toArray(String[]::new);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT pg_advisory_xact_lock(hashtext('stock_barcodes:' || p)) FROM unnest(?::text[]) AS p");
+            statement.setArray(1, connection.createArrayOf("text", sorted));
+            return statement;
+        }, rs -> {
+        });
+    }
+    
+    @Override
+    public List<String> findRowsInSerialRange(StockBarcodeRange.Serial first, StockBarcodeRange.Serial last) {
+        String from = first.toBarcode();
+        List<String> rows = jdbcTemplate.queryForList(ROWS_IN_RANGE_SQL, String.class,
+                from, last.toBarcode(), from.length());
+        // Bytewise bounds also admit non-digit suffixes of the same length
+        return rows.stream()
+                .filter(barcode -> {
+                    StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+                    return serial != null && serial.prefix().equals(first.prefix()) && serial.width() == first.width();
+                })
+                .toList();
+    }
+    
+    @Override
+    public List<String> findCoveredByRanges(Collection<String> barcodes) {
+        List<String> values = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        List<Long> serials = new ArrayList<>();
+        for (String barcode : barcodes) {
+            StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+            if (serial != null) {
+                values.add(barcode);
+                prefixes.add(serial.prefix());
+                widths.add(serial.width());
+                serials.add(serial.value());
+            }
+        }
+        if (values.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(COVERED_SQL);
+            statement.setArray(1, connection.createArrayOf("text", values.toArray()));
+            statement.setArray(2, connection.createArrayOf("text", prefixes.toArray()));
+            statement.setArray(3, connection.createArrayOf("integer", widths.toArray()));
+            statement.setArray(4, connection.createArrayOf("bigint", serials.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+    
+    @Override
+    public List<String> sellUnits(List<String> barcodes, List<Long> billItemIds) {
+        return changeUnits(SELL_SQL, barcodes, billItemIds);
+    }
+    
+    @Override
+    public List<String> returnUnits(List<String> barcodes, List<Long> billItemIds) {
+        return changeUnits(RETURN_SQL, barcodes, billItemIds);
+    }
+    
+    private List<String> changeUnits(String sql, List<String> barcodes, List<Long> billItemIds) {
+        if (barcodes.isEmpty()) {
+            return List.of();
+        }
+        // The bill items the units point at may not have been inserted yet
+        entityManager.flush();
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            statement.setArray(2, connection.createArrayOf("text", barcodes.toArray()));
+            statement.setArray(3, connection.createArrayOf("bigint", billItemIds.toArray()));
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+    
+    @Override
+    public RemovedUnits deleteUnsoldUnits(long batchId, List<Long> barcodeIds) {
+        if (barcodeIds.isEmpty()) {
+            return new RemovedUnits(List.of(), 0, 0);
+        }
+        return deleteUnsold(String.format(DELETE_UNSOLD_SQL, " AND id = ANY(?)"), batchId, barcodeIds);
+    }
+    
+    @Override
+    public RemovedUnits deleteAllUnsoldUnits(long batchId) {
+        return deleteUnsold(String.format(DELETE_UNSOLD_SQL, ""), batchId, null);
+    }
+    
+    private RemovedUnits deleteUnsold(String sql, long batchId, List<Long> barcodeIds) {
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        RemovedUnits removed = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            int index = 1;
+            statement.setLong(index++, batchId);
+            if (barcodeIds != null) {
+                statement.setArray(index++, connection.createArrayOf("bigint", barcodeIds.toArray()));
+            }
+            statement.setLong(index++, batchId);
+            statement.setTimestamp(index, now);
+            return statement;
+        }, rs -> {
+            // Every row carries the batch's quantity and change
+            List<String> barcodes = new ArrayList<>();
+            int quantityAvailable = 0;
+            int quantityChange = 0;
+            while (rs.next()) {
+                barcodes.add(rs.getString(1));
+                quantityAvailable = rs.getInt(2);
+                quantityChange = rs.getInt(3);
+            }
+            return new RemovedUnits(barcodes, quantityAvailable, quantityChange);
+        });
+        if (!removed.barcodes().isEmpty()) {
+            refreshLoadedBatch(batchId);
+        }
+        return removed;
+    }
+    
+    // Reload the batch if this transaction has already loaded it, so it doesn't carry stale stock or version
+    private void refreshLoadedBatch(long batchId) {
+        Batch batch = entityManager.getReference(Batch.class, batchId);
+        if (Hibernate.isInitialized(batch)) {
+            entityManager.refresh(batch);
+        }
+    }
+    
+    private Long[] allocateIds(int count) {
+        Long[] ids = new Long[count];
+        int next = 0;
+        while (next < count) {
+            int blocks = (count - next + StockBarcode.ID_ALLOCATION_SIZE - 1) / StockBarcode.ID_ALLOCATION_SIZE;
+            List<Long> highValues = jdbcTemplate.queryForList(
+                    "SELECT nextval('" + StockBarcode.ID_SEQUENCE + "') FROM generate_series(1, ?)", Long.class, blocks);
+            for (Long high : highValues) {
+                // The first value of a fresh sequence reserves a short block (ids below 1 are skipped)
+                long low = Math.max(1, high - StockBarcode.ID_ALLOCATION_SIZE + 1);
+                for (long id = low; id <= high && next < count; id++) {
+                    ids[next++] = id;
+                }
+            }
+        }
+        return ids;
+    }
+}
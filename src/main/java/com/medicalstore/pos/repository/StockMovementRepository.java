@@ -0,0 +1,31 @@
+package com.medicalstore.pos.repository;
+
+import com.medicalstore.pos.entity.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Read side of the stock movement ledger; rows are only inserted, by StockLedger.
+ */
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+    
+    /**
+     * Movements since the given time per medicine and type: [medicineId, type, units, value at cost]
+     */
+    @Query("SELECT m.medicineId, m.type, SUM(m.quantity), SUM(m.quantity * m.unitCost) " +
+           "FROM StockMovement m WHERE m.createdAt >= :since GROUP BY m.medicineId, m.type")
+    List<Object[]> summarizeSince(@Param("since") LocalDateTime since);
+    
+    /**
+     * Ledger stock per medicine: [medicineId, units, value at the cost each unit was received at]
+     */
+    @Query("SELECT m.medicineId, SUM(m.quantity), SUM(m.quantity * m.unitCost) " +
+           "FROM StockMovement m GROUP BY m.medicineId")
+    List<Object[]> summarizeOnHand();
+}
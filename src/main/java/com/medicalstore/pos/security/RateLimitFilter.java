@@ -0,0 +1,190 @@
+package com.medicalstore.pos.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medicalstore.pos.config.RateLimitProperties;
+import com.medicalstore.pos.dto.response.RateLimitStatsResponse;
+import com.medicalstore.pos.exception.ErrorResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Rate limiting filter in the security chain (runs after JWT authentication).
+ * Requests are matched to the first configured endpoint group and must pass both the
+ * per-user and the per-client-IP bucket of that group, otherwise a 429 with Retry-After is sent.
+ * Counters are published as pos.ratelimit.requests{group, outcome}.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    private final RateLimitProperties properties;
+    private final ObjectMapper objectMapper;
+    private final List<EndpointGroup> groups;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final long origin = System.nanoTime();
+
+    public RateLimitFilter(RateLimitProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.groups = properties.getGroups().stream()
+                .map(group -> new EndpointGroup(group, properties.getStripes()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        EndpointGroup group = properties.isEnabled() ? resolveGroup(request) : null;
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long now = System.nanoTime() - origin;
+        long wait = 0;
+
+        String username = getUsername();
+        if (username != null && group.userBuckets != null) {
+            wait = group.userBuckets.tryAcquire(username, now);
+            if (wait > 0) {
+                group.throttledByUser.increment();
+            }
+        }
+        if (wait == 0 && group.ipBuckets != null) {
+            wait = group.ipBuckets.tryAcquire(getClientIpAddress(request), now);
+            if (wait > 0) {
+                group.throttledByIp.increment();
+                // The request never ran, so it shouldn't cost the user a token
+                if (username != null && group.userBuckets != null) {
+                    group.userBuckets.release(username);
+                }
+            }
+        }
+
+        if (wait > 0) {
+            sendTooManyRequests(request, response, group, wait);
+            return;
+        }
+
+        group.allowed.increment();
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Snapshot of allowed/throttled counters per endpoint group
+     */
+    public List<RateLimitStatsResponse> getStats() {
+        return groups.stream()
+                .map(group -> RateLimitStatsResponse.builder()
+                        .group(group.name)
+                        .allowed(group.allowed.sum())
+                        .throttledByUser(group.throttledByUser.sum())
+                        .throttledByIp(group.throttledByIp.sum())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (EndpointGroup group : groups) {
+            registerCounter(registry, group, "allowed", group.allowed);
+            registerCounter(registry, group, "throttled_user", group.throttledByUser);
+            registerCounter(registry, group, "throttled_ip", group.throttledByIp);
+        }
+    }
+    
+    private void registerCounter(MeterRegistry registry, EndpointGroup group, String outcome, LongAdder adder) {
+        FunctionCounter.builder("pos.ratelimit.requests", adder, LongAdder::sum)
+                .description("Requests seen by the rate limiter")
+                .tag("group", group.name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+    
+    private EndpointGroup resolveGroup(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (EndpointGroup group : groups) {
+            for (String pattern : group.patterns) {
+                if (pathMatcher.match(pattern, path)) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void sendTooManyRequests(HttpServletRequest request, HttpServletResponse response,
+                                     EndpointGroup group, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error("Too Many Requests")
+                .message("Rate limit exceeded for " + group.name + " endpoints. Retry after " +
+                        retryAfterSeconds + " seconds.")
+                .path(request.getRequestURI())
+                .build();
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+
+    private String getUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetails userDetails) {
+            return userDetails.getUsername();
+        }
+        return null;
+    }
+
+    // Never read X-Forwarded-For here: clients could rotate it for a fresh bucket per request.
+    // Behind a proxy, server.forward-headers-strategy makes the container resolve the real address.
+    private String getClientIpAddress(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+
+    private static class EndpointGroup {
+        private final String name;
+        private final List<String> patterns;
+        private final StripedTokenBuckets userBuckets;
+        private final StripedTokenBuckets ipBuckets;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder throttledByUser = new LongAdder();
+        private final LongAdder throttledByIp = new LongAdder();
+
+        EndpointGroup(RateLimitProperties.Group group, int stripes) {
+            this.name = group.getName();
+            this.patterns = List.copyOf(group.getPatterns());
+            this.userBuckets = group.getUserRequestsPerMinute() > 0
+                    ? new StripedTokenBuckets(stripes, group.getUserRequestsPerMinute(), group.getUserBurst())
+                    : null;
+            this.ipBuckets = group.getIpRequestsPerMinute() > 0
+                    ? new StripedTokenBuckets(stripes, group.getIpRequestsPerMinute(), group.getIpBurst())
+                    : null;
+        }
+    }
+}
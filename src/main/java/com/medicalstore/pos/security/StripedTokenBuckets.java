@@ -0,0 +1,55 @@
+package com.medicalstore.pos.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free token buckets striped over a fixed array.
+ * Each stripe stores its theoretical arrival time (GCRA), so a bucket is a single
+ * AtomicLong slot updated with CAS. Keys that hash to the same stripe share a bucket,
+ * which keeps memory bounded no matter how many users or IPs are seen.
+ */
+class StripedTokenBuckets {
+
+    private final AtomicLongArray arrivalTimes;
+    private final int mask;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    StripedTokenBuckets(int stripes, int requestsPerMinute, int burst) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.arrivalTimes = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.emissionIntervalNanos = 60_000_000_000L / requestsPerMinute;
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(1, burst);
+    }
+
+    /**
+     * Takes one token for the key.
+     * Returns 0 when the request is allowed, otherwise the nanos until a token is available.
+     */
+    long tryAcquire(String key, long nowNanos) {
+        int stripe = spread(key.hashCode()) & mask;
+        while (true) {
+            long arrival = arrivalTimes.get(stripe);
+            long newArrival = Math.max(arrival, nowNanos) + emissionIntervalNanos;
+            long wait = newArrival - nowNanos - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrivalTimes.compareAndSet(stripe, arrival, newArrival)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by tryAcquire, e.g. when another limit rejected the request
+     */
+    void release(String key) {
+        arrivalTimes.addAndGet(spread(key.hashCode()) & mask, -emissionIntervalNanos);
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x45d9f3b;
+    }
+}
@@ -0,0 +1,116 @@
+package com.medicalstore.pos.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from unit barcode to a packed long, with linear probing.
+ * Keeps one String reference and one long per slot instead of a node per entry,
+ * which matters at millions of unit barcodes. Not thread-safe; UnitBarcodeIndex
+ * guards it with a read/write lock.
+ */
+final class BarcodeTable {
+    
+    static final long ABSENT = -1L;
+    private static final double LOAD_FACTOR = 0.6;
+    
+    private String[] keys;
+    private long[] values;
+    private int mask;
+    private int used;
+    private int size;
+    
+    BarcodeTable(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+    
+    long get(String key) {
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+    
+    void put(String key, long value) {
+        if (used + 1 > keys.length * LOAD_FACTOR) {
+            // Double when mostly live entries, otherwise just purge tombstones
+            rehash(size + 1 > keys.length * LOAD_FACTOR / 2 ? keys.length * 2 : keys.length);
+        }
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                if (values[slot] == ABSENT) {
+                    size++;
+                }
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used++;
+        size++;
+    }
+    
+    /**
+     * Leaves the key in place as a tombstone so probe chains stay intact;
+     * tombstones are dropped on the next rehash.
+     */
+    void remove(String key) {
+        int slot = spread(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) {
+                if (values[slot] != ABSENT) {
+                    values[slot] = ABSENT;
+                    size--;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null && oldValues[i] != ABSENT) {
+                int slot = spread(oldKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used++;
+                size++;
+            }
+        }
+    }
+    
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, ABSENT);
+        mask = capacity - 1;
+        used = 0;
+        size = 0;
+    }
+    
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(16, expectedSize) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+    
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x45d9f3b;
+    }
+}
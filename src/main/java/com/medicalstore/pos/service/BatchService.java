@@ -8,16 +8,28 @@ import com.medicalstore.pos.entity.AuditLog;
 import com.medicalstore.pos.entity.Batch;
 import com.medicalstore.pos.entity.Medicine;
 import com.medicalstore.pos.entity.StockBarcode;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+import com.medicalstore.pos.entity.StockMovement;
 import com.medicalstore.pos.entity.User;
 import com.medicalstore.pos.repository.BatchRepository;
+import com.medicalstore.pos.repository.StockBarcodeRangeRepository;
 import com.medicalstore.pos.repository.StockBarcodeRepository;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,15 +39,30 @@ public class BatchService {
     private final StockBarcodeRepository stockBarcodeRepository;
     private final MedicineService medicineService;
     private final AuditService auditService;
+    private final UnitBarcodeIndex unitBarcodeIndex;
+    private final FifoBatchIndex fifoBatchIndex;
+    private final StockLedger stockLedger;
+    private final StockBarcodeRangeRepository stockBarcodeRangeRepository;
+    private static final int MIN_RANGE_UNITS = 64;
+    private static final int MAX_RANGE_UNITS = 1_000_000;
+    private static final int MAX_PAGE_SIZE = 200;
     
     public BatchService(BatchRepository batchRepository, 
                        StockBarcodeRepository stockBarcodeRepository,
+                       StockBarcodeRangeRepository stockBarcodeRangeRepository,
                        MedicineService medicineService, 
-                       AuditService auditService) {
+                       AuditService auditService,
+                       UnitBarcodeIndex unitBarcodeIndex,
+                       FifoBatchIndex fifoBatchIndex,
+                       StockLedger stockLedger) {
         this.batchRepository = batchRepository;
         this.stockBarcodeRepository = stockBarcodeRepository;
+        this.stockBarcodeRangeRepository = stockBarcodeRangeRepository;
         this.medicineService = medicineService;
         this.auditService = auditService;
+        this.unitBarcodeIndex = unitBarcodeIndex;
+        this.fifoBatchIndex = fifoBatchIndex;
+        this.stockLedger = stockLedger;
     }
     
     @Transactional
@@ -55,7 +82,11 @@ public class BatchService {
                 .quantityAvailable(request.getQuantityAvailable())
                 .build();
         
-        batch = batchRepository.save(batch);
+        // Flush so the batch row exists for the barcode insert below
+        batch = batchRepository.saveAndFlush(batch);
+        indexBatch(batch);
+        stockLedger.record(batch.getId(), StockMovement.MovementType.RECEIPT,
+                batch.getQuantityAvailable(), batch.getBatchNumber());
         
         // Create individual barcodes if provided
         if (request.getBarcodes() != null && !request.getBarcodes().isEmpty()) {
@@ -64,26 +95,7 @@ public class BatchService {
                         "Expected: " + request.getQuantityAvailable() + ", Provided: " + request.getBarcodes().size());
             }
             
-            List<StockBarcode> stockBarcodes = new ArrayList<>();
-            for (String barcode : request.getBarcodes()) {
-                if (barcode == null || barcode.trim().isEmpty()) {
-                    throw new RuntimeException("Barcode cannot be empty");
-                }
-                
-                // Check for duplicate barcodes
-                if (stockBarcodeRepository.findByBarcode(barcode.trim()).isPresent()) {
-                    throw new RuntimeException("Barcode " + barcode.trim() + " already exists");
-                }
-                
-                StockBarcode stockBarcode = StockBarcode.builder()
-                        .batch(batch)
-                        .barcode(barcode.trim())
-                        .sold(false)
-                        .build();
-                stockBarcodes.add(stockBarcode);
-            }
-            
-            stockBarcodeRepository.saveAll(stockBarcodes);
+            insertUnitBarcodes(batch, request.getBarcodes());
         }
         
         auditService.log(AuditLog.ActionType.BATCH_ADDED, user, "Batch", 
@@ -93,39 +105,239 @@ public class BatchService {
         return mapToResponse(batch);
     }
     
+    /**
+     * Validates and inserts unit barcodes for a batch with set-based statements.
+     * Runs of at least MIN_RANGE_UNITS sequential serials are stored as one StockBarcodeRange,
+     * the rest as individual rows. Blank values, duplicates within the request and barcodes
+     * that already exist are rejected, listing the offending barcodes. Must run inside the
+     * caller's transaction. Range units are returned as unsaved StockBarcode views (no id).
+     */
+    public List<StockBarcode> insertUnitBarcodes(Batch batch, List<String> barcodes) {
+        List<String> values = new ArrayList<>(barcodes.size());
+        Set<String> seen = new HashSet<>();
+        Set<String> repeated = new LinkedHashSet<>();
+        for (String barcode : barcodes) {
+            if (barcode == null || barcode.trim().isEmpty()) {
+                throw new RuntimeException("Barcode cannot be empty");
+            }
+            String value = barcode.trim();
+            if (!seen.add(value)) {
+                repeated.add(value);
+            }
+            values.add(value);
+        }
+        if (!repeated.isEmpty()) {
+            throw new RuntimeException("Duplicate barcodes in request: " + describeBarcodes(repeated));
+        }
+        
+        List<String> rows = new ArrayList<>();
+        List<StockBarcodeRange> ranges = splitSerialRuns(batch, values, rows);
+        List<StockBarcode> inserted = storeUnitBarcodes(batch, rows, ranges);
+        for (StockBarcodeRange range : ranges) {
+            for (long serial = range.getStartSerial(); serial <= range.getEndSerial(); serial++) {
+                inserted.add(StockBarcode.builder()
+                        .batch(batch)
+                        .barcode(range.barcodeAt(serial))
+                        .sold(false)
+                        .createdAt(range.getCreatedAt())
+                        .updatedAt(range.getUpdatedAt())
+                        .build());
+            }
+        }
+        return inserted;
+    }
+    
+    /**
+     * Stores the sequential barcodes firstBarcode..lastBarcode (e.g. LOT123-000001 .. LOT123-005000)
+     * as a single range. Must run inside the caller's transaction.
+     */
+    public StockBarcodeRange insertUnitBarcodeRange(Batch batch, String firstBarcode, String lastBarcode) {
+        StockBarcodeRange.Serial first = StockBarcodeRange.Serial.parse(firstBarcode.trim());
+        StockBarcodeRange.Serial last = StockBarcodeRange.Serial.parse(lastBarcode.trim());
+        if (first == null || last == null || !first.prefix().equals(last.prefix()) || first.width() != last.width()) {
+            throw new RuntimeException("Barcode range must share a prefix and end in serials of the same length: " +
+                    firstBarcode + " .. " + lastBarcode);
+        }
+        if (first.value() > last.value()) {
+            throw new RuntimeException("Barcode range start " + firstBarcode + " is after its end " + lastBarcode);
+        }
+        if (last.value() - first.value() >= MAX_RANGE_UNITS) {
+            throw new RuntimeException("Barcode range cannot exceed " + MAX_RANGE_UNITS + " units");
+        }
+        
+        StockBarcodeRange range = newRange(batch, first, last.value());
+        storeUnitBarcodes(batch, List.of(), List.of(range));
+        return range;
+    }
+    
+    private List<StockBarcode> storeUnitBarcodes(Batch batch, List<String> rows, List<StockBarcodeRange> ranges) {
+        Set<String> prefixes = new HashSet<>();
+        for (String row : rows) {
+            StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(row);
+            if (serial != null) {
+                prefixes.add(serial.prefix());
+            }
+        }
+        ranges.forEach(range -> prefixes.add(range.getPrefix()));
+        stockBarcodeRepository.lockSerialPrefixes(prefixes);
+        
+        // Rows and ranges must not cover each other's barcodes
+        Set<String> existing = new LinkedHashSet<>(stockBarcodeRepository.findCoveredByRanges(rows));
+        for (StockBarcodeRange range : ranges) {
+            StockBarcodeRange.Serial first = new StockBarcodeRange.Serial(
+                    range.getPrefix(), range.getSerialWidth(), range.getStartSerial());
+            StockBarcodeRange.Serial last = new StockBarcodeRange.Serial(
+                    range.getPrefix(), range.getSerialWidth(), range.getEndSerial());
+            for (StockBarcodeRange overlap : stockBarcodeRangeRepository.findOverlapping(
+                    range.getPrefix(), range.getSerialWidth(), range.getStartSerial(), range.getEndSerial())) {
+                existing.add(overlap.barcodeAt(Math.max(overlap.getStartSerial(), range.getStartSerial())) + " .. " +
+                        overlap.barcodeAt(Math.min(overlap.getEndSerial(), range.getEndSerial())));
+            }
+            existing.addAll(stockBarcodeRepository.findRowsInSerialRange(first, last));
+        }
+        
+        List<StockBarcode> inserted = new ArrayList<>();
+        if (existing.isEmpty() && !rows.isEmpty()) {
+            inserted.addAll(stockBarcodeRepository.insertAllIgnoringExisting(batch, rows));
+            if (inserted.size() < rows.size()) {
+                existing.addAll(rows);
+                inserted.forEach(stockBarcode -> existing.remove(stockBarcode.getBarcode()));
+            }
+        }
+        if (existing.size() == 1) {
+            throw new RuntimeException("Barcode " + existing.iterator().next() + " already exists");
+        }
+        if (!existing.isEmpty()) {
+            throw new RuntimeException("Barcodes already exist: " + describeBarcodes(existing));
+        }
+        
+        stockBarcodeRangeRepository.saveAll(ranges);
+        unitBarcodeIndex.unitsAdded(batch, inserted);
+        ranges.forEach(unitBarcodeIndex::rangeSaved);
+        return inserted;
+    }
+    
+    /**
+     * Moves runs of at least MIN_RANGE_UNITS consecutive serials into ranges; everything else goes to rows
+     */
+    private List<StockBarcodeRange> splitSerialRuns(Batch batch, List<String> values, List<String> rows) {
+        List<StockBarcodeRange.Serial> serials = new ArrayList<>();
+        for (String value : values) {
+            StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(value);
+            if (serial != null) {
+                serials.add(serial);
+            } else {
+                rows.add(value);
+            }
+        }
+        serials.sort(Comparator.comparing(StockBarcodeRange.Serial::prefix)
+                .thenComparingInt(StockBarcodeRange.Serial::width)
+                .thenComparingLong(StockBarcodeRange.Serial::value));
+        
+        List<StockBarcodeRange> ranges = new ArrayList<>();
+        int runStart = 0;
+        for (int i = 1; i <= serials.size(); i++) {
+            boolean continues = i < serials.size() && isNextSerial(serials.get(i - 1), serials.get(i))
+                    && i - runStart < MAX_RANGE_UNITS;
+            if (continues) {
+                continue;
+            }
+            if (i - runStart >= MIN_RANGE_UNITS) {
+                ranges.add(newRange(batch, serials.get(runStart), serials.get(i - 1).value()));
+            } else {
+                serials.subList(runStart, i).forEach(serial -> rows.add(serial.toBarcode()));
+            }
+            runStart = i;
+        }
+        return ranges;
+    }
+    
+    private static boolean isNextSerial(StockBarcodeRange.Serial previous, StockBarcodeRange.Serial next) {
+        return next.value() == previous.value() + 1 && next.width() == previous.width()
+                && next.prefix().equals(previous.prefix());
+    }
+    
+    private static StockBarcodeRange newRange(Batch batch, StockBarcodeRange.Serial first, long endSerial) {
+        return StockBarcodeRange.builder()
+                .batch(batch)
+                .prefix(first.prefix())
+                .serialWidth(first.width())
+                .startSerial(first.value())
+                .endSerial(endSerial)
+                .build();
+    }
+    
+    private String describeBarcodes(Set<String> barcodes) {
+        String listed = barcodes.stream().limit(20).collect(Collectors.joining(", "));
+        return barcodes.size() > 20 ? listed + " (and " + (barcodes.size() - 20) + " more)" : listed;
+    }
+    
     @Transactional(readOnly = true)
-    public List<BatchResponse> getBatchesByMedicine(Long medicineId) {
-        Medicine medicine = medicineService.getMedicineEntity(medicineId);
-        return batchRepository.findByMedicine(medicine).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public Page<BatchResponse> getBatchesByMedicine(Long medicineId, int page, int size) {
+        medicineService.getMedicineEntity(medicineId);
+        return batchRepository.findPageByMedicineId(medicineId, pageRequest(page, size))
+                .map(this::mapToResponse);
     }
     
     @Transactional(readOnly = true)
-    public List<BatchResponse> getExpiredBatches() {
-        return batchRepository.findExpiredBatches(LocalDate.now()).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public Page<BatchResponse> getExpiredBatches(int page, int size) {
+        return batchRepository.findPageByExpiryStatusWithStock(List.of(Batch.ExpiryStatus.EXPIRED), pageRequest(page, size))
+                .map(this::mapToResponse);
+    }
+    
+    /**
+     * Batches with stock expiring within 30 or 90 days, from the buckets kept by the expiry sweep
+     */
+    @Transactional(readOnly = true)
+    public Page<BatchResponse> getExpiringBatches(Integer days, int page, int size) {
+        List<Batch.ExpiryStatus> statuses;
+        if (days == 30) {
+            statuses = List.of(Batch.ExpiryStatus.EXPIRING_30);
+        } else if (days == 90) {
+            statuses = List.of(Batch.ExpiryStatus.EXPIRING_30, Batch.ExpiryStatus.EXPIRING_90);
+        } else {
+            throw new RuntimeException("Expiry window must be 30 or 90 days");
+        }
+        return batchRepository.findPageByExpiryStatusWithStock(statuses, pageRequest(page, size))
+                .map(this::mapToResponse);
     }
     
     @Transactional(readOnly = true)
-    public List<BatchResponse> getLowStockBatches(Integer threshold) {
-        return batchRepository.findLowStockBatches(threshold).stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public Page<BatchResponse> getLowStockBatches(Integer threshold, int page, int size) {
+        return batchRepository.findLowStockBatches(threshold, pageRequest(page, size))
+                .map(this::mapToResponse);
     }
     
     @Transactional(readOnly = true)
-    public List<BatchResponse> getAllBatches() {
-        return batchRepository.findAllOrderByCreatedAtDesc().stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
+    public Page<BatchResponse> getAllBatches(int page, int size) {
+        return batchRepository.findAllOrderByCreatedAtDesc(pageRequest(page, size))
+                .map(this::mapToResponse);
+    }
+    
+    // Listing queries fetch the medicine with each batch, so a page costs one query plus a count
+    private static PageRequest pageRequest(int page, int size) {
+        if (page < 0) {
+            throw new RuntimeException("Page index must not be negative");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RuntimeException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return PageRequest.of(page, size);
     }
     
     @Transactional(readOnly = true)
     public Batch getAvailableBatchForMedicine(Medicine medicine, Integer quantity) {
-        List<Batch> batches = batchRepository.findAvailableBatchesByMedicineOrderByExpiry(
-                medicine, LocalDate.now());
+        // FIFO head from memory; the row is re-read here and the deduct still checks it under lock
+        Long hintedBatchId = fifoBatchIndex.findBatchFor(medicine.getId(), quantity);
+        if (hintedBatchId != null) {
+            Optional<Batch> hinted = batchRepository.findById(hintedBatchId)
+                    .filter(batch -> batch.hasStock(quantity) && !batch.isExpired());
+            if (hinted.isPresent()) {
+                return hinted.get();
+            }
+        }
+        
+        List<Batch> batches = batchRepository.findAvailableBatchesByMedicineOrderByExpiry(medicine);
         
         // FIFO: Find first batch with sufficient stock
         for (Batch batch : batches) {
@@ -135,7 +347,7 @@ public class BatchService {
         }
         
         // If no single batch has enough, check total available
-        Integer totalAvailable = batchRepository.getTotalAvailableQuantity(medicine, LocalDate.now());
+        Integer totalAvailable = batchRepository.getTotalAvailableQuantity(medicine);
         if (totalAvailable < quantity) {
             throw new RuntimeException("Insufficient stock for medicine: " + medicine.getName() + 
                     ". Available: " + totalAvailable + ", Required: " + quantity);
@@ -149,27 +361,56 @@ public class BatchService {
         return batches.get(0);
     }
     
+    /**
+     * Takes sold units out of several batches with one statement that locks them in id order
+     * (the same order as restoreStock and stock-takes); reference is the bill number for the ledger
+     */
     @Transactional
-    public void deductStock(Long batchId, Integer quantity) {
-        Batch batch = batchRepository.findByIdForUpdate(batchId)
-                .orElseThrow(() -> new RuntimeException("Batch not found: " + batchId));
-        
-        if (!batch.hasStock(quantity)) {
-            throw new RuntimeException("Insufficient stock in batch: " + batch.getBatchNumber() + 
-                    ". Available: " + batch.getQuantityAvailable() + ", Required: " + quantity);
-        }
-        
-        batch.setQuantityAvailable(batch.getQuantityAvailable() - quantity);
-        batchRepository.save(batch);
+    public void deductStock(Map<Long, Integer> quantitiesByBatch, String reference) {
+        Map<Long, Integer> changes = new LinkedHashMap<>();
+        quantitiesByBatch.forEach((batchId, quantity) -> changes.put(batchId, -quantity));
+        changeStock(changes, StockMovement.MovementType.SALE, reference);
     }
     
+    /**
+     * Puts units back into several batches with one statement that locks them in id order,
+     * so a return or cancellation takes the same number of round trips whatever its size;
+     * type is RETURN or CANCEL and reference the return or bill number
+     */
     @Transactional
-    public void restoreStock(Long batchId, Integer quantity) {
-        Batch batch = batchRepository.findById(batchId)
-                .orElseThrow(() -> new RuntimeException("Batch not found: " + batchId));
-        
-        batch.setQuantityAvailable(batch.getQuantityAvailable() + quantity);
-        batchRepository.save(batch);
+    public void restoreStock(Map<Long, Integer> quantitiesByBatch, StockMovement.MovementType type, String reference) {
+        changeStock(quantitiesByBatch, type, reference);
+    }
+    
+    private void changeStock(Map<Long, Integer> changesByBatch, StockMovement.MovementType type, String reference) {
+        List<Long> batchIds = changesByBatch.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (batchIds.isEmpty()) {
+            return;
+        }
+        List<Integer> changes = batchIds.stream().map(changesByBatch::get).toList();
+        Map<Long, Integer> changed = batchRepository.addQuantities(batchIds, changes);
+        for (Long batchId : batchIds) {
+            Integer quantityAvailable = changed.get(batchId);
+            int change = changesByBatch.get(batchId);
+            if (quantityAvailable == null) {
+                Batch batch = batchRepository.findById(batchId)
+                        .orElseThrow(() -> new RuntimeException("Batch not found: " + batchId));
+                throw new RuntimeException("Insufficient stock in batch: " + batch.getBatchNumber() +
+                        ". Available: " + batch.getQuantityAvailable() + ", Required: " + -change);
+            }
+            unitBarcodeIndex.batchQuantityChanged(batchId, quantityAvailable);
+            fifoBatchIndex.batchQuantityChanged(batchId, quantityAvailable);
+            stockLedger.record(batchId, type, change, reference);
+        }
+    }
+    
+    // Keeps the in-memory indexes in step with a saved batch once the transaction commits
+    private void indexBatch(Batch batch) {
+        unitBarcodeIndex.batchSaved(batch);
+        fifoBatchIndex.batchSaved(batch);
     }
     
     @Transactional(readOnly = true)
@@ -187,7 +428,9 @@ public class BatchService {
     
     @Transactional
     public Batch saveBatch(Batch batch) {
-        return batchRepository.save(batch);
+        Batch saved = batchRepository.save(batch);
+        indexBatch(saved);
+        return saved;
     }
     
     @Transactional
@@ -200,6 +443,7 @@ public class BatchService {
         }
         
         String oldValue = batch.toString();
+        int oldQuantity = batch.getQuantityAvailable();
         
         batch.setBatchNumber(request.getBatchNumber());
         batch.setExpiryDate(request.getExpiryDate());
@@ -208,6 +452,10 @@ public class BatchService {
         batch.setQuantityAvailable(request.getQuantityAvailable());
         
         batch = batchRepository.save(batch);
+        indexBatch(batch);
+        stockLedger.record(batch.getId(), StockMovement.MovementType.ADJUSTMENT,
+                batch.getQuantityAvailable() - oldQuantity, null);
+        stockLedger.batchChanged(batch.getId());
         
         auditService.log(AuditLog.ActionType.BATCH_UPDATED, user, "Batch", 
                         batch.getId().toString(), "Batch updated: " + batch.getBatchNumber(),
@@ -224,6 +472,9 @@ public class BatchService {
         Integer oldQuantity = batch.getQuantityAvailable();
         batch.setQuantityAvailable(request.getQuantityAvailable());
         batch = batchRepository.save(batch);
+        indexBatch(batch);
+        stockLedger.record(batch.getId(), StockMovement.MovementType.ADJUSTMENT,
+                batch.getQuantityAvailable() - oldQuantity, null);
         
         auditService.log(AuditLog.ActionType.STOCK_UPDATED, user, "Batch", 
                         batch.getId().toString(), "Stock updated for batch: " + batch.getBatchNumber(),
@@ -246,6 +497,8 @@ public class BatchService {
         
         String batchInfo = batch.toString();
         batchRepository.delete(batch);
+        unitBarcodeIndex.batchDeleted(id);
+        fifoBatchIndex.batchDeleted(id);
         
         auditService.log(AuditLog.ActionType.BATCH_DELETED, user, "Batch", 
                         id.toString(), "Batch deleted: " + batch.getBatchNumber(),
@@ -263,6 +516,7 @@ public class BatchService {
                 .sellingPrice(batch.getSellingPrice())
                 .quantityAvailable(batch.getQuantityAvailable())
                 .expired(batch.isExpired())
+                .expiryStatus(batch.getExpiryStatus())
                 .createdAt(batch.getCreatedAt())
                 .updatedAt(batch.getUpdatedAt())
                 .build();
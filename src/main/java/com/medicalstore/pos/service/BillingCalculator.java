@@ -0,0 +1,49 @@
+package com.medicalstore.pos.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money arithmetic for bill lines and refunds.
+ * Kept free of Spring and JPA so it can be benchmarked in isolation.
+ */
+public final class BillingCalculator {
+    
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    
+    private BillingCalculator() {
+    }
+    
+    /**
+     * Unit price x quantity, before GST.
+     */
+    public static BigDecimal lineSubtotal(BigDecimal unitPrice, int quantity) {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+    
+    /**
+     * GST on a line subtotal, rounded half-up to paise.
+     */
+    public static BigDecimal gstAmount(BigDecimal lineSubtotal, BigDecimal gstPercentage) {
+        return lineSubtotal.multiply(gstPercentage)
+                .divide(HUNDRED, 2, RoundingMode.HALF_UP);
+    }
+    
+    /**
+     * Refund for returning part of a bill line: the per-unit line total (GST inclusive,
+     * rounded to paise) times the returned quantity.
+     */
+    public static BigDecimal refundAmount(BigDecimal lineTotal, int soldQuantity, int returnQuantity) {
+        BigDecimal refundPerUnit = lineTotal.divide(BigDecimal.valueOf(soldQuantity), 2, RoundingMode.HALF_UP);
+        return refundPerUnit.multiply(BigDecimal.valueOf(returnQuantity));
+    }
+    
+    /**
+     * GST share of returning part of a bill line: the line's GST pro rata to the returned quantity,
+     * rounded half-up to paise.
+     */
+    public static BigDecimal refundGst(BigDecimal lineGst, int soldQuantity, int returnQuantity) {
+        return lineGst.multiply(BigDecimal.valueOf(returnQuantity))
+                .divide(BigDecimal.valueOf(soldQuantity), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -7,19 +7,23 @@ import com.medicalstore.pos.dto.response.BillItemResponse;
 import com.medicalstore.pos.dto.response.BillResponse;
 import com.medicalstore.pos.dto.response.PaymentResponse;
 import com.medicalstore.pos.entity.*;
+import com.medicalstore.pos.metrics.PhaseTimer;
+import com.medicalstore.pos.metrics.PosMetrics;
 import com.medicalstore.pos.repository.BillRepository;
 import com.medicalstore.pos.repository.PaymentRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -30,25 +34,38 @@ public class BillingService {
     private final PaymentRepository paymentRepository;
     private final MedicineService medicineService;
     private final BatchService batchService;
+    private final StockBarcodeService stockBarcodeService;
     private final AuditService auditService;
+    private final SalesRollup salesRollup;
+    private final PosMetrics posMetrics;
     
     public BillingService(BillRepository billRepository, PaymentRepository paymentRepository,
                          MedicineService medicineService, BatchService batchService,
-                         AuditService auditService) {
+                         StockBarcodeService stockBarcodeService, AuditService auditService,
+                         SalesRollup salesRollup, PosMetrics posMetrics) {
         this.billRepository = billRepository;
         this.paymentRepository = paymentRepository;
         this.medicineService = medicineService;
         this.batchService = batchService;
+        this.stockBarcodeService = stockBarcodeService;
         this.auditService = auditService;
+        this.salesRollup = salesRollup;
+        this.posMetrics = posMetrics;
     }
     
     /**
      * Creates a bill with atomic transaction.
      * Stock is deducted ONLY after payment is successful.
      * Uses pessimistic locking to prevent race conditions.
+     * Items with scanned unit barcodes sell exactly those units, one bill item per batch.
+     * Runs at READ COMMITTED like every stock change (see StockLedger): row locks then see the
+     * latest committed stock, so overlapping checkouts of one medicine queue instead of failing.
      */
-    @Transactional(isolation = Isolation.REPEATABLE_READ, rollbackFor = Exception.class)
+    @Timed(value = "pos.bill.create", description = "Bill creation", histogram = true)
+    @Transactional(rollbackFor = Exception.class)
     public BillResponse createBill(CreateBillRequest request, User cashier, HttpServletRequest httpRequest) {
+        PhaseTimer phases = posMetrics.startPhases("bill.create");
+        
         // Generate unique bill number
         String billNumber = generateBillNumber();
         
@@ -65,10 +82,57 @@ public class BillingService {
         
         // Process bill items with FIFO batch selection
         List<BillItem> billItems = new ArrayList<>();
+        List<UnitLine> unitLines = new ArrayList<>();
         BigDecimal subtotal = BigDecimal.ZERO;
         BigDecimal totalGst = BigDecimal.ZERO;
         
         for (BillItemRequest itemRequest : request.getItems()) {
+            if (itemRequest.getUnitBarcodes() != null && !itemRequest.getUnitBarcodes().isEmpty()) {
+                if (itemRequest.getQuantity() != itemRequest.getUnitBarcodes().size()) {
+                    throw new RuntimeException("Quantity must match the number of scanned unit barcodes");
+                }
+                // Scanned units decide the batch; a line spanning batches becomes one bill item per batch
+                Map<Long, List<String>> unitsByBatch =
+                        stockBarcodeService.groupAvailableUnitsByBatch(itemRequest.getUnitBarcodes());
+                phases.mark(PosMetrics.ALLOCATION);
+                
+                for (Map.Entry<Long, List<String>> entry : unitsByBatch.entrySet()) {
+                    Batch unitBatch = batchService.getBatchEntity(entry.getKey());
+                    Medicine unitMedicine = unitBatch.getMedicine();
+                    if (itemRequest.getMedicineId() != null && !itemRequest.getMedicineId().equals(unitMedicine.getId())) {
+                        throw new RuntimeException("Scanned barcode " + entry.getValue().get(0) +
+                                " does not belong to medicine " + itemRequest.getMedicineId());
+                    }
+                    int units = entry.getValue().size();
+                    if (!unitBatch.hasStock(units)) {
+                        throw new RuntimeException("Insufficient stock for " + unitMedicine.getName() +
+                                " in batch " + unitBatch.getBatchNumber());
+                    }
+                    phases.mark(PosMetrics.LOCKING);
+                    
+                    BigDecimal unitSubtotal = BillingCalculator.lineSubtotal(unitBatch.getSellingPrice(), units);
+                    BigDecimal unitGst = BillingCalculator.gstAmount(unitSubtotal, unitMedicine.getGstPercentage());
+                    BillItem unitItem = BillItem.builder()
+                            .bill(bill)
+                            .medicine(unitMedicine)
+                            .batch(unitBatch)
+                            .batchNumber(unitBatch.getBatchNumber())
+                            .quantity(units)
+                            .unitPrice(unitBatch.getSellingPrice())
+                            .gstPercentage(unitMedicine.getGstPercentage())
+                            .gstAmount(unitGst)
+                            .totalAmount(unitSubtotal.add(unitGst))
+                            .build();
+                    
+                    billItems.add(unitItem);
+                    unitLines.add(new UnitLine(unitItem, entry.getValue()));
+                    subtotal = subtotal.add(unitSubtotal);
+                    totalGst = totalGst.add(unitGst);
+                    phases.mark(PosMetrics.ALLOCATION);
+                }
+                continue;
+            }
+            
             Medicine medicine;
             Batch batch;
             
@@ -91,6 +155,7 @@ public class BillingService {
             } else {
                 throw new RuntimeException("Either medicineId or barcode must be provided");
             }
+            phases.mark(PosMetrics.ALLOCATION);
             
             // Lock batch for update (pessimistic locking)
             Batch lockedBatch = batchService.getBatchEntity(batch.getId());
@@ -98,12 +163,12 @@ public class BillingService {
                 throw new RuntimeException("Insufficient stock for " + medicine.getName() + 
                         " in batch " + batch.getBatchNumber());
             }
+            phases.mark(PosMetrics.LOCKING);
             
             // Calculate prices and GST
             BigDecimal unitPrice = batch.getSellingPrice();
-            BigDecimal itemSubtotal = unitPrice.multiply(BigDecimal.valueOf(itemRequest.getQuantity()));
-            BigDecimal gstAmount = itemSubtotal.multiply(medicine.getGstPercentage())
-                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            BigDecimal itemSubtotal = BillingCalculator.lineSubtotal(unitPrice, itemRequest.getQuantity());
+            BigDecimal gstAmount = BillingCalculator.gstAmount(itemSubtotal, medicine.getGstPercentage());
             BigDecimal itemTotal = itemSubtotal.add(gstAmount);
             
             // Create bill item
@@ -122,6 +187,7 @@ public class BillingService {
             billItems.add(billItem);
             subtotal = subtotal.add(itemSubtotal);
             totalGst = totalGst.add(gstAmount);
+            phases.mark(PosMetrics.ALLOCATION);
         }
         
         bill.setBillItems(billItems);
@@ -174,22 +240,40 @@ public class BillingService {
             bill.setPaymentStatus(Bill.PaymentStatus.PAID);
         }
         
+        phases.mark(PosMetrics.ALLOCATION);
+        
         // Save bill (cascade saves items and payments)
         bill = billRepository.save(bill);
+        phases.mark(PosMetrics.PERSISTENCE);
         
         // CRITICAL: Deduct stock ONLY after bill is saved and payment is confirmed
-        // Stock deduction happens at batch level (quantity-based, not per-unit barcode)
+        // Every line's quantity is taken from its batch in one statement that locks the batches in id order,
+        // the same order returns, cancellations and stock-takes lock in; scanned units are then marked sold
+        Map<Long, Integer> soldByBatch = new TreeMap<>();
         for (BillItem billItem : billItems) {
-            // Deduct stock from batch
-            batchService.deductStock(billItem.getBatch().getId(), billItem.getQuantity());
+            soldByBatch.merge(billItem.getBatch().getId(), billItem.getQuantity(), Integer::sum);
+        }
+        batchService.deductStock(soldByBatch, billNumber);
+        if (!unitLines.isEmpty()) {
+            Map<BillItem, List<String>> unitsByItem = new LinkedHashMap<>();
+            unitLines.forEach(line -> unitsByItem.put(line.item(), line.barcodes()));
+            stockBarcodeService.markUnitsSold(unitsByItem);
         }
+        phases.mark(PosMetrics.LOCKING);
+        
+        salesRollup.billCreated(bill);
+        phases.mark(PosMetrics.PERSISTENCE);
         
         // Audit log
         auditService.log(AuditLog.ActionType.BILL_CREATED, cashier, "Bill", 
                         bill.getId().toString(), "Bill created: " + billNumber,
                         null, bill.toString(), httpRequest);
+        phases.mark(PosMetrics.AUDIT);
         
-        return mapToResponse(bill);
+        BillResponse response = mapToResponse(bill);
+        phases.mark(PosMetrics.PERSISTENCE);
+        phases.stop();
+        return response;
     }
     
     @Transactional(readOnly = true)
@@ -213,9 +297,15 @@ public class BillingService {
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Cancels an unpaid or partially paid bill and puts all of its stock back.
+     * A bill with returns can't be cancelled: its returned units are already back in stock
+     * and its refunds already recorded as credit notes.
+     */
     @Transactional
     public void cancelBill(Long billId, String reason, User user, HttpServletRequest httpRequest) {
-        Bill bill = billRepository.findById(billId)
+        // Same lock as returns, so a return can't slip in between the check below and the restore
+        Bill bill = billRepository.findByIdForUpdate(billId)
                 .orElseThrow(() -> new RuntimeException("Bill not found with id: " + billId));
         
         if (bill.getCancelled()) {
@@ -226,14 +316,26 @@ public class BillingService {
             throw new RuntimeException("Cannot cancel a paid bill. Process a return instead.");
         }
         
+        if (bill.getBillItems().stream().anyMatch(item -> item.getReturnedQuantity() > 0)) {
+            throw new RuntimeException("Cannot cancel a bill that has returns");
+        }
+        
         bill.setCancelled(true);
         bill.setCancellationReason(reason);
         billRepository.save(bill);
         
-        // Restore stock for all items
+        // All of the bill's stock goes back in one ordered update; scanned units are then released
+        // through their bill item link, so they can be sold again
+        Map<Long, Integer> cancelledByBatch = new TreeMap<>();
         for (BillItem item : bill.getBillItems()) {
-            batchService.restoreStock(item.getBatch().getId(), item.getQuantity());
+            cancelledByBatch.merge(item.getBatch().getId(), item.getQuantity(), Integer::sum);
         }
+        batchService.restoreStock(cancelledByBatch, StockMovement.MovementType.CANCEL, bill.getBillNumber());
+        Map<BillItem, List<String>> soldUnits = stockBarcodeService.findSoldUnits(bill.getBillItems());
+        if (!soldUnits.isEmpty()) {
+            stockBarcodeService.markUnitsReturned(soldUnits);
+        }
+        salesRollup.billCancelled(bill);
         
         auditService.log(AuditLog.ActionType.BILL_CANCELLED, user, "Bill", 
                         bill.getId().toString(), "Bill cancelled: " + reason,
@@ -260,7 +362,7 @@ public class BillingService {
         return prefix + "-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
     
-    private BillResponse mapToResponse(Bill bill) {
+    BillResponse mapToResponse(Bill bill) {
         List<BillItemResponse> items = bill.getBillItems().stream()
                 .map(this::mapItemToResponse)
                 .collect(Collectors.toList());
@@ -305,6 +407,7 @@ public class BillingService {
         
         BigDecimal totalPaid = bill.getPayments().stream()
                 .filter(p -> p.getStatus() == Payment.PaymentStatus.COMPLETED)
+                .filter(p -> p.getType() == Payment.PaymentType.SALE)
                 .map(Payment::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         
@@ -315,13 +418,15 @@ public class BillingService {
         }
     }
     
-    private BillItemResponse mapItemToResponse(BillItem item) {
+    BillItemResponse mapItemToResponse(BillItem item) {
         return BillItemResponse.builder()
                 .id(item.getId())
                 .medicineId(item.getMedicine().getId())
                 .medicineName(item.getMedicine().getName())
                 .batchNumber(item.getBatchNumber())
                 .quantity(item.getQuantity())
+                .returnedQuantity(item.getReturnedQuantity())
+                .netQuantity(item.netQuantity())
                 .unitPrice(item.getUnitPrice())
                 .gstPercentage(item.getGstPercentage())
                 .gstAmount(item.getGstAmount())
@@ -333,11 +438,14 @@ public class BillingService {
         return PaymentResponse.builder()
                 .id(payment.getId())
                 .paymentReference(payment.getPaymentReference())
+                .type(payment.getType())
                 .mode(payment.getMode())
                 .amount(payment.getAmount())
                 .status(payment.getStatus())
                 .paymentDate(payment.getPaymentDate())
                 .build();
     }
+    
+    private record UnitLine(BillItem item, List<String> barcodes) {
+    }
 }
-
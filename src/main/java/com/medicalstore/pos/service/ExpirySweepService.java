@@ -0,0 +1,69 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.repository.MedicineRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves batches between the expiry buckets (OK, expiring in 90 days, expiring in 30 days, expired)
+ * on start and every night, so billing, reports and alerts filter on the stored status
+ * instead of comparing dates per request. The stock summaries of the medicines whose batches
+ * moved are recomputed in the same transaction.
+ */
+@Slf4j
+@Service
+public class ExpirySweepService {
+    
+    // Only rows whose bucket changes are written. The version is left alone on purpose: a sale
+    // holding the batch across midnight should not fail, and any entity save recomputes the status.
+    private static final String SWEEP_SQL =
+            "UPDATE batches b SET expiry_status = s.status FROM (" +
+            "  SELECT id, CASE WHEN expiry_date <= ? THEN 'EXPIRED' " +
+            "    WHEN expiry_date <= ? THEN 'EXPIRING_30' " +
+            "    WHEN expiry_date <= ? THEN 'EXPIRING_90' ELSE 'OK' END AS status " +
+            "  FROM batches" +
+            ") s WHERE b.id = s.id AND b.expiry_status IS DISTINCT FROM s.status " +
+            "RETURNING b.id, b.expiry_status";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final FifoBatchIndex fifoBatchIndex;
+    private final MedicineRepository medicineRepository;
+    
+    public ExpirySweepService(JdbcTemplate jdbcTemplate, FifoBatchIndex fifoBatchIndex,
+                              MedicineRepository medicineRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fifoBatchIndex = fifoBatchIndex;
+        this.medicineRepository = medicineRepository;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${pos.expiry-sweep.cron}")
+    @Transactional
+    public void sweep() {
+        LocalDate today = LocalDate.now();
+        List<Long> moved = new ArrayList<>();
+        List<Long> expired = new ArrayList<>();
+        jdbcTemplate.query(SWEEP_SQL, rs -> {
+            moved.add(rs.getLong(1));
+            if (Batch.ExpiryStatus.EXPIRED.name().equals(rs.getString(2))) {
+                expired.add(rs.getLong(1));
+            }
+        }, Date.valueOf(today), Date.valueOf(today.plusDays(30)), Date.valueOf(today.plusDays(90)));
+        
+        fifoBatchIndex.batchesExpired(expired);
+        int medicines = medicineRepository.refreshStockSummariesForBatches(moved);
+        log.info("Expiry sweep for {}: {} batches changed bucket, {} newly expired, {} medicine summaries refreshed",
+                today, moved.size(), expired.size(), medicines);
+    }
+}
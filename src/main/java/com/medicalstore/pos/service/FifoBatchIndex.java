@@ -0,0 +1,330 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.Medicine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory FIFO heads per medicine: the batches that have stock and are not expired,
+ * earliest expiry first, with their cached quantities. Batch allocation asks this first,
+ * so a fast-moving medicine is answered from the head batch without loading every batch.
+ * The same transitions keep each medicine's available (stocked) quantity, so the medicines at or
+ * below their reorder level and those out of stock are kept as sets that are read in O(k).
+ * Loaded once at startup and updated after commit by BatchService, StockBarcodeService,
+ * MedicineService and the expiry sweep, which is what moves a batch out of allocation when it expires.
+ * The index is per node and only a hint: callers re-read the batch, and deductStock still
+ * checks stock under the batch row lock.
+ */
+@Slf4j
+@Component
+public class FifoBatchIndex {
+    
+    private static final Comparator<Head> FIFO_ORDER = Comparator
+            .comparing((Head head) -> head.expiryDate)
+            .thenComparingLong(head -> head.batchId);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Runnable> pending = new ArrayList<>();
+    private Map<Long, Head> heads = new HashMap<>();
+    private Map<Long, TreeSet<Head>> stocked = new HashMap<>();
+    private Map<Long, Level> levels = new HashMap<>();
+    private TreeSet<Long> lowStock = new TreeSet<>();
+    private TreeSet<Long> outOfStock = new TreeSet<>();
+    private boolean loaded;
+    
+    public FifoBatchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Returns the earliest-expiring unexpired batch of the medicine holding at least the quantity,
+     * or null when the index has not loaded yet or no single batch has enough
+     */
+    public Long findBatchFor(long medicineId, int quantity) {
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                return null;
+            }
+            TreeSet<Head> candidates = stocked.get(medicineId);
+            if (candidates != null) {
+                for (Head head : candidates) {
+                    if (head.quantity >= quantity) {
+                        return head.batchId;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Ids of medicines with stock at or below their reorder level (but not out of stock), or null
+     * when the index has not loaded yet
+     */
+    public List<Long> lowStockMedicineIds() {
+        lock.readLock().lock();
+        try {
+            return loaded ? List.copyOf(lowStock) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Ids of medicines without unexpired stock, or null when the index has not loaded yet
+     */
+    public List<Long> outOfStockMedicineIds() {
+        lock.readLock().lock();
+        try {
+            return loaded ? List.copyOf(outOfStock) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Available (unexpired) stock of the given medicines, from the same counts as the sets above
+     */
+    public Map<Long, Long> availableStock(Collection<Long> medicineIds) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Long> available = new HashMap<>();
+            for (Long medicineId : medicineIds) {
+                Level level = levels.get(medicineId);
+                available.put(medicineId, level != null ? level.available : 0L);
+            }
+            return available;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.nanoTime();
+        Map<Long, Head> loadedHeads = new HashMap<>();
+        Map<Long, TreeSet<Head>> loadedStocked = new HashMap<>();
+        Map<Long, Level> loadedLevels = new HashMap<>();
+        jdbcTemplate.query("SELECT id, reorder_level FROM medicines", rs -> {
+            loadedLevels.put(rs.getLong(1), new Level(rs.getInt(2)));
+        });
+        jdbcTemplate.query("SELECT id, medicine_id, expiry_date, quantity_available, expiry_status FROM batches", rs -> {
+            Head head = new Head(rs.getLong(1), rs.getLong(2));
+            head.expiryDate = rs.getDate(3).toLocalDate();
+            head.quantity = rs.getInt(4);
+            head.expired = Batch.ExpiryStatus.EXPIRED.name().equals(rs.getString(5));
+            loadedHeads.put(head.batchId, head);
+            if (head.isStocked()) {
+                loadedStocked.computeIfAbsent(head.medicineId, id -> new TreeSet<>(FIFO_ORDER)).add(head);
+                loadedLevels.computeIfAbsent(head.medicineId, id -> new Level(Medicine.DEFAULT_REORDER_LEVEL))
+                        .available += head.quantity;
+            }
+        });
+        
+        lock.writeLock().lock();
+        try {
+            heads = loadedHeads;
+            stocked = loadedStocked;
+            levels = loadedLevels;
+            lowStock = new TreeSet<>();
+            outOfStock = new TreeSet<>();
+            levels.forEach(this::classify);
+            loaded = true;
+            // Changes committed while loading; replaying is idempotent
+            pending.forEach(Runnable::run);
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("FIFO batch index loaded: {} stocked batches of {} medicines, {} low and {} out of stock ({} ms)",
+                loadedStocked.values().stream().mapToInt(TreeSet::size).sum(), loadedStocked.size(),
+                lowStock.size(), outOfStock.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    
+    /**
+     * Records the current expiry and quantity of a batch once the transaction commits
+     */
+    public void batchSaved(Batch batch) {
+        long batchId = batch.getId();
+        long medicineId = batch.getMedicine().getId();
+        LocalDate expiryDate = batch.getExpiryDate();
+        int quantity = batch.getQuantityAvailable();
+        // The entity's status is only recomputed on flush, so derive it from the (possibly edited) date
+        boolean expired = Batch.ExpiryStatus.of(expiryDate, LocalDate.now()) == Batch.ExpiryStatus.EXPIRED;
+        afterCommit(() -> {
+            Head head = heads.computeIfAbsent(batchId, id -> new Head(id, medicineId));
+            unstock(head);
+            head.expiryDate = expiryDate;
+            head.quantity = quantity;
+            head.expired = expired;
+            restock(head);
+        });
+    }
+    
+    public void batchQuantityChanged(long batchId, int quantity) {
+        afterCommit(() -> {
+            Head head = heads.get(batchId);
+            if (head != null) {
+                unstock(head);
+                head.quantity = quantity;
+                restock(head);
+            }
+        });
+    }
+    
+    public void batchDeleted(Long batchId) {
+        afterCommit(() -> {
+            Head head = heads.remove(batchId);
+            if (head != null) {
+                unstock(head);
+            }
+        });
+    }
+    
+    /**
+     * Takes batches the expiry sweep moved to EXPIRED out of allocation once the transaction commits
+     */
+    public void batchesExpired(Collection<Long> batchIds) {
+        List<Long> copy = List.copyOf(batchIds);
+        afterCommit(() -> copy.forEach(batchId -> {
+            Head head = heads.get(batchId);
+            if (head != null) {
+                unstock(head);
+                head.expired = true;
+            }
+        }));
+    }
+    
+    /**
+     * Records a medicine's reorder level once the transaction commits
+     */
+    public void medicineSaved(Medicine medicine) {
+        long medicineId = medicine.getId();
+        int reorderLevel = medicine.getReorderLevel();
+        afterCommit(() -> {
+            Level level = levels.computeIfAbsent(medicineId, id -> new Level(reorderLevel));
+            level.reorderLevel = reorderLevel;
+            classify(medicineId, level);
+        });
+    }
+    
+    public void medicineDeleted(Long medicineId) {
+        afterCommit(() -> {
+            levels.remove(medicineId);
+            lowStock.remove(medicineId);
+            outOfStock.remove(medicineId);
+        });
+    }
+    
+    // The set is ordered by expiry, so a head is taken out before its fields change
+    private void unstock(Head head) {
+        TreeSet<Head> candidates = stocked.get(head.medicineId);
+        if (candidates != null && head.expiryDate != null && candidates.remove(head)) {
+            if (candidates.isEmpty()) {
+                stocked.remove(head.medicineId);
+            }
+            changeAvailable(head.medicineId, -head.quantity);
+        }
+    }
+    
+    private void restock(Head head) {
+        if (head.isStocked()) {
+            stocked.computeIfAbsent(head.medicineId, id -> new TreeSet<>(FIFO_ORDER)).add(head);
+            changeAvailable(head.medicineId, head.quantity);
+        }
+    }
+    
+    private void changeAvailable(long medicineId, int delta) {
+        Level level = levels.computeIfAbsent(medicineId, id -> new Level(Medicine.DEFAULT_REORDER_LEVEL));
+        level.available += delta;
+        classify(medicineId, level);
+    }
+    
+    private void classify(Long medicineId, Level level) {
+        if (level.available <= 0) {
+            lowStock.remove(medicineId);
+            outOfStock.add(medicineId);
+        } else if (level.available <= level.reorderLevel) {
+            outOfStock.remove(medicineId);
+            lowStock.add(medicineId);
+        } else {
+            lowStock.remove(medicineId);
+            outOfStock.remove(medicineId);
+        }
+    }
+    
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+    
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                change.run();
+            } else {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private static class Level {
+        private int reorderLevel;
+        private long available;
+        
+        Level(int reorderLevel) {
+            this.reorderLevel = reorderLevel;
+        }
+    }
+    
+    private static class Head {
+        private final long batchId;
+        private final long medicineId;
+        private LocalDate expiryDate;
+        private int quantity;
+        private boolean expired;
+        
+        Head(long batchId, long medicineId) {
+            this.batchId = batchId;
+            this.medicineId = medicineId;
+        }
+        
+        boolean isStocked() {
+            return quantity > 0 && !expired;
+        }
+    }
+}
@@ -6,14 +6,14 @@ import com.medicalstore.pos.dto.response.MedicineResponse;
 import com.medicalstore.pos.entity.AuditLog;
 import com.medicalstore.pos.entity.Medicine;
 import com.medicalstore.pos.entity.User;
-import com.medicalstore.pos.repository.BatchRepository;
 import com.medicalstore.pos.repository.MedicineRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -22,19 +22,18 @@ import java.util.stream.Collectors;
 public class MedicineService {
     
     private final MedicineRepository medicineRepository;
-    private final BatchRepository batchRepository;
     private final BatchService batchService;
     private final AuditService auditService;
-    private static final int DEFAULT_LOW_STOCK_THRESHOLD = 10;
+    private final FifoBatchIndex fifoBatchIndex;
     
     public MedicineService(MedicineRepository medicineRepository, 
-                         BatchRepository batchRepository,
                          @Lazy BatchService batchService,
-                         AuditService auditService) {
+                         AuditService auditService,
+                         FifoBatchIndex fifoBatchIndex) {
         this.medicineRepository = medicineRepository;
-        this.batchRepository = batchRepository;
         this.batchService = batchService;
         this.auditService = auditService;
+        this.fifoBatchIndex = fifoBatchIndex;
     }
     
     @Transactional
@@ -52,9 +51,12 @@ public class MedicineService {
                 .gstPercentage(request.getGstPercentage())
                 .prescriptionRequired(request.getPrescriptionRequired())
                 .status(Medicine.Status.ACTIVE)
+                .reorderLevel(request.getReorderLevel() != null
+                        ? request.getReorderLevel() : Medicine.DEFAULT_REORDER_LEVEL)
                 .build();
         
         medicine = medicineRepository.save(medicine);
+        fifoBatchIndex.medicineSaved(medicine);
         
         // If initial stock and pricing are provided, create a batch automatically
         if (request.getInitialStock() != null && request.getInitialStock() > 0) {
@@ -86,7 +88,17 @@ public class MedicineService {
                         medicine.getId().toString(), "Medicine created: " + medicine.getName(),
                         null, medicine.toString(), httpRequest);
         
-        return mapToResponse(medicine);
+        MedicineResponse response = mapToResponse(medicine);
+        if (request.getInitialStock() != null && request.getInitialStock() > 0) {
+            // The summary columns are written at commit; the initial batch is the whole stock
+            boolean lowStock = request.getInitialStock() <= medicine.getReorderLevel();
+            response.setTotalStock(request.getInitialStock());
+            response.setAvailableStock(request.getInitialStock());
+            response.setNextExpiryDate(request.getExpiryDate());
+            response.setOutOfStock(false);
+            response.setLowStock(lowStock);
+        }
+        return response;
     }
     
     @Transactional(readOnly = true)
@@ -96,6 +108,19 @@ public class MedicineService {
         return mapToResponse(medicine);
     }
     
+    /**
+     * Map medicines by id, keeping the order of the given ids
+     */
+    @Transactional(readOnly = true)
+    public List<MedicineResponse> getMedicinesByIds(List<Long> ids) {
+        Map<Long, MedicineResponse> byId = mapToResponseList(medicineRepository.findAllById(ids)).stream()
+                .collect(Collectors.toMap(MedicineResponse::getId, response -> response));
+        return ids.stream()
+                .map(byId::get)
+                .filter(response -> response != null)
+                .toList();
+    }
+    
     @Transactional(readOnly = true)
     public List<MedicineResponse> getAllMedicines() {
         List<Medicine> medicines = medicineRepository.findAll();
@@ -145,8 +170,12 @@ public class MedicineService {
         medicine.setHsnCode(request.getHsnCode());
         medicine.setGstPercentage(request.getGstPercentage());
         medicine.setPrescriptionRequired(request.getPrescriptionRequired());
+        if (request.getReorderLevel() != null) {
+            medicine.setReorderLevel(request.getReorderLevel());
+        }
         
         medicine = medicineRepository.save(medicine);
+        fifoBatchIndex.medicineSaved(medicine);
         
         auditService.log(AuditLog.ActionType.MEDICINE_UPDATED, user, "Medicine", 
                         medicine.getId().toString(), "Medicine updated: " + medicine.getName(),
@@ -168,12 +197,30 @@ public class MedicineService {
         
         String medicineInfo = medicine.toString();
         medicineRepository.delete(medicine);
+        fifoBatchIndex.medicineDeleted(id);
         
         auditService.log(AuditLog.ActionType.MEDICINE_DELETED, user, "Medicine", 
                         id.toString(), "Medicine deleted: " + medicine.getName(),
                         medicineInfo, null, httpRequest);
     }
     
+    /**
+     * Medicines at or below their reorder level, optionally followed by those out of stock.
+     * The ids come from the in-memory stock sets, so only the k listed medicines are read.
+     */
+    @Transactional(readOnly = true)
+    public List<MedicineResponse> getLowStockMedicines(boolean includeOutOfStock) {
+        List<Long> ids = fifoBatchIndex.lowStockMedicineIds();
+        if (ids == null) {
+            throw new RuntimeException("Stock levels are still loading, try again shortly");
+        }
+        if (includeOutOfStock) {
+            ids = new ArrayList<>(ids);
+            ids.addAll(fifoBatchIndex.outOfStockMedicineIds());
+        }
+        return getMedicinesByIds(ids);
+    }
+    
     @Transactional(readOnly = true)
     public Medicine getMedicineEntity(Long id) {
         return medicineRepository.findById(id)
@@ -184,6 +231,7 @@ public class MedicineService {
      * Find medicine by barcode (GTIN/EAN).
      * Barcode identifies the product, not individual units.
      */
+    @Timed(value = "pos.barcode.lookup", extraTags = {"type", "product"}, histogram = true)
     @Transactional(readOnly = true)
     public MedicineResponse findMedicineByBarcode(String barcode) {
         if (barcode == null || barcode.trim().isEmpty()) {
@@ -199,6 +247,7 @@ public class MedicineService {
     /**
      * Search medicines by barcode prefix (for incremental search).
      */
+    @Timed(value = "pos.barcode.lookup", extraTags = {"type", "product_prefix"}, histogram = true)
     @Transactional(readOnly = true)
     public List<MedicineResponse> searchMedicinesByBarcodePrefix(String prefix) {
         if (prefix == null || prefix.trim().isEmpty()) {
@@ -215,26 +264,16 @@ public class MedicineService {
     }
     
     /**
-     * Map single medicine to response with real-time stock information
+     * Map medicine to response; stock figures come from the maintained summary columns
      */
     private MedicineResponse mapToResponse(Medicine medicine) {
-        LocalDate today = LocalDate.now();
-        
-        // Get total stock (all batches)
-        Integer totalStock = batchRepository.getTotalStockQuantity(medicine);
-        if (totalStock == null) {
-            totalStock = 0;
-        }
-        
-        // Get available stock (non-expired batches only)
-        Integer availableStock = batchRepository.getTotalAvailableQuantity(medicine, today);
-        if (availableStock == null) {
-            availableStock = 0;
-        }
+        // A medicine created in this transaction has no summary yet
+        int totalStock = medicine.getTotalStock() != null ? medicine.getTotalStock() : 0;
+        int availableStock = medicine.getAvailableStock() != null ? medicine.getAvailableStock() : 0;
         
         // Determine stock status
         boolean outOfStock = availableStock == 0;
-        boolean lowStock = !outOfStock && availableStock <= DEFAULT_LOW_STOCK_THRESHOLD;
+        boolean lowStock = !outOfStock && availableStock <= medicine.getReorderLevel();
         
         return MedicineResponse.builder()
                 .id(medicine.getId())
@@ -248,77 +287,22 @@ public class MedicineService {
                 .status(medicine.getStatus())
                 .totalStock(totalStock)
                 .availableStock(availableStock)
+                .expiredStock(medicine.getExpiredStock() != null ? medicine.getExpiredStock() : 0)
+                .nextExpiryDate(medicine.getNextExpiryDate())
                 .lowStock(lowStock)
                 .outOfStock(outOfStock)
-                .lowStockThreshold(DEFAULT_LOW_STOCK_THRESHOLD)
+                .lowStockThreshold(medicine.getReorderLevel())
                 .createdAt(medicine.getCreatedAt())
                 .updatedAt(medicine.getUpdatedAt())
                 .build();
     }
     
     /**
-     * Map list of medicines to responses with optimized batch stock queries
-     * This method uses batch queries for better performance in production
+     * Map list of medicines to responses; the summary columns make this a plain row mapping
      */
     private List<MedicineResponse> mapToResponseList(List<Medicine> medicines) {
-        if (medicines.isEmpty()) {
-            return List.of();
-        }
-        
-        LocalDate today = LocalDate.now();
-        
-        // Batch query for stock quantities (performance optimization)
-        List<Long> medicineIds = medicines.stream()
-                .map(Medicine::getId)
-                .collect(Collectors.toList());
-        
-        // Get total stock quantities for all medicines in one query
-        List<Object[]> stockQuantities = batchRepository.getTotalStockQuantitiesByMedicineIds(medicineIds);
-        Map<Long, Integer> totalStockMap = stockQuantities.stream()
-                .collect(Collectors.toMap(
-                    row -> ((Long) row[0]),
-                    row -> ((Number) row[1]).intValue()
-                ));
-        
-        // Get available stock for each medicine (non-expired batches)
-        Map<Long, Integer> availableStockMap = medicines.stream()
-                .collect(Collectors.toMap(
-                    Medicine::getId,
-                    medicine -> {
-                        Integer stock = batchRepository.getTotalAvailableQuantity(medicine, today);
-                        return stock != null ? stock : 0;
-                    }
-                ));
-        
-        // Map to responses
         return medicines.stream()
-                .map(medicine -> {
-                    Long medicineId = medicine.getId();
-                    Integer totalStock = totalStockMap.getOrDefault(medicineId, 0);
-                    Integer availableStock = availableStockMap.getOrDefault(medicineId, 0);
-                    boolean outOfStock = availableStock == 0;
-                    boolean lowStock = !outOfStock && availableStock <= DEFAULT_LOW_STOCK_THRESHOLD;
-                    
-                    return MedicineResponse.builder()
-                            .id(medicine.getId())
-                            .name(medicine.getName())
-                            .manufacturer(medicine.getManufacturer())
-                            .category(medicine.getCategory())
-                            .barcode(medicine.getBarcode())
-                            .hsnCode(medicine.getHsnCode())
-                            .gstPercentage(medicine.getGstPercentage())
-                            .prescriptionRequired(medicine.getPrescriptionRequired())
-                            .status(medicine.getStatus())
-                            .totalStock(totalStock)
-                            .availableStock(availableStock)
-                            .lowStock(lowStock)
-                            .outOfStock(outOfStock)
-                            .lowStockThreshold(DEFAULT_LOW_STOCK_THRESHOLD)
-                            .createdAt(medicine.getCreatedAt())
-                            .updatedAt(medicine.getUpdatedAt())
-                            .build();
-                })
+                .map(this::mapToResponse)
                 .collect(Collectors.toList());
     }
 }
-
@@ -16,6 +16,8 @@ import com.itextpdf.layout.properties.UnitValue;
 import com.medicalstore.pos.dto.response.BillItemResponse;
 import com.medicalstore.pos.dto.response.BillResponse;
 import com.medicalstore.pos.dto.response.PaymentResponse;
+import com.medicalstore.pos.entity.Payment;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
@@ -29,6 +31,7 @@ public class PdfBillService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
     
+    @Timed(value = "pos.bill.pdf", description = "Bill PDF rendering", histogram = true)
     public byte[] generateBillPdf(BillResponse bill) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         PdfWriter writer = new PdfWriter(baos);
@@ -147,7 +150,9 @@ public class PdfBillService {
                         .setMarginBottom(10);
                 
                 for (PaymentResponse payment : bill.getPayments()) {
-                    paymentTable.addCell(createCell(payment.getMode().toString(), normalFont, 9, false));
+                    String label = payment.getType() == Payment.PaymentType.REFUND
+                            ? payment.getMode() + " REFUND" : payment.getMode().toString();
+                    paymentTable.addCell(createCell(label, normalFont, 9, false));
                     paymentTable.addCell(createCell(formatCurrency(payment.getAmount()), normalFont, 9, false)
                             .setTextAlignment(TextAlignment.RIGHT));
                 }
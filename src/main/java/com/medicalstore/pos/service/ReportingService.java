@@ -1,17 +1,20 @@
 package com.medicalstore.pos.service;
 
 import com.medicalstore.pos.dto.response.GstReportResponse;
+import com.medicalstore.pos.dto.response.LowStockReportResponse;
 import com.medicalstore.pos.dto.response.SalesReportResponse;
+import com.medicalstore.pos.dto.response.StockMovementReportResponse;
 import com.medicalstore.pos.dto.response.StockReportResponse;
 import com.medicalstore.pos.entity.Batch;
-import com.medicalstore.pos.entity.Bill;
-import com.medicalstore.pos.entity.BillItem;
+import com.medicalstore.pos.entity.DailyGstRollup;
 import com.medicalstore.pos.entity.Medicine;
 import com.medicalstore.pos.entity.Payment;
+import com.medicalstore.pos.entity.StockMovement;
 import com.medicalstore.pos.repository.BatchRepository;
-import com.medicalstore.pos.repository.BillRepository;
 import com.medicalstore.pos.repository.MedicineRepository;
 import com.medicalstore.pos.repository.PaymentRepository;
+import com.medicalstore.pos.repository.StockMovementRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,163 +24,170 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class ReportingService {
     
-    private final BillRepository billRepository;
     private final PaymentRepository paymentRepository;
     private final MedicineRepository medicineRepository;
     private final BatchRepository batchRepository;
-    private static final int LOW_STOCK_THRESHOLD = 10;
+    private final StockMovementRepository stockMovementRepository;
+    private final FifoBatchIndex fifoBatchIndex;
+    private final SalesRollup salesRollup;
     
-    public ReportingService(BillRepository billRepository, 
-                           PaymentRepository paymentRepository,
+    public ReportingService(PaymentRepository paymentRepository,
                            MedicineRepository medicineRepository,
-                           BatchRepository batchRepository) {
-        this.billRepository = billRepository;
+                           BatchRepository batchRepository,
+                           StockMovementRepository stockMovementRepository,
+                           FifoBatchIndex fifoBatchIndex,
+                           SalesRollup salesRollup) {
         this.paymentRepository = paymentRepository;
         this.medicineRepository = medicineRepository;
         this.batchRepository = batchRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.fifoBatchIndex = fifoBatchIndex;
+        this.salesRollup = salesRollup;
     }
     
+    /**
+     * Gross and net sales per day, read from the daily rollups: returns count on the day they were processed
+     */
+    @Timed(value = "pos.report", extraTags = {"report", "daily_sales"}, histogram = true)
     @Transactional(readOnly = true)
     public SalesReportResponse getDailySalesReport(LocalDate startDate, LocalDate endDate) {
         LocalDateTime start = startDate.atStartOfDay();
         LocalDateTime end = endDate.atTime(LocalTime.MAX);
         
-        List<Bill> bills = billRepository.findBillsByDateRange(start, end);
-        bills = bills.stream()
-                .filter(bill -> !bill.getCancelled())
-                .collect(Collectors.toList());
-        
-        BigDecimal totalSales = bills.stream()
-                .map(Bill::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal totalGst = bills.stream()
-                .map(Bill::getTotalGst)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Get payments by mode
-        List<Payment> payments = paymentRepository.findPaymentsByDateRange(start, end);
-        payments = payments.stream()
-                .filter(p -> p.getStatus() == Payment.PaymentStatus.COMPLETED)
-                .collect(Collectors.toList());
-        
-        BigDecimal totalCash = payments.stream()
-                .filter(p -> p.getMode() == Payment.PaymentMode.CASH)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal totalUpi = payments.stream()
-                .filter(p -> p.getMode() == Payment.PaymentMode.UPI)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        BigDecimal totalCard = payments.stream()
-                .filter(p -> p.getMode() == Payment.PaymentMode.CARD)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Daily breakdown
-        Map<LocalDate, List<Bill>> billsByDate = bills.stream()
-                .collect(Collectors.groupingBy(bill -> bill.getBillDate().toLocalDate()));
+        List<SalesRollup.DailyTotals> days = salesRollup.dailyTotals(startDate, endDate);
+        int totalBills = 0;
+        int totalReturns = 0;
+        BigDecimal totalSales = BigDecimal.ZERO;
+        BigDecimal totalGst = BigDecimal.ZERO;
+        BigDecimal totalRefunds = BigDecimal.ZERO;
+        BigDecimal refundedGst = BigDecimal.ZERO;
+        List<SalesReportResponse.DailySales> dailySales = new ArrayList<>();
+        for (SalesRollup.DailyTotals day : days) {
+            totalBills += day.bills();
+            totalReturns += day.returns();
+            totalSales = totalSales.add(day.sales());
+            totalGst = totalGst.add(day.gst());
+            totalRefunds = totalRefunds.add(day.refunds());
+            refundedGst = refundedGst.add(day.refundGst());
+            dailySales.add(SalesReportResponse.DailySales.builder()
+                    .date(day.date())
+                    .billCount(day.bills())
+                    .totalAmount(day.sales())
+                    .returnCount(day.returns())
+                    .refundAmount(day.refunds())
+                    .netAmount(day.sales().subtract(day.refunds()))
+                    .build());
+        }
         
-        List<SalesReportResponse.DailySales> dailySales = billsByDate.entrySet().stream()
-                .map(entry -> {
-                    LocalDate date = entry.getKey();
-                    List<Bill> dayBills = entry.getValue();
-                    BigDecimal dayTotal = dayBills.stream()
-                            .map(Bill::getTotalAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    
-                    return SalesReportResponse.DailySales.builder()
-                            .date(date)
-                            .billCount(dayBills.size())
-                            .totalAmount(dayTotal)
-                            .build();
-                })
-                .sorted((a, b) -> a.getDate().compareTo(b.getDate()))
-                .collect(Collectors.toList());
+        // Payments by mode in one grouped query; refunds are negative payment rows
+        Map<Payment.PaymentMode, BigDecimal> collected = new EnumMap<>(Payment.PaymentMode.class);
+        Map<Payment.PaymentMode, BigDecimal> refunded = new EnumMap<>(Payment.PaymentMode.class);
+        for (Object[] row : paymentRepository.sumByModeAndType(Payment.PaymentStatus.COMPLETED, start, end)) {
+            Map<Payment.PaymentMode, BigDecimal> totals = row[1] == Payment.PaymentType.REFUND ? refunded : collected;
+            totals.put((Payment.PaymentMode) row[0], (BigDecimal) row[2]);
+        }
+        List<SalesReportResponse.PaymentModeTotal> paymentModes = new ArrayList<>();
+        for (Payment.PaymentMode mode : Payment.PaymentMode.values()) {
+            BigDecimal modeCollected = collected.getOrDefault(mode, BigDecimal.ZERO);
+            BigDecimal modeRefunded = refunded.getOrDefault(mode, BigDecimal.ZERO);
+            paymentModes.add(SalesReportResponse.PaymentModeTotal.builder()
+                    .mode(mode)
+                    .collected(modeCollected)
+                    .refunded(modeRefunded)
+                    .net(modeCollected.add(modeRefunded))
+                    .build());
+        }
         
         return SalesReportResponse.builder()
                 .startDate(startDate)
                 .endDate(endDate)
-                .totalBills(bills.size())
+                .totalBills(totalBills)
                 .totalSales(totalSales)
                 .totalGst(totalGst)
-                .totalCash(totalCash)
-                .totalUpi(totalUpi)
-                .totalCard(totalCard)
+                .totalReturns(totalReturns)
+                .totalRefunds(totalRefunds)
+                .refundedGst(refundedGst)
+                .netSales(totalSales.subtract(totalRefunds))
+                .netGst(totalGst.subtract(refundedGst))
+                .totalCash(collected.getOrDefault(Payment.PaymentMode.CASH, BigDecimal.ZERO))
+                .totalUpi(collected.getOrDefault(Payment.PaymentMode.UPI, BigDecimal.ZERO))
+                .totalCard(collected.getOrDefault(Payment.PaymentMode.CARD, BigDecimal.ZERO))
+                .paymentModes(paymentModes)
                 .dailySales(dailySales)
                 .build();
     }
     
+    /**
+     * GST per HSN code and rate from the daily rollups, with returns as negative credit note lines
+     */
+    @Timed(value = "pos.report", extraTags = {"report", "gst"}, histogram = true)
     @Transactional(readOnly = true)
     public GstReportResponse getGstReport(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(LocalTime.MAX);
-        
-        List<Bill> bills = billRepository.findBillsByDateRange(start, end);
-        bills = bills.stream()
-                .filter(bill -> !bill.getCancelled())
-                .collect(Collectors.toList());
-        
-        // Group by HSN code
-        Map<String, List<BillItem>> itemsByHsn = bills.stream()
-                .flatMap(bill -> bill.getBillItems().stream())
-                .collect(Collectors.groupingBy(item -> item.getMedicine().getHsnCode()));
-        
         List<GstReportResponse.GstBreakup> gstBreakup = new ArrayList<>();
         BigDecimal totalCgst = BigDecimal.ZERO;
         BigDecimal totalSgst = BigDecimal.ZERO;
+        BigDecimal creditNoteCgst = BigDecimal.ZERO;
+        BigDecimal creditNoteSgst = BigDecimal.ZERO;
         
-        for (Map.Entry<String, List<BillItem>> entry : itemsByHsn.entrySet()) {
-            String hsnCode = entry.getKey();
-            List<BillItem> items = entry.getValue();
-            
-            if (items.isEmpty()) continue;
-            
-            BillItem firstItem = items.get(0);
-            String medicineName = firstItem.getMedicine().getName();
-            BigDecimal gstPercentage = firstItem.getGstPercentage();
-            
-            BigDecimal taxableAmount = items.stream()
-                    .map(item -> item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            BigDecimal totalGst = items.stream()
-                    .map(BillItem::getGstAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        for (SalesRollup.GstTotals line : salesRollup.gstTotals(startDate, endDate)) {
+            boolean creditNote = line.entryType() == DailyGstRollup.EntryType.CREDIT_NOTE;
             
             // Split GST into CGST and SGST (assuming 50-50 split for India)
-            BigDecimal cgst = totalGst.divide(BigDecimal.valueOf(2), 2, java.math.RoundingMode.HALF_UP);
-            BigDecimal sgst = totalGst.subtract(cgst);
-            
-            totalCgst = totalCgst.add(cgst);
-            totalSgst = totalSgst.add(sgst);
+            BigDecimal cgst = line.gstAmount().divide(BigDecimal.valueOf(2), 2, RoundingMode.HALF_UP);
+            BigDecimal sgst = line.gstAmount().subtract(cgst);
+            BigDecimal taxableAmount = line.taxableAmount();
+            BigDecimal lineGst = line.gstAmount();
+            int quantity = line.quantity();
+            if (creditNote) {
+                cgst = cgst.negate();
+                sgst = sgst.negate();
+                taxableAmount = taxableAmount.negate();
+                lineGst = lineGst.negate();
+                quantity = -quantity;
+                creditNoteCgst = creditNoteCgst.add(cgst);
+                creditNoteSgst = creditNoteSgst.add(sgst);
+            } else {
+                totalCgst = totalCgst.add(cgst);
+                totalSgst = totalSgst.add(sgst);
+            }
             
             gstBreakup.add(GstReportResponse.GstBreakup.builder()
-                    .hsnCode(hsnCode)
-                    .medicineName(medicineName)
-                    .gstPercentage(gstPercentage)
+                    .hsnCode(line.hsnCode())
+                    .medicineName(line.medicineName())
+                    .gstPercentage(line.gstPercentage())
+                    .entryType(line.entryType().name())
+                    .quantity(quantity)
                     .taxableAmount(taxableAmount)
                     .cgst(cgst)
                     .sgst(sgst)
-                    .totalGst(totalGst)
+                    .totalGst(lineGst)
                     .build());
         }
         
+        BigDecimal totalGst = totalCgst.add(totalSgst);
+        BigDecimal creditNoteGst = creditNoteCgst.add(creditNoteSgst);
         return GstReportResponse.builder()
                 .startDate(startDate)
                 .endDate(endDate)
                 .totalCgst(totalCgst)
                 .totalSgst(totalSgst)
-                .totalGst(totalCgst.add(totalSgst))
+                .totalGst(totalGst)
+                .creditNoteCgst(creditNoteCgst)
+                .creditNoteSgst(creditNoteSgst)
+                .creditNoteGst(creditNoteGst)
+                .netGst(totalGst.add(creditNoteGst))
                 .gstBreakup(gstBreakup)
                 .build();
     }
@@ -203,11 +213,14 @@ public class ReportingService {
                 .build();
     }
     
+    @Timed(value = "pos.report", extraTags = {"report", "stock"}, histogram = true)
     @Transactional(readOnly = true)
     public StockReportResponse getStockReport() {
         LocalDate today = LocalDate.now();
         List<Medicine> medicines = medicineRepository.findAll();
         List<Batch> allBatches = batchRepository.findAll();
+        Map<Long, List<Batch>> batchesByMedicine = allBatches.stream()
+                .collect(Collectors.groupingBy(batch -> batch.getMedicine().getId()));
         
         int totalMedicines = medicines.size();
         int totalBatches = allBatches.size();
@@ -224,17 +237,17 @@ public class ReportingService {
         
         // Process each medicine
         for (Medicine medicine : medicines) {
-            List<Batch> medicineBatches = batchRepository.findByMedicine(medicine);
+            List<Batch> medicineBatches = batchesByMedicine.getOrDefault(medicine.getId(), List.of());
             
-            int medicineTotalStock = batchRepository.getTotalStockQuantity(medicine);
-            int medicineAvailableStock = batchRepository.getTotalAvailableQuantity(medicine, today);
-            int medicineExpiredStock = medicineTotalStock - medicineAvailableStock;
+            int medicineTotalStock = medicine.getTotalStock();
+            int medicineAvailableStock = medicine.getAvailableStock();
+            int medicineExpiredStock = medicine.getExpiredStock();
             
             totalStockQuantity += medicineTotalStock;
             availableStockQuantity += medicineAvailableStock;
             expiredStockQuantity += medicineExpiredStock;
             
-            boolean isLowStock = medicineAvailableStock > 0 && medicineAvailableStock <= LOW_STOCK_THRESHOLD;
+            boolean isLowStock = medicineAvailableStock > 0 && medicineAvailableStock <= medicine.getReorderLevel();
             boolean isOutOfStock = medicineAvailableStock == 0;
             
             if (isLowStock) {
@@ -257,7 +270,7 @@ public class ReportingService {
                 
                 // Calculate stock value using purchase price (cost basis)
                 for (Batch batch : medicineBatches) {
-                    if (batch.getExpiryDate().isAfter(today) || batch.getExpiryDate().isEqual(today)) {
+                    if (!batch.isExpired()) {
                         medicineStockValue = medicineStockValue.add(
                                 batch.getPurchasePrice().multiply(BigDecimal.valueOf(batch.getQuantityAvailable())));
                     }
@@ -288,14 +301,14 @@ public class ReportingService {
                         .medicineName(medicine.getName())
                         .manufacturer(medicine.getManufacturer())
                         .availableStock(medicineAvailableStock)
-                        .lowStockThreshold(LOW_STOCK_THRESHOLD)
+                        .lowStockThreshold(medicine.getReorderLevel())
                         .averageSellingPrice(avgSellingPrice)
                         .build());
             }
         }
         
         // Get expired batches
-        List<Batch> expiredBatches = batchRepository.findExpiredBatches(today);
+        List<Batch> expiredBatches = batchRepository.findByExpiryStatusWithStock(List.of(Batch.ExpiryStatus.EXPIRED));
         for (Batch batch : expiredBatches) {
             if (batch.getQuantityAvailable() > 0) {
                 expiredStock.add(StockReportResponse.ExpiredStockItem.builder()
@@ -330,5 +343,118 @@ public class ReportingService {
                 .lowStockItems(lowStockItems)
                 .build();
     }
+    
+    /**
+     * Medicines at or below their reorder level and those out of stock, read from the in-memory
+     * stock sets: one lookup of the k listed medicines instead of a scan of every batch.
+     */
+    @Timed(value = "pos.report", extraTags = {"report", "low_stock"}, histogram = true)
+    @Transactional(readOnly = true)
+    public LowStockReportResponse getLowStockReport() {
+        List<Long> lowIds = fifoBatchIndex.lowStockMedicineIds();
+        List<Long> outIds = fifoBatchIndex.outOfStockMedicineIds();
+        if (lowIds == null || outIds == null) {
+            throw new RuntimeException("Stock levels are still loading, try again shortly");
+        }
+        
+        List<Long> ids = new ArrayList<>(lowIds);
+        ids.addAll(outIds);
+        Map<Long, Medicine> medicines = medicineRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Medicine::getId, medicine -> medicine));
+        Map<Long, Long> available = fifoBatchIndex.availableStock(lowIds);
+        
+        List<LowStockReportResponse.Item> lowStockItems = lowIds.stream()
+                .filter(medicines::containsKey)
+                .map(id -> toLowStockItem(medicines.get(id), available.get(id).intValue()))
+                .sorted(Comparator.comparing(LowStockReportResponse.Item::getAvailableStock))
+                .toList();
+        List<LowStockReportResponse.Item> outOfStockItems = outIds.stream()
+                .filter(medicines::containsKey)
+                .map(id -> toLowStockItem(medicines.get(id), 0))
+                .toList();
+        
+        return LowStockReportResponse.builder()
+                .reportDate(LocalDate.now())
+                .lowStockMedicines(lowStockItems.size())
+                .outOfStockMedicines(outOfStockItems.size())
+                .lowStockItems(lowStockItems)
+                .outOfStockItems(outOfStockItems)
+                .build();
+    }
+    
+    private static LowStockReportResponse.Item toLowStockItem(Medicine medicine, int availableStock) {
+        return LowStockReportResponse.Item.builder()
+                .medicineId(medicine.getId())
+                .medicineName(medicine.getName())
+                .manufacturer(medicine.getManufacturer())
+                .category(medicine.getCategory())
+                .status(medicine.getStatus())
+                .availableStock(availableStock)
+                .reorderLevel(medicine.getReorderLevel())
+                .build();
+    }
+    
+    /**
+     * Movement velocity and ledger valuation per medicine, aggregated from the stock movement ledger
+     * (two grouped queries) instead of walking bills and batches.
+     */
+    @Timed(value = "pos.report", extraTags = {"report", "stock_movements"}, histogram = true)
+    @Transactional(readOnly = true)
+    public StockMovementReportResponse getStockMovementReport(int days) {
+        if (days < 1 || days > 366) {
+            throw new RuntimeException("Days must be between 1 and 366");
+        }
+        LocalDateTime since = LocalDate.now().minusDays(days - 1L).atStartOfDay();
+        
+        Map<Long, Map<StockMovement.MovementType, Integer>> windowUnits = new HashMap<>();
+        for (Object[] row : stockMovementRepository.summarizeSince(since)) {
+            windowUnits.computeIfAbsent((Long) row[0], id -> new HashMap<>())
+                    .put((StockMovement.MovementType) row[1], ((Number) row[2]).intValue());
+        }
+        Map<Long, Object[]> onHand = new HashMap<>();
+        for (Object[] row : stockMovementRepository.summarizeOnHand()) {
+            onHand.put((Long) row[0], row);
+        }
+        
+        Set<Long> medicineIds = new HashSet<>(windowUnits.keySet());
+        medicineIds.addAll(onHand.keySet());
+        Map<Long, String> names = medicineRepository.findAllById(medicineIds).stream()
+                .collect(Collectors.toMap(Medicine::getId, Medicine::getName));
+        
+        BigDecimal totalStockValue = BigDecimal.ZERO;
+        List<StockMovementReportResponse.MedicineMovement> medicines = new ArrayList<>();
+        for (Long medicineId : medicineIds) {
+            Map<StockMovement.MovementType, Integer> units = windowUnits.getOrDefault(medicineId, Map.of());
+            Object[] stock = onHand.get(medicineId);
+            int sold = -units.getOrDefault(StockMovement.MovementType.SALE, 0);
+            int returned = units.getOrDefault(StockMovement.MovementType.RETURN, 0);
+            BigDecimal stockValue = stock != null && stock[2] != null ? (BigDecimal) stock[2] : BigDecimal.ZERO;
+            totalStockValue = totalStockValue.add(stockValue);
+            
+            medicines.add(StockMovementReportResponse.MedicineMovement.builder()
+                    .medicineId(medicineId)
+                    .medicineName(names.get(medicineId))
+                    .received(units.getOrDefault(StockMovement.MovementType.RECEIPT, 0))
+                    .sold(sold)
+                    .returned(returned)
+                    .cancelled(units.getOrDefault(StockMovement.MovementType.CANCEL, 0))
+                    .adjusted(units.getOrDefault(StockMovement.MovementType.ADJUSTMENT, 0))
+                    .netChange(units.values().stream().mapToInt(Integer::intValue).sum())
+                    .unitsSoldPerDay(BigDecimal.valueOf(sold - returned)
+                            .divide(BigDecimal.valueOf(days), 2, RoundingMode.HALF_UP))
+                    .stockOnHand(stock != null ? ((Number) stock[1]).intValue() : 0)
+                    .stockValue(stockValue)
+                    .build());
+        }
+        medicines.sort(Comparator.comparing(StockMovementReportResponse.MedicineMovement::getUnitsSoldPerDay).reversed()
+                .thenComparing(StockMovementReportResponse.MedicineMovement::getMedicineId));
+        
+        return StockMovementReportResponse.builder()
+                .since(since)
+                .days(days)
+                .totalStockValue(totalStockValue)
+                .medicines(medicines)
+                .build();
+    }
 }
 
@@ -5,6 +5,7 @@ import com.medicalstore.pos.dto.request.ReturnRequest;
 import com.medicalstore.pos.dto.response.BillResponse;
 import com.medicalstore.pos.dto.response.BillItemResponse;
 import com.medicalstore.pos.dto.response.PaymentResponse;
+import com.medicalstore.pos.dto.response.ReturnPageResponse;
 import com.medicalstore.pos.dto.response.ReturnResponse;
 import com.medicalstore.pos.dto.response.ReturnItemResponse;
 import com.medicalstore.pos.entity.Bill;
@@ -13,64 +14,83 @@ import com.medicalstore.pos.entity.AuditLog;
 import com.medicalstore.pos.entity.Payment;
 import com.medicalstore.pos.entity.Return;
 import com.medicalstore.pos.entity.ReturnItem;
+import com.medicalstore.pos.entity.StockMovement;
 import com.medicalstore.pos.entity.Return.ReturnType;
 import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.metrics.PhaseTimer;
+import com.medicalstore.pos.metrics.PosMetrics;
 import com.medicalstore.pos.repository.BillRepository;
 import com.medicalstore.pos.repository.ReturnItemRepository;
 import com.medicalstore.pos.repository.ReturnRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class ReturnService {
     
+    private static final int MAX_PAGE_SIZE = 200;
+    // Open ends of the date filter and the first page's cursor; within PostgreSQL's timestamp range
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 1, 1, 0, 0);
+    
     private final ReturnRepository returnRepository;
     private final ReturnItemRepository returnItemRepository;
     private final BillRepository billRepository;
     private final BatchService batchService;
+    private final StockBarcodeService stockBarcodeService;
     private final AuditService auditService;
+    private final SalesRollup salesRollup;
+    private final PosMetrics posMetrics;
     
     public ReturnService(ReturnRepository returnRepository, ReturnItemRepository returnItemRepository,
-                        BillRepository billRepository, BatchService batchService, AuditService auditService) {
+                        BillRepository billRepository, BatchService batchService,
+                        StockBarcodeService stockBarcodeService, AuditService auditService,
+                        SalesRollup salesRollup, PosMetrics posMetrics) {
         this.returnRepository = returnRepository;
         this.returnItemRepository = returnItemRepository;
         this.billRepository = billRepository;
         this.batchService = batchService;
+        this.stockBarcodeService = stockBarcodeService;
         this.auditService = auditService;
+        this.salesRollup = salesRollup;
+        this.posMetrics = posMetrics;
     }
     
     /**
      * Processes a return and restores stock to the ORIGINAL batch.
+     * Items with scanned unit barcodes make exactly those units available again; the rest are restored
+     * with one ordered update across their batches, so a return's round trips don't grow with its items.
      */
+    @Timed(value = "pos.return.process", description = "Return processing", histogram = true)
     @Transactional(rollbackFor = Exception.class)
     public BillResponse processReturn(ReturnRequest request, User user, HttpServletRequest httpRequest) {
-        // Get the bill entity - use getReferenceById to get a managed proxy
-        // This ensures the entity is properly managed in the persistence context
-        if (!billRepository.existsById(request.getBillId())) {
-            throw new RuntimeException("Bill not found with id: " + request.getBillId());
-        }
-        
-        // Use getReferenceById to get a managed entity reference (proxy)
-        // This is better for foreign key relationships as it doesn't load the full entity
-        Bill originalBill = billRepository.getReferenceById(request.getBillId());
-        
-        // Verify bill has an ID by accessing it (this will trigger proxy initialization if needed)
-        Long billId = originalBill.getId();
-        if (billId == null) {
-            throw new RuntimeException("Bill ID is null");
-        }
+        PhaseTimer phases = posMetrics.startPhases("return.process");
         
-        // Force load bill items and payments within transaction to avoid LazyInitializationException
-        originalBill.getBillItems().size();
-        originalBill.getPayments().size();
+        // Lock the bill so concurrent returns against it are applied one after the other,
+        // then load its items and their medicines in one query
+        Bill originalBill = billRepository.findByIdForUpdate(request.getBillId())
+                .orElseThrow(() -> new RuntimeException("Bill not found with id: " + request.getBillId()));
+        billRepository.findWithItemsById(originalBill.getId());
+        phases.mark(PosMetrics.LOCKING);
         
         if (originalBill.getCancelled()) {
             throw new RuntimeException("Cannot process return for a cancelled bill");
@@ -80,116 +100,145 @@ public class ReturnService {
             throw new RuntimeException("Can only process returns for paid bills");
         }
         
-        // Generate return number
-        String returnNumber = generateReturnNumber();
-        
-        // Process return items and calculate refund amount
-        BigDecimal totalRefund = BigDecimal.ZERO;
-        ReturnType returnType = ReturnType.FULL;
-        List<ReturnItem> returnItems = new ArrayList<>();
+        Map<Long, BillItem> billItems = originalBill.getBillItems().stream()
+                .collect(Collectors.toMap(BillItem::getId, Function.identity()));
         
+        // Validate every line before any stock moves; lines for the same bill item are summed
+        Map<Long, Integer> returnedByItem = new LinkedHashMap<>();
+        Map<Long, Integer> restoredByBatch = new TreeMap<>();
+        Map<BillItem, List<String>> returnedUnits = new LinkedHashMap<>();
         for (ReturnItemRequest itemRequest : request.getItems()) {
-            BillItem billItem = originalBill.getBillItems().stream()
-                    .filter(item -> item.getId().equals(itemRequest.getBillItemId()))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Bill item not found: " + itemRequest.getBillItemId()));
-            
-            if (itemRequest.getQuantity() > billItem.getQuantity()) {
-                throw new RuntimeException("Return quantity cannot exceed original quantity");
+            BillItem billItem = billItems.get(itemRequest.getBillItemId());
+            if (billItem == null) {
+                throw new RuntimeException("Bill item not found: " + itemRequest.getBillItemId());
             }
             
-            // Calculate refund amount (proportional)
-            BigDecimal refundPerUnit = billItem.getTotalAmount()
-                    .divide(BigDecimal.valueOf(billItem.getQuantity()), 2, java.math.RoundingMode.HALF_UP);
-            BigDecimal itemRefund = refundPerUnit.multiply(BigDecimal.valueOf(itemRequest.getQuantity()));
-            totalRefund = totalRefund.add(itemRefund);
-            
-            // Restore stock to ORIGINAL batch
-            batchService.restoreStock(billItem.getBatch().getId(), itemRequest.getQuantity());
+            // Earlier returns count too; the bill lock keeps returnedQuantity stable until this one commits
+            int returned = returnedByItem.merge(billItem.getId(), itemRequest.getQuantity(), Integer::sum);
+            if (returned > billItem.netQuantity()) {
+                throw new RuntimeException("Return quantity cannot exceed the quantity not yet returned. Sold: " +
+                        billItem.getQuantity() + ", already returned: " + billItem.getReturnedQuantity() +
+                        ", requested: " + returned);
+            }
             
-            if (itemRequest.getQuantity() < billItem.getQuantity()) {
-                returnType = ReturnType.PARTIAL;
+            if (itemRequest.getUnitBarcodes() != null && !itemRequest.getUnitBarcodes().isEmpty()) {
+                if (itemRequest.getQuantity() != itemRequest.getUnitBarcodes().size()) {
+                    throw new RuntimeException("Quantity must match the number of returned unit barcodes");
+                }
+                // Marked available below, once their batch stock is back
+                returnedUnits.computeIfAbsent(billItem, item -> new ArrayList<>()).addAll(itemRequest.getUnitBarcodes());
             }
+            // Restore stock to ORIGINAL batch
+            restoredByBatch.merge(billItem.getBatch().getId(), itemRequest.getQuantity(), Integer::sum);
         }
+        phases.mark(PosMetrics.ALLOCATION);
         
-        // Create return entity - ensure originalBill is properly set
-        // Validate that originalBill is not null and has an ID
-        if (originalBill == null || originalBill.getId() == null) {
-            throw new RuntimeException("Invalid bill entity: bill is null or has no ID");
+        String returnNumber = generateReturnNumber();
+        batchService.restoreStock(restoredByBatch, StockMovement.MovementType.RETURN, returnNumber);
+        if (!returnedUnits.isEmpty()) {
+            stockBarcodeService.markUnitsReturned(returnedUnits);
         }
+        phases.mark(PosMetrics.LOCKING);
         
-        // Create return entity using constructor and setters to ensure relationships are set
-        // Using setters instead of builder to avoid any Lombok builder issues with relationships
-        Return returnEntity = new Return();
-        returnEntity.setReturnNumber(returnNumber);
-        returnEntity.setOriginalBill(originalBill);  // Set the managed bill entity
-        returnEntity.setProcessedBy(user);  // Set the user entity
-        returnEntity.setReturnDate(LocalDateTime.now());
-        returnEntity.setRefundAmount(totalRefund);
-        returnEntity.setReason(request.getReason());
-        returnEntity.setReturnType(returnType);
-        
-        // Double-check relationships are set
-        if (returnEntity.getOriginalBill() == null) {
-            throw new RuntimeException("originalBill is null after setting. Bill ID was: " + billId);
-        }
-        if (returnEntity.getOriginalBill().getId() == null) {
-            throw new RuntimeException("originalBill.getId() is null. Bill entity: " + originalBill);
-        }
-        if (returnEntity.getProcessedBy() == null) {
-            throw new RuntimeException("processedBy is null after setting. User ID was: " + 
-                    (user != null ? user.getId() : "null"));
-        }
-        if (returnEntity.getProcessedBy().getId() == null) {
-            throw new RuntimeException("processedBy.getId() is null. User entity: " + user);
+        // Refund is what the cumulative return is worth less what earlier returns already refunded;
+        // returning the last unit settles at the line total, so per-unit rounding never over-refunds.
+        // The GST inside it is split the same way and reported as a credit note
+        BigDecimal totalRefund = BigDecimal.ZERO;
+        Map<Long, BigDecimal> refundByItem = new LinkedHashMap<>();
+        List<SalesRollup.Line> creditNotes = new ArrayList<>();
+        for (Map.Entry<Long, Integer> returned : returnedByItem.entrySet()) {
+            BillItem billItem = billItems.get(returned.getKey());
+            int before = billItem.getReturnedQuantity();
+            int after = before + returned.getValue();
+            BigDecimal refundedAfter = after == billItem.getQuantity() ? billItem.getTotalAmount()
+                    : BillingCalculator.refundAmount(billItem.getTotalAmount(), billItem.getQuantity(), after);
+            BigDecimal itemRefund = refundedAfter.subtract(
+                    BillingCalculator.refundAmount(billItem.getTotalAmount(), billItem.getQuantity(), before));
+            BigDecimal gstAfter = after == billItem.getQuantity() ? billItem.getGstAmount()
+                    : BillingCalculator.refundGst(billItem.getGstAmount(), billItem.getQuantity(), after);
+            BigDecimal itemGst = gstAfter.subtract(
+                    BillingCalculator.refundGst(billItem.getGstAmount(), billItem.getQuantity(), before));
+            refundByItem.put(billItem.getId(), itemRefund);
+            creditNotes.add(new SalesRollup.Line(billItem.getMedicine().getHsnCode(), billItem.getGstPercentage(),
+                    returned.getValue(), itemRefund.subtract(itemGst), itemGst));
+            totalRefund = totalRefund.add(itemRefund);
+            billItem.setReturnedQuantity(after);
         }
         
-        // Log for debugging
-        System.out.println("DEBUG: Before save - originalBill.id=" + returnEntity.getOriginalBill().getId() + 
-                          ", processedBy.id=" + returnEntity.getProcessedBy().getId());
+        // FULL once nothing of the bill is left unreturned
+        ReturnType returnType = originalBill.getBillItems().stream().allMatch(item -> item.netQuantity() == 0)
+                ? ReturnType.FULL : ReturnType.PARTIAL;
         
-        // Save the entity
-        returnEntity = returnRepository.saveAndFlush(returnEntity);  // Use saveAndFlush to force immediate persistence
+        Return returnEntity = returnRepository.save(Return.builder()
+                .returnNumber(returnNumber)
+                .originalBill(originalBill)
+                .processedBy(user)
+                .returnDate(LocalDateTime.now())
+                .refundAmount(totalRefund)
+                .reason(request.getReason())
+                .returnType(returnType)
+                .build());
         
-        // Create return items with proper reference
-        for (ReturnItemRequest itemRequest : request.getItems()) {
-            BillItem billItem = originalBill.getBillItems().stream()
-                    .filter(item -> item.getId().equals(itemRequest.getBillItemId()))
-                    .findFirst()
-                    .orElseThrow();
-            
-            BigDecimal refundPerUnit = billItem.getTotalAmount()
-                    .divide(BigDecimal.valueOf(billItem.getQuantity()), 2, java.math.RoundingMode.HALF_UP);
-            BigDecimal itemRefund = refundPerUnit.multiply(BigDecimal.valueOf(itemRequest.getQuantity()));
-            
-            ReturnItem returnItem = ReturnItem.builder()
+        // Return items take their ids from a pooled sequence, so they go out as one batched insert
+        List<ReturnItem> returnItems = new ArrayList<>();
+        for (Map.Entry<Long, Integer> returned : returnedByItem.entrySet()) {
+            BillItem billItem = billItems.get(returned.getKey());
+            returnItems.add(ReturnItem.builder()
                     .returnEntity(returnEntity)
                     .medicine(billItem.getMedicine())
                     .batch(billItem.getBatch())
                     .batchNumber(billItem.getBatchNumber())
-                    .quantity(itemRequest.getQuantity())
-                    .refundAmount(itemRefund)
-                    .build();
-            
-            returnItems.add(returnItem);
+                    .quantity(returned.getValue())
+                    .refundAmount(refundByItem.get(billItem.getId()))
+                    .build());
         }
-        
-        // Save return items
         returnItemRepository.saveAll(returnItems);
+        salesRollup.returnProcessed(originalBill, returnEntity.getReturnDate().toLocalDate(), totalRefund, creditNotes);
+        
+        // The refund is paid out as a negative payment on the bill, flushed with the return items
+        if (totalRefund.signum() != 0) {
+            originalBill.getPayments().add(Payment.builder()
+                    .bill(originalBill)
+                    .returnEntity(returnEntity)
+                    .type(Payment.PaymentType.REFUND)
+                    .paymentReference(request.getRefundReference() != null && !request.getRefundReference().isBlank()
+                            ? request.getRefundReference().trim() : "RF-" + returnNumber)
+                    .mode(request.getRefundMode() != null ? request.getRefundMode() : refundMode(originalBill))
+                    .amount(totalRefund.negate())
+                    .status(Payment.PaymentStatus.COMPLETED)
+                    .paymentDate(returnEntity.getReturnDate())
+                    .build());
+        }
         
         // Update bill payment status if full return
         if (returnType == ReturnType.FULL) {
             originalBill.setPaymentStatus(Bill.PaymentStatus.REFUNDED);
-            billRepository.save(originalBill);
         }
+        phases.mark(PosMetrics.PERSISTENCE);
         
         // Audit log
         auditService.log(AuditLog.ActionType.REFUND_PROCESSED, user, "Return", 
                         returnEntity.getId().toString(), "Return processed: " + returnNumber,
                         null, returnEntity.toString(), httpRequest);
+        phases.mark(PosMetrics.AUDIT);
         
         // Return updated bill
-        return mapBillToResponse(originalBill);
+        BillResponse response = mapBillToResponse(originalBill);
+        phases.mark(PosMetrics.PERSISTENCE);
+        phases.stop();
+        return response;
+    }
+    
+    /**
+     * Refunds go back the way the bill was paid: the mode of its largest payment, cash if it has none
+     */
+    private Payment.PaymentMode refundMode(Bill bill) {
+        return bill.getPayments().stream()
+                .filter(p -> p.getType() == Payment.PaymentType.SALE)
+                .filter(p -> p.getStatus() == Payment.PaymentStatus.COMPLETED)
+                .max(Comparator.comparing(Payment::getAmount))
+                .map(Payment::getMode)
+                .orElse(Payment.PaymentMode.CASH);
     }
     
     private String generateReturnNumber() {
@@ -243,6 +292,7 @@ public class ReturnService {
         
         BigDecimal totalPaid = bill.getPayments().stream()
                 .filter(p -> p.getStatus() == Payment.PaymentStatus.COMPLETED)
+                .filter(p -> p.getType() == Payment.PaymentType.SALE)
                 .map(Payment::getAmount)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         
@@ -260,6 +310,8 @@ public class ReturnService {
                 .medicineName(item.getMedicine().getName())
                 .batchNumber(item.getBatchNumber())
                 .quantity(item.getQuantity())
+                .returnedQuantity(item.getReturnedQuantity())
+                .netQuantity(item.netQuantity())
                 .unitPrice(item.getUnitPrice())
                 .gstPercentage(item.getGstPercentage())
                 .gstAmount(item.getGstAmount())
@@ -271,6 +323,7 @@ public class ReturnService {
         return PaymentResponse.builder()
                 .id(payment.getId())
                 .paymentReference(payment.getPaymentReference())
+                .type(payment.getType())
                 .mode(payment.getMode())
                 .amount(payment.getAmount())
                 .status(payment.getStatus())
@@ -279,30 +332,42 @@ public class ReturnService {
     }
     
     /**
-     * Get all returns
+     * A page of returns, newest first, optionally limited to a date range and a bill.
+     * Keyset pagination on (returnDate, id): each page is one indexed query plus one for its items,
+     * however deep the client has scrolled.
      */
     @Transactional(readOnly = true)
-    public List<ReturnResponse> getAllReturns() {
-        try {
-            List<Return> returns = returnRepository.findAll();
-            if (returns == null || returns.isEmpty()) {
-                return new ArrayList<>();
-            }
-            // Force load all relationships before mapping
-            for (Return returnEntity : returns) {
-                if (returnEntity.getOriginalBill() != null) {
-                    returnEntity.getOriginalBill().getBillNumber();
-                }
-                if (returnEntity.getProcessedBy() != null) {
-                    returnEntity.getProcessedBy().getFullName();
-                }
-            }
-            return returns.stream()
-                    .map(this::mapReturnToResponse)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            throw new RuntimeException("Error fetching returns: " + e.getMessage(), e);
+    public ReturnPageResponse getReturns(LocalDate from, LocalDate to, Long billId, String after, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new RuntimeException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        LocalDateTime start = from != null ? from.atStartOfDay() : EARLIEST;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : LATEST;
+        if (!start.isBefore(end)) {
+            throw new RuntimeException("'from' must not be after 'to'");
+        }
+        
+        LocalDateTime afterDate = LATEST;
+        long afterId = Long.MAX_VALUE;
+        if (after != null && !after.isBlank()) {
+            String[] cursor = decodeCursor(after);
+            afterDate = LocalDateTime.parse(cursor[0]);
+            afterId = Long.parseLong(cursor[1]);
         }
+        
+        // One extra row tells whether another page follows
+        List<Return> returns = returnRepository.findPage(start, end, billId, afterDate, afterId,
+                PageRequest.of(0, size + 1));
+        String nextCursor = null;
+        if (returns.size() > size) {
+            returns = returns.subList(0, size);
+            Return last = returns.get(size - 1);
+            nextCursor = encodeCursor(last.getReturnDate(), last.getId());
+        }
+        return ReturnPageResponse.builder()
+                .returns(mapReturnsToResponse(returns))
+                .nextCursor(nextCursor)
+                .build();
     }
     
     /**
@@ -312,7 +377,7 @@ public class ReturnService {
     public ReturnResponse getReturnById(Long id) {
         Return returnEntity = returnRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Return not found with id: " + id));
-        return mapReturnToResponse(returnEntity);
+        return mapReturnsToResponse(List.of(returnEntity)).get(0);
     }
     
     /**
@@ -320,70 +385,73 @@ public class ReturnService {
      */
     @Transactional(readOnly = true)
     public List<ReturnResponse> getReturnsByBillId(Long billId) {
-        List<Return> returns = returnRepository.findByOriginalBillId(billId);
+        return mapReturnsToResponse(returnRepository.findByOriginalBillIdWithDetails(billId));
+    }
+    
+    private static String encodeCursor(LocalDateTime returnDate, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((returnDate + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(cursor);
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new RuntimeException("Invalid returns cursor: " + cursor);
+        }
+    }
+    
+    /**
+     * Maps returns whose bill and user are already loaded; their items come from one query
+     */
+    private List<ReturnResponse> mapReturnsToResponse(List<Return> returns) {
+        if (returns.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, List<ReturnItemResponse>> itemsByReturn = returnItemRepository.findByReturnEntityIn(returns).stream()
+                .collect(Collectors.groupingBy(item -> item.getReturnEntity().getId(),
+                        Collectors.mapping(this::mapReturnItemToResponse, Collectors.toList())));
         return returns.stream()
-                .map(this::mapReturnToResponse)
+                .map(returnEntity -> mapReturnToResponse(returnEntity,
+                        itemsByReturn.getOrDefault(returnEntity.getId(), new ArrayList<>())))
                 .collect(Collectors.toList());
     }
     
     /**
      * Map Return entity to ReturnResponse DTO
      */
-    private ReturnResponse mapReturnToResponse(Return returnEntity) {
-        try {
-            // Force load lazy relationships within transaction
-            if (returnEntity.getOriginalBill() != null) {
-                returnEntity.getOriginalBill().getBillNumber();
-            }
-            if (returnEntity.getProcessedBy() != null) {
-                returnEntity.getProcessedBy().getFullName();
-            }
-            
-            // Load return items (JOIN FETCH should eagerly load medicine and batch)
-            List<ReturnItem> returnItems = returnItemRepository.findByReturnEntity(returnEntity);
-            
-            List<ReturnItemResponse> items = (returnItems != null) 
-                    ? returnItems.stream()
-                            .map(this::mapReturnItemToResponse)
-                            .collect(Collectors.toList())
-                    : new ArrayList<>();
-            
-            return ReturnResponse.builder()
-                    .id(returnEntity.getId())
-                    .returnNumber(returnEntity.getReturnNumber())
-                    .billId(returnEntity.getOriginalBill() != null ? returnEntity.getOriginalBill().getId() : null)
-                    .billNumber(returnEntity.getOriginalBill() != null ? returnEntity.getOriginalBill().getBillNumber() : null)
-                    .processedById(returnEntity.getProcessedBy() != null ? returnEntity.getProcessedBy().getId() : null)
-                    .processedByName(returnEntity.getProcessedBy() != null ? returnEntity.getProcessedBy().getFullName() : null)
-                    .returnDate(returnEntity.getReturnDate())
-                    .refundAmount(returnEntity.getRefundAmount())
-                    .reason(returnEntity.getReason())
-                    .returnType(returnEntity.getReturnType())
-                    .createdAt(returnEntity.getCreatedAt())
-                    .items(items)
-                    .build();
-        } catch (Exception e) {
-            throw new RuntimeException("Error mapping return to response: " + e.getMessage(), e);
-        }
+    private ReturnResponse mapReturnToResponse(Return returnEntity, List<ReturnItemResponse> items) {
+        return ReturnResponse.builder()
+                .id(returnEntity.getId())
+                .returnNumber(returnEntity.getReturnNumber())
+                .billId(returnEntity.getOriginalBill().getId())
+                .billNumber(returnEntity.getOriginalBill().getBillNumber())
+                .processedById(returnEntity.getProcessedBy().getId())
+                .processedByName(returnEntity.getProcessedBy().getFullName())
+                .returnDate(returnEntity.getReturnDate())
+                .refundAmount(returnEntity.getRefundAmount())
+                .reason(returnEntity.getReason())
+                .returnType(returnEntity.getReturnType())
+                .createdAt(returnEntity.getCreatedAt())
+                .items(items)
+                .build();
     }
     
     /**
      * Map ReturnItem entity to ReturnItemResponse DTO
      */
     private ReturnItemResponse mapReturnItemToResponse(ReturnItem returnItem) {
-        // Ensure lazy relationships are loaded (JOIN FETCH should handle this, but be safe)
-        if (returnItem.getMedicine() != null) {
-            returnItem.getMedicine().getName(); // Force load
-        }
-        if (returnItem.getBatch() != null) {
-            returnItem.getBatch().getId(); // Force load
-        }
-        
         return ReturnItemResponse.builder()
                 .id(returnItem.getId())
-                .medicineId(returnItem.getMedicine() != null ? returnItem.getMedicine().getId() : null)
-                .medicineName(returnItem.getMedicine() != null ? returnItem.getMedicine().getName() : null)
-                .batchId(returnItem.getBatch() != null ? returnItem.getBatch().getId() : null)
+                .medicineId(returnItem.getMedicine().getId())
+                .medicineName(returnItem.getMedicine().getName())
+                .batchId(returnItem.getBatch().getId())
                 .batchNumber(returnItem.getBatchNumber())
                 .quantity(returnItem.getQuantity())
                 .refundAmount(returnItem.getRefundAmount())
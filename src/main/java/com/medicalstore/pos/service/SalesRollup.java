@@ -0,0 +1,174 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.entity.Bill;
+import com.medicalstore.pos.entity.BillItem;
+import com.medicalstore.pos.entity.DailyGstRollup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains the daily sales and GST rollups that the sales and GST reports read, so a report costs
+ * one grouped query over days instead of a scan of bills, items and returns. Bills, cancellations and
+ * returns apply their deltas in their own transaction, so the rollups commit or roll back with them.
+ * Each day's rows are split into stripes by bill id so concurrent checkouts rarely queue on one row
+ * lock; every writer locks the daily row first and then GST rows in key order, so they can't deadlock.
+ */
+@Component
+public class SalesRollup {
+    
+    public static final int STRIPES = 16;
+    
+    /**
+     * Sold or returned units of one HSN code and GST rate
+     */
+    public record Line(String hsnCode, BigDecimal gstPercentage, int quantity,
+                       BigDecimal taxableAmount, BigDecimal gstAmount) {
+    }
+    
+    public record DailyTotals(LocalDate date, int bills, BigDecimal sales, BigDecimal gst,
+                              int returns, BigDecimal refunds, BigDecimal refundGst) {
+    }
+    
+    public record GstTotals(String hsnCode, String medicineName, BigDecimal gstPercentage,
+                            DailyGstRollup.EntryType entryType, int quantity, BigDecimal taxableAmount,
+                            BigDecimal gstAmount) {
+    }
+    
+    private static final String DAILY_SQL =
+            "INSERT INTO daily_sales_rollups AS r (sales_date, stripe, bills, sales, gst, returns, refunds, refund_gst) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (sales_date, stripe) DO UPDATE SET bills = r.bills + EXCLUDED.bills, " +
+            "sales = r.sales + EXCLUDED.sales, gst = r.gst + EXCLUDED.gst, returns = r.returns + EXCLUDED.returns, " +
+            "refunds = r.refunds + EXCLUDED.refunds, refund_gst = r.refund_gst + EXCLUDED.refund_gst";
+    
+    private static final String GST_UPSERT =
+            "ON CONFLICT (sales_date, hsn_code, gst_percentage, entry_type, stripe) DO UPDATE SET " +
+            "quantity = r.quantity + EXCLUDED.quantity, taxable_amount = r.taxable_amount + EXCLUDED.taxable_amount, " +
+            "gst_amount = r.gst_amount + EXCLUDED.gst_amount";
+    
+    // Lines are summed per key first: one statement can't update the same row twice
+    private static final String GST_SQL =
+            "INSERT INTO daily_gst_rollups AS r " +
+            "(sales_date, hsn_code, gst_percentage, entry_type, stripe, quantity, taxable_amount, gst_amount) " +
+            "SELECT ?, l.hsn_code, l.gst_percentage, ?, ?, SUM(l.quantity), SUM(l.taxable), SUM(l.gst) " +
+            "FROM unnest(?::varchar[], ?::numeric[], ?::int[], ?::numeric[], ?::numeric[]) " +
+            "  AS l(hsn_code, gst_percentage, quantity, taxable, gst) " +
+            "GROUP BY l.hsn_code, l.gst_percentage ORDER BY l.hsn_code, l.gst_percentage " +
+            GST_UPSERT;
+    
+    // A cancelled bill's lines are read back from the database, so its items and medicines needn't be loaded
+    private static final String CANCEL_GST_SQL =
+            "INSERT INTO daily_gst_rollups AS r " +
+            "(sales_date, hsn_code, gst_percentage, entry_type, stripe, quantity, taxable_amount, gst_amount) " +
+            "SELECT ?, m.hsn_code, bi.gst_percentage, 'SALE', ?, -SUM(bi.quantity), " +
+            "-SUM(bi.unit_price * bi.quantity), -SUM(bi.gst_amount) " +
+            "FROM bill_items bi JOIN medicines m ON m.id = bi.medicine_id WHERE bi.bill_id = ? " +
+            "GROUP BY m.hsn_code, bi.gst_percentage ORDER BY m.hsn_code, bi.gst_percentage " +
+            GST_UPSERT;
+    
+    private static final String DAILY_REPORT_SQL =
+            "SELECT sales_date, SUM(bills), SUM(sales), SUM(gst), SUM(returns), SUM(refunds), SUM(refund_gst) " +
+            "FROM daily_sales_rollups WHERE sales_date BETWEEN ? AND ? " +
+            "GROUP BY sales_date HAVING SUM(bills) <> 0 OR SUM(returns) <> 0 ORDER BY sales_date";
+    
+    // hsn_code is unique per medicine, so the join names the medicine
+    private static final String GST_REPORT_SQL =
+            "SELECT g.hsn_code, MIN(m.name), g.gst_percentage, g.entry_type, " +
+            "SUM(g.quantity), SUM(g.taxable_amount), SUM(g.gst_amount) " +
+            "FROM daily_gst_rollups g LEFT JOIN medicines m ON m.hsn_code = g.hsn_code " +
+            "WHERE g.sales_date BETWEEN ? AND ? " +
+            "GROUP BY g.hsn_code, g.gst_percentage, g.entry_type HAVING SUM(g.quantity) <> 0 " +
+            "ORDER BY g.hsn_code, g.gst_percentage, g.entry_type";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public SalesRollup(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Adds a saved bill to its day
+     */
+    public void billCreated(Bill bill) {
+        LocalDate date = bill.getBillDate().toLocalDate();
+        int stripe = stripe(bill.getId());
+        addDaily(date, stripe, 1, bill.getTotalAmount(), bill.getTotalGst(), 0, BigDecimal.ZERO, BigDecimal.ZERO);
+        List<Line> lines = new ArrayList<>();
+        for (BillItem item : bill.getBillItems()) {
+            lines.add(new Line(item.getMedicine().getHsnCode(), item.getGstPercentage(), item.getQuantity(),
+                    BillingCalculator.lineSubtotal(item.getUnitPrice(), item.getQuantity()), item.getGstAmount()));
+        }
+        addGst(date, stripe, DailyGstRollup.EntryType.SALE, lines);
+    }
+    
+    /**
+     * Takes a cancelled bill back out of the day it was sold on. Bills with returns can't be
+     * cancelled, so the whole sale comes off and no credit note is left without its sale.
+     */
+    public void billCancelled(Bill bill) {
+        LocalDate date = bill.getBillDate().toLocalDate();
+        int stripe = stripe(bill.getId());
+        addDaily(date, stripe, -1, bill.getTotalAmount().negate(), bill.getTotalGst().negate(),
+                0, BigDecimal.ZERO, BigDecimal.ZERO);
+        jdbcTemplate.update(CANCEL_GST_SQL, Date.valueOf(date), stripe, bill.getId());
+    }
+    
+    /**
+     * Adds a return to the day it was processed on, with its lines as credit notes
+     */
+    public void returnProcessed(Bill bill, LocalDate returnDate, BigDecimal refund, List<Line> lines) {
+        int stripe = stripe(bill.getId());
+        BigDecimal refundGst = lines.stream().map(Line::gstAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        addDaily(returnDate, stripe, 0, BigDecimal.ZERO, BigDecimal.ZERO, 1, refund, refundGst);
+        addGst(returnDate, stripe, DailyGstRollup.EntryType.CREDIT_NOTE, lines);
+    }
+    
+    public List<DailyTotals> dailyTotals(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(DAILY_REPORT_SQL, (rs, rowNum) -> new DailyTotals(
+                rs.getDate(1).toLocalDate(), rs.getInt(2), rs.getBigDecimal(3), rs.getBigDecimal(4),
+                rs.getInt(5), rs.getBigDecimal(6), rs.getBigDecimal(7)),
+                Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+    
+    public List<GstTotals> gstTotals(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query(GST_REPORT_SQL, (rs, rowNum) -> new GstTotals(
+                rs.getString(1), rs.getString(2), rs.getBigDecimal(3),
+                DailyGstRollup.EntryType.valueOf(rs.getString(4)), rs.getInt(5), rs.getBigDecimal(6),
+                rs.getBigDecimal(7)),
+                Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+    
+    private void addDaily(LocalDate date, int stripe, int bills, BigDecimal sales, BigDecimal gst,
+                          int returns, BigDecimal refunds, BigDecimal refundGst) {
+        jdbcTemplate.update(DAILY_SQL, Date.valueOf(date), stripe, bills, sales, gst, returns, refunds, refundGst);
+    }
+    
+    private void addGst(LocalDate date, int stripe, DailyGstRollup.EntryType type, List<Line> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(GST_SQL);
+            statement.setDate(1, Date.valueOf(date));
+            statement.setString(2, type.name());
+            statement.setInt(3, stripe);
+            statement.setArray(4, connection.createArrayOf("varchar", lines.stream().map(Line::hsnCode).toArray()));
+            statement.setArray(5, connection.createArrayOf("numeric", lines.stream().map(Line::gstPercentage).toArray()));
+            statement.setArray(6, connection.createArrayOf("integer", lines.stream().map(Line::quantity).toArray()));
+            statement.setArray(7, connection.createArrayOf("numeric", lines.stream().map(Line::taxableAmount).toArray()));
+            statement.setArray(8, connection.createArrayOf("numeric", lines.stream().map(Line::gstAmount).toArray()));
+            return statement;
+        });
+    }
+    
+    private static int stripe(long billId) {
+        return (int) Math.floorMod(billId, (long) STRIPES);
+    }
+}
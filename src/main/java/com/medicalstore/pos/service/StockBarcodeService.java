@@ -1,18 +1,33 @@
 package com.medicalstore.pos.service;
 
+import com.medicalstore.pos.dto.request.AddBarcodeRangeRequest;
 import com.medicalstore.pos.dto.request.AddBarcodesRequest;
 import com.medicalstore.pos.dto.response.MedicineResponse;
+import com.medicalstore.pos.dto.response.StockBarcodeRangeResponse;
 import com.medicalstore.pos.dto.response.StockBarcodeResponse;
 import com.medicalstore.pos.entity.AuditLog;
 import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.BillItem;
 import com.medicalstore.pos.entity.StockBarcode;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+import com.medicalstore.pos.entity.StockMovement;
 import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.repository.StockBarcodeRangeRepository;
 import com.medicalstore.pos.repository.StockBarcodeRepository;
+import com.medicalstore.pos.repository.StockBarcodeRepositoryCustom;
+import io.micrometer.core.annotation.Timed;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,60 +37,89 @@ public class StockBarcodeService {
     private final BatchService batchService;
     private final MedicineService medicineService;
     private final AuditService auditService;
+    private final UnitBarcodeIndex unitBarcodeIndex;
+    private final FifoBatchIndex fifoBatchIndex;
+    private final StockLedger stockLedger;
+    private final StockBarcodeRangeRepository stockBarcodeRangeRepository;
+    private static final int PREFIX_SEARCH_LIMIT = 20;
     
     public StockBarcodeService(StockBarcodeRepository stockBarcodeRepository,
+                              StockBarcodeRangeRepository stockBarcodeRangeRepository,
                               BatchService batchService,
                               MedicineService medicineService,
-                              AuditService auditService) {
+                              AuditService auditService,
+                              UnitBarcodeIndex unitBarcodeIndex,
+                              FifoBatchIndex fifoBatchIndex,
+                              StockLedger stockLedger) {
         this.stockBarcodeRepository = stockBarcodeRepository;
+        this.stockBarcodeRangeRepository = stockBarcodeRangeRepository;
         this.batchService = batchService;
         this.medicineService = medicineService;
         this.auditService = auditService;
+        this.unitBarcodeIndex = unitBarcodeIndex;
+        this.fifoBatchIndex = fifoBatchIndex;
+        this.stockLedger = stockLedger;
     }
     
     /**
      * Find medicine by barcode for real-time scanning
      * Returns the medicine associated with the barcode's batch
      */
+    @Timed(value = "pos.barcode.lookup", extraTags = {"type", "unit"}, histogram = true)
     @Transactional(readOnly = true)
     public MedicineResponse findMedicineByBarcode(String barcode) {
-        StockBarcode stockBarcode = stockBarcodeRepository.findAvailableByBarcode(barcode)
-                .orElseThrow(() -> new RuntimeException("Barcode not found or already sold: " + barcode));
-        
-        Batch batch = stockBarcode.getBatch();
-        
-        // Check if batch is expired
-        if (batch.isExpired()) {
-            throw new RuntimeException("Medicine with barcode " + barcode + " has expired");
-        }
-        
-        // Check if batch has available stock
-        if (batch.getQuantityAvailable() <= 0) {
-            throw new RuntimeException("Medicine with barcode " + barcode + " is out of stock");
-        }
-        
-        return medicineService.getMedicineById(batch.getMedicine().getId());
+        UnitBarcodeIndex.UnitLocation unit = findAvailableUnit(barcode);
+        return medicineService.getMedicineById(unit.medicineId());
     }
     
     /**
      * Get batch for a barcode (used during billing)
      */
+    @Timed(value = "pos.barcode.lookup", extraTags = {"type", "batch"}, histogram = true)
     @Transactional(readOnly = true)
     public Batch getBatchByBarcode(String barcode) {
-        StockBarcode stockBarcode = stockBarcodeRepository.findAvailableByBarcode(barcode)
-                .orElseThrow(() -> new RuntimeException("Barcode not found or already sold: " + barcode));
-        
-        Batch batch = stockBarcode.getBatch();
+        UnitBarcodeIndex.UnitLocation unit = findAvailableUnit(barcode);
+        return batchService.getBatchEntity(unit.batchId());
+    }
+    
+    /**
+     * Resolve a scanned unit from the in-memory index without locking.
+     * Misses and units the index has as sold are re-checked against the database,
+     * since another node may have added or returned them.
+     */
+    private UnitBarcodeIndex.UnitLocation findAvailableUnit(String barcode) {
+        UnitBarcodeIndex.UnitLocation unit = unitBarcodeIndex.find(barcode);
+        if (unit == null || unit.sold()) {
+            Batch batch = stockBarcodeRepository.findWithBatchByBarcode(barcode)
+                    .filter(found -> !found.getSold())
+                    .map(StockBarcode::getBatch)
+                    .or(() -> findAvailableRangeBatch(barcode))
+                    .orElseThrow(() -> new RuntimeException("Barcode not found or already sold: " + barcode));
+            unit = new UnitBarcodeIndex.UnitLocation(batch.getId(), batch.getMedicine().getId(),
+                    batch.getExpiryDate(), batch.getQuantityAvailable(), false);
+        }
         
-        if (batch.isExpired()) {
+        // Check if batch is expired
+        if (unit.isExpired()) {
             throw new RuntimeException("Medicine with barcode " + barcode + " has expired");
         }
         
-        if (batch.getQuantityAvailable() <= 0) {
+        // Check if batch has available stock
+        if (unit.quantityAvailable() <= 0) {
             throw new RuntimeException("Medicine with barcode " + barcode + " is out of stock");
         }
         
-        return batch;
+        return unit;
+    }
+    
+    private Optional<Batch> findAvailableRangeBatch(String barcode) {
+        StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+        if (serial == null) {
+            return Optional.empty();
+        }
+        return stockBarcodeRangeRepository.findContaining(serial.prefix(), serial.width(), serial.value())
+                .filter(range -> !range.isSold(serial.value()) && !range.isRemoved(serial.value()))
+                .map(StockBarcodeRange::getBatch);
     }
     
     /**
@@ -83,11 +127,16 @@ public class StockBarcodeService {
      */
     @Transactional
     public void markBarcodeAsSold(String barcode) {
-        StockBarcode stockBarcode = stockBarcodeRepository.findAvailableByBarcode(barcode)
-                .orElseThrow(() -> new RuntimeException("Barcode not found or already sold: " + barcode));
+        Optional<StockBarcode> available = stockBarcodeRepository.findAvailableByBarcode(barcode);
+        if (available.isEmpty()) {
+            markRangeUnit(barcode, true);
+            return;
+        }
         
+        StockBarcode stockBarcode = available.get();
         stockBarcode.setSold(true);
         stockBarcodeRepository.save(stockBarcode);
+        unitBarcodeIndex.unitSold(barcode, true);
     }
     
     /**
@@ -95,15 +144,140 @@ public class StockBarcodeService {
      */
     @Transactional
     public void markBarcodeAsAvailable(String barcode) {
-        StockBarcode stockBarcode = stockBarcodeRepository.findByBarcode(barcode)
-                .orElseThrow(() -> new RuntimeException("Barcode not found: " + barcode));
+        Optional<StockBarcode> row = stockBarcodeRepository.findByBarcode(barcode);
+        if (row.isEmpty()) {
+            markRangeUnit(barcode, false);
+            return;
+        }
         
+        StockBarcode stockBarcode = row.get();
         if (!stockBarcode.getSold()) {
             throw new RuntimeException("Barcode " + barcode + " is already available");
         }
         
         stockBarcode.setSold(false);
         stockBarcodeRepository.save(stockBarcode);
+        unitBarcodeIndex.unitSold(barcode, false);
+    }
+    
+    /**
+     * Resolve scanned units for billing, grouped by the batch each unit belongs to (in scan order).
+     * Every unit must be available, unexpired and from a batch with stock.
+     */
+    public Map<Long, List<String>> groupAvailableUnitsByBatch(List<String> barcodes) {
+        Map<Long, List<String>> byBatch = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (String scanned : barcodes) {
+            if (scanned == null || scanned.trim().isEmpty()) {
+                throw new RuntimeException("Barcode cannot be empty");
+            }
+            String barcode = scanned.trim();
+            if (!seen.add(barcode)) {
+                throw new RuntimeException("Barcode " + barcode + " was scanned more than once");
+            }
+            byBatch.computeIfAbsent(findAvailableUnit(barcode).batchId(), batchId -> new ArrayList<>()).add(barcode);
+        }
+        return byBatch;
+    }
+    
+    /**
+     * Mark scanned units sold against their (saved) bill items. Their batch stock must already have been
+     * taken by the caller, which locks all of a bill's batches in one id-ordered statement.
+     * Individual barcodes are flipped in one statement; units stored in serial ranges are flipped per range.
+     * Must run inside the caller's transaction.
+     */
+    public void markUnitsSold(Map<BillItem, List<String>> unitsByItem) {
+        List<String> barcodes = new ArrayList<>();
+        List<Long> billItemIds = new ArrayList<>();
+        unitsByItem.forEach((item, units) -> units.forEach(barcode -> {
+            barcodes.add(barcode);
+            billItemIds.add(item.getId());
+        }));
+        
+        List<String> sold = stockBarcodeRepository.sellUnits(barcodes, billItemIds);
+        unitBarcodeIndex.unitsSold(sold, true);
+        
+        // Anything the statement didn't match must be a range unit, otherwise it's unknown or already sold
+        Set<String> changed = new HashSet<>(sold);
+        for (String barcode : barcodes) {
+            if (!changed.contains(barcode)) {
+                markRangeUnit(barcode, true);
+            }
+        }
+    }
+    
+    /**
+     * Unit barcodes still sold on each of the given bill items, found through their bill item link.
+     * Units sold out of a serial range carry no link and are not included.
+     */
+    public Map<BillItem, List<String>> findSoldUnits(List<BillItem> billItems) {
+        if (billItems.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, BillItem> itemsById = billItems.stream()
+                .collect(Collectors.toMap(BillItem::getId, item -> item));
+        Map<BillItem, List<String>> unitsByItem = new LinkedHashMap<>();
+        for (Object[] row : stockBarcodeRepository.findSoldBarcodesByBillItemIds(itemsById.keySet())) {
+            unitsByItem.computeIfAbsent(itemsById.get((Long) row[1]), item -> new ArrayList<>()).add((String) row[0]);
+        }
+        return unitsByItem;
+    }
+    
+    /**
+     * Make returned or cancelled units available again. Individual barcodes must have been sold on the
+     * given bill item; range units on its batch. Their batch stock must already have been restored by
+     * the caller (see markUnitsSold). Must run inside the caller's transaction.
+     */
+    public void markUnitsReturned(Map<BillItem, List<String>> unitsByItem) {
+        List<String> barcodes = new ArrayList<>();
+        List<Long> billItemIds = new ArrayList<>();
+        unitsByItem.forEach((item, units) -> units.forEach(barcode -> {
+            barcodes.add(barcode.trim());
+            billItemIds.add(item.getId());
+        }));
+        
+        List<String> returned = stockBarcodeRepository.returnUnits(barcodes, billItemIds);
+        unitBarcodeIndex.unitsSold(returned, false);
+        
+        Set<String> changed = new HashSet<>(returned);
+        unitsByItem.forEach((item, units) -> units.stream()
+                .map(String::trim)
+                .filter(barcode -> !changed.contains(barcode))
+                .forEach(barcode -> {
+                    StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+                    boolean onItemBatch = serial != null && stockBarcodeRangeRepository
+                            .findContaining(serial.prefix(), serial.width(), serial.value())
+                            .filter(range -> range.getBatch().getId().equals(item.getBatch().getId()))
+                            .isPresent();
+                    if (!onItemBatch) {
+                        throw new RuntimeException("Barcode " + barcode + " was not sold on bill item " + item.getId());
+                    }
+                    markRangeUnit(barcode, false);
+                }));
+    }
+    
+    /**
+     * Flip the sold bit of a unit stored in a serial range, holding the range row lock
+     */
+    private StockBarcodeRange markRangeUnit(String barcode, boolean sold) {
+        StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+        StockBarcodeRange range = (serial == null ? Optional.<StockBarcodeRange>empty()
+                : stockBarcodeRangeRepository.findContainingForUpdate(serial.prefix(), serial.width(), serial.value()))
+                .filter(found -> !found.isRemoved(serial.value()))
+                .orElseThrow(() -> new RuntimeException(sold
+                        ? "Barcode not found or already sold: " + barcode
+                        : "Barcode not found: " + barcode));
+        
+        if (range.isSold(serial.value()) == sold) {
+            throw new RuntimeException(sold
+                    ? "Barcode not found or already sold: " + barcode
+                    : "Barcode " + barcode + " is already available");
+        }
+        
+        range.setSold(serial.value(), sold);
+        stockBarcodeRangeRepository.save(range);
+        unitBarcodeIndex.rangeSaved(range);
+        return range;
     }
     
     /**
@@ -124,38 +298,32 @@ public class StockBarcodeService {
     
     /**
      * Search medicines by barcode prefix (for incremental search as user types)
-     * Returns unique medicines that have available barcodes matching the prefix
+     * Returns unique medicines that have available barcodes (individual or in serial ranges) matching
+     * the prefix, de-duplicated and limited in SQL so short prefixes don't load every matching unit
      */
+    @Timed(value = "pos.barcode.lookup", extraTags = {"type", "unit_prefix"}, histogram = true)
     @Transactional(readOnly = true)
     public List<MedicineResponse> searchMedicinesByBarcodePrefix(String prefix) {
         if (prefix == null || prefix.trim().isEmpty()) {
             return List.of();
         }
         
-        try {
-            List<StockBarcode> matchingBarcodes = stockBarcodeRepository.findAvailableByBarcodePrefix(prefix.trim());
-            
-            if (matchingBarcodes.isEmpty()) {
-                return List.of();
-            }
-            
-            // Get unique medicines from the matching barcodes using a Set to ensure uniqueness
-            return matchingBarcodes.stream()
-                    .map(StockBarcode::getBatch)
-                    .map(Batch::getMedicine)
-                    .distinct()
-                    .map(medicine -> medicineService.getMedicineById(medicine.getId()))
-                    .toList();
-        } catch (Exception e) {
-            // Log error and return empty list
-            System.err.println("Error searching barcodes by prefix: " + e.getMessage());
-            e.printStackTrace();
+        String upperPrefix = prefix.trim().toUpperCase(Locale.ROOT);
+        List<Long> medicineIds = stockBarcodeRepository.findAvailableMedicineIdsByBarcodePrefix(
+                upperPrefix, escapeLike(upperPrefix) + "%", PREFIX_SEARCH_LIMIT);
+        if (medicineIds.isEmpty()) {
             return List.of();
         }
+        return medicineService.getMedicinesByIds(medicineIds);
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
     
     /**
-     * Get all barcodes for a batch (including sold ones)
+     * Get all individual barcodes for a batch (including sold ones).
+     * Units stored as serial ranges are listed by getBarcodeRangesByBatchId.
      */
     @Transactional(readOnly = true)
     public List<StockBarcodeResponse> getBarcodesByBatchId(Long batchId) {
@@ -173,30 +341,13 @@ public class StockBarcodeService {
     public List<StockBarcodeResponse> addBarcodesToBatch(Long batchId, AddBarcodesRequest request, User user, HttpServletRequest httpRequest) {
         Batch batch = batchService.getBatchEntity(batchId);
         
-        List<StockBarcode> newBarcodes = new java.util.ArrayList<>();
-        for (String barcode : request.getBarcodes()) {
-            if (barcode == null || barcode.trim().isEmpty()) {
-                throw new RuntimeException("Barcode cannot be empty");
-            }
-            
-            // Check for duplicate barcodes
-            if (stockBarcodeRepository.findByBarcode(barcode.trim()).isPresent()) {
-                throw new RuntimeException("Barcode " + barcode.trim() + " already exists");
-            }
-            
-            StockBarcode stockBarcode = StockBarcode.builder()
-                    .batch(batch)
-                    .barcode(barcode.trim())
-                    .sold(false)
-                    .build();
-            newBarcodes.add(stockBarcode);
-        }
-        
-        stockBarcodeRepository.saveAll(newBarcodes);
+        // Duplicate check and insert in one statement
+        List<StockBarcode> newBarcodes = batchService.insertUnitBarcodes(batch, request.getBarcodes());
         
         // Update batch quantity
         batch.setQuantityAvailable(batch.getQuantityAvailable() + newBarcodes.size());
         batchService.saveBatch(batch);
+        stockLedger.record(batchId, StockMovement.MovementType.RECEIPT, newBarcodes.size(), batch.getBatchNumber());
         
         // Audit log
         auditService.log(AuditLog.ActionType.STOCK_UPDATED, user, "Batch",
@@ -216,33 +367,171 @@ public class StockBarcodeService {
     @Transactional
     public void deleteBarcodesFromBatch(Long batchId, List<Long> barcodeIds, User user, HttpServletRequest httpRequest) {
         Batch batch = batchService.getBatchEntity(batchId);
+        int oldQuantity = batch.getQuantityAvailable();
+        
+        // Delete and decrement in one statement; ids that are sold or in another batch are skipped
+        StockBarcodeRepositoryCustom.RemovedUnits removed =
+                stockBarcodeRepository.deleteUnsoldUnits(batchId, barcodeIds);
+        if (removed.barcodes().isEmpty()) {
+            throw new RuntimeException("No available barcodes found to delete. Only available (not sold) barcodes can be deleted.");
+        }
+        applyRemovedUnits(batchId, removed);
+        stockLedger.record(batchId, StockMovement.MovementType.ADJUSTMENT, removed.quantityChange(), batch.getBatchNumber());
+        
+        // Audit log
+        auditService.log(AuditLog.ActionType.STOCK_UPDATED, user, "Batch",
+                batch.getId().toString(), "Deleted " + removed.barcodes().size() + " barcodes from batch: " + batch.getBatchNumber(),
+                String.valueOf(oldQuantity),
+                String.valueOf(batch.getQuantityAvailable()), httpRequest);
+    }
+    
+    /**
+     * Delete every unsold unit of a batch (individual barcodes and range units), e.g. for a recall.
+     * Sold units are kept so they can still be returned. Returns the number of units deleted.
+     */
+    @Transactional
+    public int deleteUnsoldBarcodesFromBatch(Long batchId, User user, HttpServletRequest httpRequest) {
+        Batch batch = batchService.getBatchEntity(batchId);
+        int oldQuantity = batch.getQuantityAvailable();
         
-        List<StockBarcode> barcodesToDelete = stockBarcodeRepository.findAllById(barcodeIds);
+        StockBarcodeRepositoryCustom.RemovedUnits removed = stockBarcodeRepository.deleteAllUnsoldUnits(batchId);
+        applyRemovedUnits(batchId, removed);
         
-        // Filter to only delete available (not sold) barcodes
-        List<StockBarcode> availableBarcodes = barcodesToDelete.stream()
-                .filter(b -> !b.getSold() && b.getBatch().getId().equals(batchId))
+        int rangeUnits = 0;
+        for (StockBarcodeRange range : stockBarcodeRangeRepository.findByBatch(batch)) {
+            rangeUnits += removeAvailableRangeUnits(range);
+        }
+        if (removed.barcodes().isEmpty() && rangeUnits == 0) {
+            throw new RuntimeException("No available barcodes found to delete in batch: " + batch.getBatchNumber());
+        }
+        int quantityChange = removed.quantityChange();
+        if (rangeUnits > 0) {
+            int beforeRanges = batch.getQuantityAvailable();
+            batch.setQuantityAvailable(Math.max(beforeRanges - rangeUnits, 0));
+            batchService.saveBatch(batch);
+            quantityChange += batch.getQuantityAvailable() - beforeRanges;
+        }
+        
+        int total = removed.barcodes().size() + rangeUnits;
+        stockLedger.record(batchId, StockMovement.MovementType.ADJUSTMENT, quantityChange, batch.getBatchNumber());
+        auditService.log(AuditLog.ActionType.STOCK_UPDATED, user, "Batch",
+                batch.getId().toString(), "Deleted all " + total + " unsold barcodes from batch: " + batch.getBatchNumber(),
+                String.valueOf(oldQuantity),
+                String.valueOf(batch.getQuantityAvailable()), httpRequest);
+        return total;
+    }
+    
+    private void applyRemovedUnits(Long batchId, StockBarcodeRepositoryCustom.RemovedUnits removed) {
+        if (removed.barcodes().isEmpty()) {
+            return;
+        }
+        unitBarcodeIndex.unitsRemoved(removed.barcodes());
+        unitBarcodeIndex.batchQuantityChanged(batchId, removed.quantityAvailable());
+        fifoBatchIndex.batchQuantityChanged(batchId, removed.quantityAvailable());
+    }
+    
+    /**
+     * Get serial barcode ranges for a batch
+     */
+    @Transactional(readOnly = true)
+    public List<StockBarcodeRangeResponse> getBarcodeRangesByBatchId(Long batchId) {
+        Batch batch = batchService.getBatchEntity(batchId);
+        return stockBarcodeRangeRepository.findByBatch(batch).stream()
+                .map(this::mapRangeToResponse)
                 .collect(Collectors.toList());
+    }
+    
+    /**
+     * Add a sequential barcode range (first..last) to a batch and update stock count
+     */
+    @Transactional
+    public StockBarcodeRangeResponse addBarcodeRangeToBatch(Long batchId, AddBarcodeRangeRequest request,
+                                                            User user, HttpServletRequest httpRequest) {
+        Batch batch = batchService.getBatchEntity(batchId);
         
-        if (availableBarcodes.isEmpty()) {
+        StockBarcodeRange range = batchService.insertUnitBarcodeRange(batch,
+                request.getFirstBarcode(), request.getLastBarcode());
+        
+        // Update batch quantity
+        int oldQuantity = batch.getQuantityAvailable();
+        batch.setQuantityAvailable(oldQuantity + range.size());
+        batchService.saveBatch(batch);
+        stockLedger.record(batchId, StockMovement.MovementType.RECEIPT, range.size(), batch.getBatchNumber());
+        
+        // Audit log
+        auditService.log(AuditLog.ActionType.STOCK_UPDATED, user, "Batch",
+                batch.getId().toString(), "Added barcode range " + range.barcodeAt(range.getStartSerial()) + " .. " +
+                        range.barcodeAt(range.getEndSerial()) + " (" + range.size() + " units) to batch: " + batch.getBatchNumber(),
+                String.valueOf(oldQuantity),
+                String.valueOf(batch.getQuantityAvailable()), httpRequest);
+        
+        return mapRangeToResponse(range);
+    }
+    
+    /**
+     * Delete the available (not sold) units of a barcode range and decrease stock count.
+     * Sold units stay in the range so they can still be returned.
+     */
+    @Transactional
+    public void deleteBarcodeRangeFromBatch(Long batchId, Long rangeId, User user, HttpServletRequest httpRequest) {
+        Batch batch = batchService.getBatchEntity(batchId);
+        
+        StockBarcodeRange range = stockBarcodeRangeRepository.findById(rangeId)
+                .filter(found -> found.getBatch().getId().equals(batchId))
+                .orElseThrow(() -> new RuntimeException("Barcode range " + rangeId + " not found in batch " + batchId));
+        
+        int removed = removeAvailableRangeUnits(range);
+        if (removed == 0) {
             throw new RuntimeException("No available barcodes found to delete. Only available (not sold) barcodes can be deleted.");
         }
         
-        // Delete barcodes
-        stockBarcodeRepository.deleteAll(availableBarcodes);
-        
         // Update batch quantity
         int oldQuantity = batch.getQuantityAvailable();
-        batch.setQuantityAvailable(batch.getQuantityAvailable() - availableBarcodes.size());
+        batch.setQuantityAvailable(Math.max(oldQuantity - removed, 0));
         batchService.saveBatch(batch);
+        stockLedger.record(batchId, StockMovement.MovementType.ADJUSTMENT,
+                batch.getQuantityAvailable() - oldQuantity, batch.getBatchNumber());
         
         // Audit log
         auditService.log(AuditLog.ActionType.STOCK_UPDATED, user, "Batch",
-                batch.getId().toString(), "Deleted " + availableBarcodes.size() + " barcodes from batch: " + batch.getBatchNumber(),
+                batch.getId().toString(), "Deleted " + removed + " barcodes of range " + rangeId + " from batch: " + batch.getBatchNumber(),
                 String.valueOf(oldQuantity),
                 String.valueOf(batch.getQuantityAvailable()), httpRequest);
     }
     
+    /**
+     * Removes a range's available units; the range row is dropped once none of its units were sold
+     */
+    private int removeAvailableRangeUnits(StockBarcodeRange range) {
+        int removed = range.removeAvailable();
+        if (removed == 0) {
+            return 0;
+        }
+        if (range.getSoldCount() == 0) {
+            stockBarcodeRangeRepository.delete(range);
+            unitBarcodeIndex.rangeDeleted(range);
+        } else {
+            stockBarcodeRangeRepository.save(range);
+            unitBarcodeIndex.rangeSaved(range);
+        }
+        return removed;
+    }
+    
+    private StockBarcodeRangeResponse mapRangeToResponse(StockBarcodeRange range) {
+        return StockBarcodeRangeResponse.builder()
+                .id(range.getId())
+                .batchId(range.getBatch().getId())
+                .firstBarcode(range.barcodeAt(range.getStartSerial()))
+                .lastBarcode(range.barcodeAt(range.getEndSerial()))
+                .units(range.size())
+                .soldCount(range.getSoldCount())
+                .removedCount(range.getRemovedCount())
+                .availableCount(range.getAvailableCount())
+                .createdAt(range.getCreatedAt())
+                .updatedAt(range.getUpdatedAt())
+                .build();
+    }
+    
     /**
      * Map StockBarcode entity to StockBarcodeResponse DTO
      */
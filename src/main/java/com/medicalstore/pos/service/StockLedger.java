@@ -0,0 +1,128 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.entity.StockMovement;
+import com.medicalstore.pos.repository.MedicineRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the stock movement ledger. Every path that changes Batch.quantityAvailable records the
+ * signed change here; movements are buffered per transaction and inserted with one set-based
+ * statement just before it commits, so they commit or roll back together with the stock change.
+ * The same hook refreshes the stock summary columns of the medicines whose batches changed, which
+ * is only safe at READ COMMITTED (see MedicineRepositoryImpl).
+ */
+@Component
+public class StockLedger {
+    
+    // Medicine and unit cost are taken from the batch row, so set-based callers only need batch ids
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_movements (batch_id, medicine_id, type, quantity, unit_cost, reference, created_at) " +
+            "SELECT m.batch_id, b.medicine_id, m.type, m.quantity, b.purchase_price, m.reference, ? " +
+            "FROM unnest(?::bigint[], ?::varchar[], ?::int[], ?::varchar[]) WITH ORDINALITY " +
+            "  AS m(batch_id, type, quantity, reference, ord) " +
+            "JOIN batches b ON b.id = m.batch_id ORDER BY m.ord";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final MedicineRepository medicineRepository;
+    
+    public StockLedger(JdbcTemplate jdbcTemplate, EntityManager entityManager, MedicineRepository medicineRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.medicineRepository = medicineRepository;
+    }
+    
+    /**
+     * Queues a movement of the batch for the current transaction; a zero quantity is ignored
+     */
+    public void record(long batchId, StockMovement.MovementType type, int quantity, String reference) {
+        if (quantity == 0) {
+            return;
+        }
+        Movements movements = movements();
+        movements.changedBatchIds.add(batchId);
+        movements.batchIds.add(batchId);
+        movements.types.add(type.name());
+        movements.quantities.add(quantity);
+        movements.references.add(reference);
+    }
+    
+    /**
+     * Marks a batch whose expiry changed without a quantity change, so its medicine's summary is refreshed
+     */
+    public void batchChanged(long batchId) {
+        movements().changedBatchIds.add(batchId);
+    }
+    
+    private Movements movements() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new RuntimeException("Stock movements must be recorded inside the transaction that changes stock");
+        }
+        // The summary refresh locks medicine rows that concurrent checkouts also write; above READ
+        // COMMITTED that lock fails with a serialization error instead of waiting
+        Integer isolation = TransactionSynchronizationManager.getCurrentTransactionIsolationLevel();
+        if (isolation != null && isolation > Connection.TRANSACTION_READ_COMMITTED) {
+            throw new RuntimeException("Stock changes must run at READ COMMITTED isolation");
+        }
+        Movements movements = (Movements) TransactionSynchronizationManager.getResource(this);
+        if (movements == null) {
+            movements = new Movements();
+            TransactionSynchronizationManager.bindResource(this, movements);
+            TransactionSynchronizationManager.registerSynchronization(movements);
+        }
+        return movements;
+    }
+    
+    private void write(Movements movements) {
+        // Batches created in this transaction and price edits must be visible to the join
+        entityManager.flush();
+        if (!movements.batchIds.isEmpty()) {
+            insert(movements);
+        }
+        medicineRepository.refreshStockSummariesForBatches(movements.changedBatchIds);
+    }
+    
+    private void insert(Movements movements) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
+            statement.setTimestamp(1, now);
+            statement.setArray(2, connection.createArrayOf("bigint", movements.batchIds.toArray()));
+            statement.setArray(3, connection.createArrayOf("varchar", movements.types.toArray()));
+            statement.setArray(4, connection.createArrayOf("integer", movements.quantities.toArray()));
+            statement.setArray(5, connection.createArrayOf("varchar", movements.references.toArray()));
+            return statement;
+        });
+    }
+    
+    private class Movements implements TransactionSynchronization {
+        private final List<Long> batchIds = new ArrayList<>();
+        private final List<String> types = new ArrayList<>();
+        private final List<Integer> quantities = new ArrayList<>();
+        private final List<String> references = new ArrayList<>();
+        private final Set<Long> changedBatchIds = new LinkedHashSet<>();
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write(this);
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(StockLedger.this);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.dto.response.StockLedgerCheckResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that every batch's quantityAvailable equals the sum of its stock movements.
+ * The batch id space is split into ranges checked in parallel, each by one statement on its
+ * own connection; a statement reads one snapshot, and a stock change commits together with its
+ * movements, so concurrent sales never show up as false mismatches. Runs nightly and on demand.
+ */
+@Slf4j
+@Service
+public class StockLedgerVerifier {
+    
+    private static final int PARTITIONS_PER_THREAD = 4;
+    private static final int LOGGED_MISMATCHES = 20;
+    
+    private static final String BOUNDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id, COUNT(*) AS batches FROM batches";
+    
+    private static final String CHECK_SQL =
+            "SELECT b.id, b.batch_number, b.quantity_available, COALESCE(l.quantity, 0) " +
+            "FROM batches b LEFT JOIN (" +
+            "  SELECT batch_id, SUM(quantity) AS quantity FROM stock_movements " +
+            "  WHERE batch_id BETWEEN ? AND ? GROUP BY batch_id" +
+            ") l ON l.batch_id = b.id " +
+            "WHERE b.id BETWEEN ? AND ? AND b.quantity_available <> COALESCE(l.quantity, 0) ORDER BY b.id";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int threads;
+    private final ExecutorService executor;
+    
+    public StockLedgerVerifier(JdbcTemplate jdbcTemplate,
+                               @Value("${pos.stock-ledger.verify-threads}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.threads = Math.max(1, threads);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "stock-ledger-verify-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    public StockLedgerCheckResponse verify() {
+        long start = System.nanoTime();
+        LocalDateTime checkedAt = LocalDateTime.now();
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(BOUNDS_SQL);
+        long batches = ((Number) bounds.get("batches")).longValue();
+        if (batches == 0) {
+            return StockLedgerCheckResponse.builder()
+                    .checkedAt(checkedAt)
+                    .batchesChecked(0L)
+                    .partitions(0)
+                    .durationMs(0L)
+                    .mismatches(List.of())
+                    .build();
+        }
+        
+        long minId = ((Number) bounds.get("min_id")).longValue();
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+        long span = (maxId - minId) / ((long) threads * PARTITIONS_PER_THREAD) + 1;
+        List<CompletableFuture<List<StockLedgerCheckResponse.Mismatch>>> parts = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += span) {
+            long to = Math.min(maxId, from + span - 1);
+            long rangeStart = from;
+            parts.add(CompletableFuture.supplyAsync(() -> check(rangeStart, to), executor));
+        }
+        
+        List<StockLedgerCheckResponse.Mismatch> mismatches = new ArrayList<>();
+        parts.forEach(part -> mismatches.addAll(part.join()));
+        return StockLedgerCheckResponse.builder()
+                .checkedAt(checkedAt)
+                .batchesChecked(batches)
+                .partitions(parts.size())
+                .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .mismatches(mismatches)
+                .build();
+    }
+    
+    @Scheduled(cron = "${pos.stock-ledger.verify-cron}")
+    public void verifyNightly() {
+        StockLedgerCheckResponse result = verify();
+        if (result.getMismatches().isEmpty()) {
+            log.info("Stock ledger verified: {} batches match their movements ({} partitions, {} ms)",
+                    result.getBatchesChecked(), result.getPartitions(), result.getDurationMs());
+            return;
+        }
+        log.warn("Stock ledger verification found {} of {} batches differing from their movements; first: {}",
+                result.getMismatches().size(), result.getBatchesChecked(),
+                result.getMismatches().subList(0, Math.min(LOGGED_MISMATCHES, result.getMismatches().size())));
+    }
+    
+    private List<StockLedgerCheckResponse.Mismatch> check(long fromId, long toId) {
+        return jdbcTemplate.query(CHECK_SQL, (rs, rowNum) -> StockLedgerCheckResponse.Mismatch.builder()
+                .batchId(rs.getLong(1))
+                .batchNumber(rs.getString(2))
+                .quantityAvailable(rs.getInt(3))
+                .ledgerQuantity(rs.getInt(4))
+                .difference(rs.getInt(3) - rs.getInt(4))
+                .build(), fromId, toId, fromId, toId);
+    }
+}
@@ -0,0 +1,213 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.dto.response.StockTakeResponse;
+import com.medicalstore.pos.entity.AuditLog;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+import com.medicalstore.pos.entity.StockMovement;
+import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.repository.BatchRepository;
+import com.medicalstore.pos.repository.BatchRepositoryCustom;
+import com.medicalstore.pos.repository.StockBarcodeRangeRepository;
+import com.medicalstore.pos.repository.StockBarcodeRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Stock-take (cycle count) sessions. A whole count is uploaded as one CSV stream, compared
+ * against the stored quantities in set-based passes of CHUNK_SIZE batches (in id order),
+ * applied in the same statements, and recorded as one audit entry for the session plus one
+ * ADJUSTMENT movement per changed batch, referenced by the session id.
+ */
+@Service
+public class StockTakeService {
+    
+    private static final int CHUNK_SIZE = 1000;
+    
+    private final BatchRepository batchRepository;
+    private final StockBarcodeRepository stockBarcodeRepository;
+    private final StockBarcodeRangeRepository stockBarcodeRangeRepository;
+    private final UnitBarcodeIndex unitBarcodeIndex;
+    private final FifoBatchIndex fifoBatchIndex;
+    private final StockLedger stockLedger;
+    private final AuditService auditService;
+    
+    public StockTakeService(BatchRepository batchRepository, StockBarcodeRepository stockBarcodeRepository,
+                            StockBarcodeRangeRepository stockBarcodeRangeRepository, UnitBarcodeIndex unitBarcodeIndex, FifoBatchIndex fifoBatchIndex,
+                            StockLedger stockLedger, AuditService auditService) {
+        this.batchRepository = batchRepository;
+        this.stockBarcodeRepository = stockBarcodeRepository;
+        this.stockBarcodeRangeRepository = stockBarcodeRangeRepository;
+        this.unitBarcodeIndex = unitBarcodeIndex;
+        this.fifoBatchIndex = fifoBatchIndex;
+        this.stockLedger = stockLedger;
+        this.auditService = auditService;
+    }
+    
+    /**
+     * Reconciles an uploaded count. Each line is either "batchId,countedQuantity" or a single
+     * scanned unit barcode, which counts one unit for its batch; counts for the same batch add up.
+     * Blank lines, # comments and a header line are skipped. With dryRun nothing is changed.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public StockTakeResponse reconcile(BufferedReader csv, boolean dryRun, User user, HttpServletRequest httpRequest) {
+        Map<Long, Integer> counts = new TreeMap<>();
+        Set<String> scanned = new LinkedHashSet<>();
+        int linesRead = parse(csv, counts, scanned);
+        List<String> unknownBarcodes = countScannedUnits(scanned, counts);
+        if (counts.isEmpty()) {
+            throw new RuntimeException("Stock take upload has no counted batches or known unit barcodes");
+        }
+        
+        List<Long> batchIds = new ArrayList<>(counts.keySet());
+        List<Integer> quantities = new ArrayList<>(counts.values());
+        List<BatchRepositoryCustom.StockCount> compared = new ArrayList<>();
+        for (int from = 0; from < batchIds.size(); from += CHUNK_SIZE) {
+            int to = Math.min(from + CHUNK_SIZE, batchIds.size());
+            compared.addAll(batchRepository.reconcileCounts(batchIds.subList(from, to), quantities.subList(from, to), !dryRun));
+        }
+        
+        Set<Long> found = compared.stream().map(BatchRepositoryCustom.StockCount::batchId).collect(Collectors.toSet());
+        List<Long> unknownBatchIds = batchIds.stream().filter(id -> !found.contains(id)).toList();
+        List<BatchRepositoryCustom.StockCount> differences = compared.stream()
+                .filter(count -> count.difference() != 0)
+                .toList();
+        int unitsAdded = differences.stream().mapToInt(count -> Math.max(0, count.difference())).sum();
+        int unitsRemoved = differences.stream().mapToInt(count -> Math.max(0, -count.difference())).sum();
+        
+        String sessionId = UUID.randomUUID().toString();
+        if (!dryRun) {
+            for (BatchRepositoryCustom.StockCount count : differences) {
+                unitBarcodeIndex.batchQuantityChanged(count.batchId(), count.countedQuantity());
+                fifoBatchIndex.batchQuantityChanged(count.batchId(), count.countedQuantity());
+                stockLedger.record(count.batchId(), StockMovement.MovementType.ADJUSTMENT, count.difference(), sessionId);
+            }
+            auditService.log(AuditLog.ActionType.STOCK_ADJUSTED, user, "StockTake", sessionId,
+                    "Stock take: " + compared.size() + " batches counted, " + differences.size() + " adjusted (+" +
+                            unitsAdded + " / -" + unitsRemoved + " units)",
+                    null, differences.stream()
+                            .map(count -> count.batchNumber() + " (id " + count.batchId() + "): " +
+                                    count.expectedQuantity() + " -> " + count.countedQuantity())
+                            .collect(Collectors.joining("\n")),
+                    httpRequest);
+        }
+        
+        return StockTakeResponse.builder()
+                .sessionId(sessionId)
+                .dryRun(dryRun)
+                .linesRead(linesRead)
+                .batchesCounted(compared.size())
+                .batchesAdjusted(differences.size())
+                .unitsAdded(unitsAdded)
+                .unitsRemoved(unitsRemoved)
+                .unknownBatchIds(unknownBatchIds)
+                .unknownBarcodes(unknownBarcodes)
+                .adjustments(differences.stream()
+                        .map(count -> StockTakeResponse.Adjustment.builder()
+                                .batchId(count.batchId())
+                                .batchNumber(count.batchNumber())
+                                .expectedQuantity(count.expectedQuantity())
+                                .countedQuantity(count.countedQuantity())
+                                .difference(count.difference())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+    
+    private int parse(BufferedReader csv, Map<Long, Integer> counts, Set<String> scanned) {
+        int lineNumber = 0;
+        try {
+            String line;
+            while ((line = csv.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length == 1) {
+                    scanned.add(fields[0]);
+                } else if (fields.length == 2) {
+                    Long batchId = parseNumber(fields[0].trim());
+                    Long quantity = parseNumber(fields[1].trim());
+                    if (batchId == null || quantity == null) {
+                        if (lineNumber == 1) {
+                            continue;  // Header
+                        }
+                        throw new RuntimeException("Line " + lineNumber + ": expected batchId,countedQuantity");
+                    }
+                    if (quantity < 0 || quantity > Integer.MAX_VALUE) {
+                        throw new RuntimeException("Line " + lineNumber + ": counted quantity out of range");
+                    }
+                    counts.merge(batchId, quantity.intValue(), Math::addExact);
+                } else {
+                    throw new RuntimeException("Line " + lineNumber + ": expected batchId,countedQuantity or a unit barcode");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read stock take upload: " + e.getMessage(), e);
+        }
+        return lineNumber;
+    }
+    
+    private static Long parseNumber(String field) {
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Adds one unit per scanned barcode to its batch's count; returns the barcodes no batch knows
+     */
+    private List<String> countScannedUnits(Set<String> scanned, Map<Long, Integer> counts) {
+        List<String> misses = new ArrayList<>();
+        for (String barcode : scanned) {
+            UnitBarcodeIndex.UnitLocation unit = unitBarcodeIndex.find(barcode);
+            if (unit != null) {
+                counts.merge(unit.batchId(), 1, Integer::sum);
+            } else {
+                misses.add(barcode);
+            }
+        }
+        
+        Set<String> resolved = new LinkedHashSet<>();
+        for (int from = 0; from < misses.size(); from += CHUNK_SIZE) {
+            for (Object[] row : stockBarcodeRepository.findBatchIdsByBarcodes(
+                    misses.subList(from, Math.min(from + CHUNK_SIZE, misses.size())))) {
+                resolved.add((String) row[0]);
+                counts.merge((Long) row[1], 1, Integer::sum);
+            }
+        }
+        
+        // What no unit row knows may still be a serial in a stored range
+        List<String> unknown = new ArrayList<>();
+        for (String barcode : misses) {
+            if (resolved.contains(barcode)) {
+                continue;
+            }
+            StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+            Optional<StockBarcodeRange> range = serial == null ? Optional.empty()
+                    : stockBarcodeRangeRepository.findContaining(serial.prefix(), serial.width(), serial.value());
+            if (range.isPresent()) {
+                counts.merge(range.get().getBatch().getId(), 1, Integer::sum);
+            } else {
+                unknown.add(barcode);
+            }
+        }
+        return unknown;
+    }
+}
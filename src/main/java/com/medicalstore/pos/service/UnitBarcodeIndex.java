@@ -0,0 +1,306 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.StockBarcode;
+import com.medicalstore.pos.entity.StockBarcodeRange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of unit barcodes for scan lookups.
+ * Each barcode maps to (batch id, ordinal) packed into one long; each batch keeps a bitset
+ * of sold ordinals plus the fields a scan checks (medicine, expiry, quantity).
+ * Serial ranges are kept per (width, prefix) in a TreeMap keyed by start serial, with their bitmaps.
+ * Loaded once at startup and updated after commit by BatchService and StockBarcodeService.
+ * The index is per node: callers treat a miss or a sold unit as "ask the database",
+ * and the sale itself still validates stock under the batch row lock.
+ */
+@Slf4j
+@Component
+public class UnitBarcodeIndex {
+    
+    private static final int ORDINAL_BITS = 24;
+    private static final int MAX_ORDINAL = (1 << ORDINAL_BITS) - 1;
+    private static final int FETCH_SIZE = 10_000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Runnable> pending = new ArrayList<>();
+    private Map<Long, BatchUnits> batches = new HashMap<>();
+    private BarcodeTable barcodes = new BarcodeTable(0);
+    private Map<String, TreeMap<Long, RangeUnits>> ranges = new HashMap<>();
+    private boolean loaded;
+    
+    public UnitBarcodeIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Where a unit barcode lives and the batch state needed to accept a scan
+     */
+    public record UnitLocation(long batchId, long medicineId, LocalDate expiryDate,
+                               int quantityAvailable, boolean sold) {
+        
+        public boolean isExpired() {
+            return Batch.ExpiryStatus.of(expiryDate, LocalDate.now()) == Batch.ExpiryStatus.EXPIRED;
+        }
+    }
+    
+    /**
+     * Looks up a unit barcode, or returns null when the index has not loaded yet or does not know it
+     */
+    public UnitLocation find(String barcode) {
+        lock.readLock().lock();
+        try {
+            if (!loaded) {
+                return null;
+            }
+            long packed = barcodes.get(barcode);
+            if (packed == BarcodeTable.ABSENT) {
+                return findInRange(barcode);
+            }
+            BatchUnits batch = batches.get(packed >>> ORDINAL_BITS);
+            if (batch == null) {
+                return null;
+            }
+            return new UnitLocation(packed >>> ORDINAL_BITS, batch.medicineId, batch.expiryDate,
+                    batch.quantityAvailable, batch.sold.get((int) (packed & MAX_ORDINAL)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private UnitLocation findInRange(String barcode) {
+        StockBarcodeRange.Serial serial = StockBarcodeRange.Serial.parse(barcode);
+        TreeMap<Long, RangeUnits> candidates = serial == null ? null : ranges.get(rangeKey(serial.prefix(), serial.width()));
+        Map.Entry<Long, RangeUnits> entry = candidates == null ? null : candidates.floorEntry(serial.value());
+        if (entry == null || serial.value() > entry.getValue().endSerial) {
+            return null;
+        }
+        RangeUnits range = entry.getValue();
+        int offset = (int) (serial.value() - range.startSerial);
+        BatchUnits batch = batches.get(range.batchId);
+        if (batch == null || range.removed.get(offset)) {
+            return null;
+        }
+        return new UnitLocation(range.batchId, batch.medicineId, batch.expiryDate,
+                batch.quantityAvailable, range.sold.get(offset));
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return barcodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.nanoTime();
+        Map<Long, BatchUnits> loadedBatches = new HashMap<>();
+        jdbcTemplate.query("SELECT id, medicine_id, expiry_date, quantity_available FROM batches", rs -> {
+            loadedBatches.put(rs.getLong(1), new BatchUnits(rs.getLong(2),
+                    rs.getDate(3).toLocalDate(), rs.getInt(4)));
+        });
+        
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_barcodes", Long.class);
+        BarcodeTable table = new BarcodeTable(count != null ? count.intValue() : 0);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT batch_id, barcode, sold FROM stock_barcodes");
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            BatchUnits batch = loadedBatches.get(rs.getLong(1));
+            if (batch != null) {
+                batch.add(table, rs.getLong(1), rs.getString(2), rs.getBoolean(3));
+            }
+        });
+        
+        Map<String, TreeMap<Long, RangeUnits>> loadedRanges = new HashMap<>();
+        jdbcTemplate.query("SELECT id, batch_id, prefix, serial_width, start_serial, end_serial, " +
+                "sold_units, removed_units FROM stock_barcode_ranges", rs -> {
+            RangeUnits range = new RangeUnits(rs.getLong(1), rs.getLong(2), rs.getLong(5), rs.getLong(6),
+                    BitSet.valueOf(rs.getBytes(7)), BitSet.valueOf(rs.getBytes(8)));
+            loadedRanges.computeIfAbsent(rangeKey(rs.getString(3), rs.getInt(4)), key -> new TreeMap<>())
+                    .put(range.startSerial, range);
+        });
+        
+        lock.writeLock().lock();
+        try {
+            batches = loadedBatches;
+            barcodes = table;
+            ranges = loadedRanges;
+            loaded = true;
+            // Changes committed while loading; replaying is idempotent
+            pending.forEach(Runnable::run);
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Unit barcode index loaded: {} barcodes and {} ranges in {} batches ({} ms)", table.size(),
+                loadedRanges.values().stream().mapToInt(Map::size).sum(), loadedBatches.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    
+    /**
+     * Records the current expiry and quantity of a batch once the transaction commits
+     */
+    public void batchSaved(Batch batch) {
+        long batchId = batch.getId();
+        long medicineId = batch.getMedicine().getId();
+        LocalDate expiryDate = batch.getExpiryDate();
+        int quantityAvailable = batch.getQuantityAvailable();
+        afterCommit(() -> {
+            BatchUnits units = batches.get(batchId);
+            if (units == null) {
+                batches.put(batchId, new BatchUnits(medicineId, expiryDate, quantityAvailable));
+            } else {
+                units.expiryDate = expiryDate;
+                units.quantityAvailable = quantityAvailable;
+            }
+        });
+    }
+    
+    public void batchDeleted(Long batchId) {
+        afterCommit(() -> batches.remove(batchId));
+    }
+    
+    public void unitsAdded(Batch batch, List<StockBarcode> units) {
+        long batchId = batch.getId();
+        List<String> added = units.stream().map(StockBarcode::getBarcode).toList();
+        afterCommit(() -> {
+            BatchUnits batchUnits = batches.get(batchId);
+            if (batchUnits != null) {
+                added.forEach(barcode -> batchUnits.add(barcodes, batchId, barcode, false));
+            }
+        });
+    }
+    
+    public void unitsRemoved(Collection<String> removed) {
+        List<String> copy = List.copyOf(removed);
+        afterCommit(() -> copy.forEach(barcodes::remove));
+    }
+    
+    public void unitSold(String barcode, boolean sold) {
+        unitsSold(List.of(barcode), sold);
+    }
+    
+    public void unitsSold(Collection<String> units, boolean sold) {
+        List<String> copy = List.copyOf(units);
+        afterCommit(() -> copy.forEach(barcode -> {
+            long packed = barcodes.get(barcode);
+            BatchUnits batch = packed == BarcodeTable.ABSENT ? null : batches.get(packed >>> ORDINAL_BITS);
+            if (batch != null) {
+                batch.sold.set((int) (packed & MAX_ORDINAL), sold);
+            }
+        }));
+    }
+    
+    public void batchQuantityChanged(long batchId, int quantityAvailable) {
+        afterCommit(() -> {
+            BatchUnits batch = batches.get(batchId);
+            if (batch != null) {
+                batch.quantityAvailable = quantityAvailable;
+            }
+        });
+    }
+    
+    /**
+     * Records a range's current sold/removed bitmaps once the transaction commits
+     */
+    public void rangeSaved(StockBarcodeRange range) {
+        String key = rangeKey(range.getPrefix(), range.getSerialWidth());
+        RangeUnits units = new RangeUnits(range.getId(), range.getBatch().getId(), range.getStartSerial(),
+                range.getEndSerial(), BitSet.valueOf(range.getSoldUnits()), BitSet.valueOf(range.getRemovedUnits()));
+        afterCommit(() -> ranges.computeIfAbsent(key, k -> new TreeMap<>()).put(units.startSerial, units));
+    }
+    
+    public void rangeDeleted(StockBarcodeRange range) {
+        String key = rangeKey(range.getPrefix(), range.getSerialWidth());
+        long startSerial = range.getStartSerial();
+        afterCommit(() -> {
+            TreeMap<Long, RangeUnits> candidates = ranges.get(key);
+            if (candidates != null) {
+                candidates.remove(startSerial);
+            }
+        });
+    }
+    
+    private static String rangeKey(String prefix, int width) {
+        return width + ":" + prefix;
+    }
+    
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+    
+    private void apply(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                change.run();
+            } else {
+                pending.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private record RangeUnits(long id, long batchId, long startSerial, long endSerial,
+                              BitSet sold, BitSet removed) {
+    }
+    
+    private static class BatchUnits {
+        private final long medicineId;
+        private final BitSet sold = new BitSet();
+        private LocalDate expiryDate;
+        private int quantityAvailable;
+        private int units;
+        
+        BatchUnits(long medicineId, LocalDate expiryDate, int quantityAvailable) {
+            this.medicineId = medicineId;
+            this.expiryDate = expiryDate;
+            this.quantityAvailable = quantityAvailable;
+        }
+        
+        void add(BarcodeTable table, long batchId, String barcode, boolean isSold) {
+            if (table.get(barcode) != BarcodeTable.ABSENT || units > MAX_ORDINAL) {
+                return;
+            }
+            int ordinal = units++;
+            sold.set(ordinal, isSold);
+            table.put(barcode, (batchId << ORDINAL_BITS) | ordinal);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+-- Daily sales and GST rollups maintained by SalesRollup; the sales and GST reports read only these.
+-- Each day is split into 16 stripes by bill id (SalesRollup.STRIPES) so concurrent checkouts rarely
+-- share a row. Needed on every database, and before deploying: the backfill below rebuilds the rollups
+-- from existing bills and returns, so running it while bills are being taken would lose their updates.
+-- Return items don't record the GST rate they were sold at, so backfilled credit notes use the medicine's current rate.
+
+CREATE TABLE IF NOT EXISTS daily_sales_rollups (
+    sales_date DATE           NOT NULL,
+    stripe     INTEGER        NOT NULL,
+    bills      INTEGER        NOT NULL DEFAULT 0,
+    sales      NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    gst        NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    returns    INTEGER        NOT NULL DEFAULT 0,
+    refunds    NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    refund_gst NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sales_date, stripe)
+);
+
+CREATE TABLE IF NOT EXISTS daily_gst_rollups (
+    sales_date     DATE           NOT NULL,
+    hsn_code       VARCHAR(20)    NOT NULL,
+    gst_percentage NUMERIC(5, 2)  NOT NULL,
+    entry_type     VARCHAR(20)    NOT NULL,
+    stripe         INTEGER        NOT NULL,
+    quantity       INTEGER        NOT NULL DEFAULT 0,
+    taxable_amount NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    gst_amount     NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sales_date, hsn_code, gst_percentage, entry_type, stripe)
+);
+
+TRUNCATE daily_sales_rollups, daily_gst_rollups;
+
+CREATE TEMPORARY VIEW credit_notes AS
+SELECT r.id AS return_id, r.return_date::date AS sales_date, r.original_bill_id % 16 AS stripe,
+       m.hsn_code, m.gst_percentage, ri.quantity, ri.refund_amount,
+       ROUND(ri.refund_amount * m.gst_percentage / (100 + m.gst_percentage), 2) AS gst
+FROM return_items ri
+JOIN returns r ON r.id = ri.return_id
+JOIN medicines m ON m.id = ri.medicine_id;
+
+INSERT INTO daily_sales_rollups (sales_date, stripe, bills, sales, gst, returns, refunds, refund_gst)
+SELECT sales_date, stripe, SUM(bills), SUM(sales), SUM(gst), SUM(returns), SUM(refunds), SUM(refund_gst)
+FROM (
+    SELECT b.bill_date::date AS sales_date, b.id % 16 AS stripe, 1 AS bills, b.total_amount AS sales,
+           b.total_gst AS gst, 0 AS returns, 0 AS refunds, 0 AS refund_gst
+    FROM bills b
+    WHERE NOT b.cancelled
+    UNION ALL
+    SELECT r.return_date::date, r.original_bill_id % 16, 0, 0, 0, 1, r.refund_amount,
+           COALESCE((SELECT SUM(c.gst) FROM credit_notes c WHERE c.return_id = r.id), 0)
+    FROM returns r
+) t
+GROUP BY sales_date, stripe;
+
+INSERT INTO daily_gst_rollups (sales_date, hsn_code, gst_percentage, entry_type, stripe, quantity, taxable_amount, gst_amount)
+SELECT b.bill_date::date, m.hsn_code, bi.gst_percentage, 'SALE', b.id % 16,
+       SUM(bi.quantity), SUM(bi.unit_price * bi.quantity), SUM(bi.gst_amount)
+FROM bill_items bi
+JOIN bills b ON b.id = bi.bill_id
+JOIN medicines m ON m.id = bi.medicine_id
+WHERE NOT b.cancelled
+GROUP BY b.bill_date::date, m.hsn_code, bi.gst_percentage, b.id % 16;
+
+INSERT INTO daily_gst_rollups (sales_date, hsn_code, gst_percentage, entry_type, stripe, quantity, taxable_amount, gst_amount)
+SELECT sales_date, hsn_code, gst_percentage, 'CREDIT_NOTE', stripe,
+       SUM(quantity), SUM(refund_amount - gst), SUM(gst)
+FROM credit_notes
+GROUP BY sales_date, hsn_code, gst_percentage, stripe;
+
+DROP VIEW credit_notes;
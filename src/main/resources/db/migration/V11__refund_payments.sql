@@ -0,0 +1,19 @@
+-- Refunds are payments: a REFUND row with a negative amount per return, linked to it, so summing
+-- payments by mode gives net takings. Needed on every database with existing payments: the type
+-- column is NOT NULL. Existing returns get their refund row, in the mode of the bill's largest payment.
+
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS type VARCHAR(20) NOT NULL DEFAULT 'SALE';
+ALTER TABLE payments
+    ADD COLUMN IF NOT EXISTS return_id BIGINT CONSTRAINT fk_payment_return REFERENCES returns (id);
+
+-- Each row takes a whole pooled block from payments_seq, so its id never collides with Hibernate's
+INSERT INTO payments (id, bill_id, return_id, type, payment_reference, mode, amount, status, payment_date, created_at)
+SELECT nextval('payments_seq'), r.original_bill_id, r.id, 'REFUND', 'RF-' || r.return_number,
+       COALESCE((SELECT p.mode FROM payments p
+                 WHERE p.bill_id = r.original_bill_id AND p.type = 'SALE' AND p.status = 'COMPLETED'
+                 ORDER BY p.amount DESC, p.id LIMIT 1), 'CASH'),
+       -r.refund_amount, 'COMPLETED', r.return_date, now()
+FROM returns r
+WHERE r.refund_amount <> 0
+  AND NOT EXISTS (SELECT 1 FROM payments p WHERE p.return_id = r.id)
+ORDER BY r.id;
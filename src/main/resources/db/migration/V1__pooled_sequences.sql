@@ -0,0 +1,39 @@
+-- Switches high-volume tables from IDENTITY columns to pooled sequences (allocationSize 50).
+-- Run once against existing databases before deploying; new schemas created by Hibernate already match.
+-- Each sequence starts one full block above the current max id so pooled ranges never overlap existing rows.
+
+CREATE SEQUENCE IF NOT EXISTS bills_seq INCREMENT BY 50;
+SELECT setval('bills_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM bills), false);
+ALTER TABLE bills ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bills ALTER COLUMN id SET DEFAULT nextval('bills_seq');
+ALTER SEQUENCE bills_seq OWNED BY bills.id;
+
+CREATE SEQUENCE IF NOT EXISTS bill_items_seq INCREMENT BY 50;
+SELECT setval('bill_items_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM bill_items), false);
+ALTER TABLE bill_items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bill_items ALTER COLUMN id SET DEFAULT nextval('bill_items_seq');
+ALTER SEQUENCE bill_items_seq OWNED BY bill_items.id;
+
+CREATE SEQUENCE IF NOT EXISTS payments_seq INCREMENT BY 50;
+SELECT setval('payments_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM payments), false);
+ALTER TABLE payments ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE payments ALTER COLUMN id SET DEFAULT nextval('payments_seq');
+ALTER SEQUENCE payments_seq OWNED BY payments.id;
+
+CREATE SEQUENCE IF NOT EXISTS stock_barcodes_seq INCREMENT BY 50;
+SELECT setval('stock_barcodes_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM stock_barcodes), false);
+ALTER TABLE stock_barcodes ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE stock_barcodes ALTER COLUMN id SET DEFAULT nextval('stock_barcodes_seq');
+ALTER SEQUENCE stock_barcodes_seq OWNED BY stock_barcodes.id;
+
+CREATE SEQUENCE IF NOT EXISTS audit_logs_seq INCREMENT BY 50;
+SELECT setval('audit_logs_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM audit_logs), false);
+ALTER TABLE audit_logs ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE audit_logs ALTER COLUMN id SET DEFAULT nextval('audit_logs_seq');
+ALTER SEQUENCE audit_logs_seq OWNED BY audit_logs.id;
+
+CREATE SEQUENCE IF NOT EXISTS return_items_seq INCREMENT BY 50;
+SELECT setval('return_items_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM return_items), false);
+ALTER TABLE return_items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE return_items ALTER COLUMN id SET DEFAULT nextval('return_items_seq');
+ALTER SEQUENCE return_items_seq OWNED BY return_items.id;
@@ -0,0 +1,8 @@
+-- Prefix search over available unit barcodes (StockBarcodeRepository.findAvailableMedicineIdsByBarcodePrefix).
+-- Matches UPPER(barcode) LIKE 'PREFIX%' with text_pattern_ops, independent of the database collation,
+-- and only covers unsold units. Hibernate cannot declare expression indexes, so run this on every database.
+-- CONCURRENTLY avoids blocking barcode inserts; psql runs it outside a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_barcode_upper_available
+    ON stock_barcodes (UPPER(barcode) text_pattern_ops)
+    WHERE sold = false;
@@ -0,0 +1,24 @@
+-- Sequential unit barcodes stored as one row per range (StockBarcodeRange), with sold/removed bitmaps.
+-- Databases running with DDL_AUTO=update get the table from Hibernate; the pattern index is needed everywhere.
+
+CREATE TABLE IF NOT EXISTS stock_barcode_ranges (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    batch_id BIGINT NOT NULL CONSTRAINT fk_barcode_range_batch REFERENCES batches (id),
+    prefix VARCHAR(100) NOT NULL,
+    serial_width INTEGER NOT NULL,
+    start_serial BIGINT NOT NULL,
+    end_serial BIGINT NOT NULL,
+    sold_units BYTEA NOT NULL,
+    removed_units BYTEA NOT NULL,
+    sold_count INTEGER NOT NULL,
+    removed_count INTEGER NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    updated_at TIMESTAMP(6),
+    version BIGINT
+);
+
+CREATE INDEX IF NOT EXISTS idx_barcode_range_lookup ON stock_barcode_ranges (prefix, serial_width, start_serial);
+CREATE INDEX IF NOT EXISTS idx_barcode_range_batch ON stock_barcode_ranges (batch_id);
+
+-- Bytewise range scans (~>=~ / ~<=~) when checking a new range against individual rows
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_barcode_pattern ON stock_barcodes (barcode text_pattern_ops);
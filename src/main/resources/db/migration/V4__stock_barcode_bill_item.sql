@@ -0,0 +1,5 @@
+-- Links a sold unit barcode to the bill item it was sold on, so a return can restore exactly those units.
+-- Databases running with DDL_AUTO=update get the column from Hibernate.
+
+ALTER TABLE stock_barcodes
+    ADD COLUMN IF NOT EXISTS bill_item_id BIGINT CONSTRAINT fk_barcode_bill_item REFERENCES bill_items (id);
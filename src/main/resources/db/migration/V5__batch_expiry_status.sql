@@ -0,0 +1,15 @@
+-- Expiry bucket per batch, maintained by ExpirySweepService (nightly and on start) and on every batch save.
+-- Needed on every database: the column is NOT NULL, so existing rows must be backfilled.
+
+ALTER TABLE batches ADD COLUMN IF NOT EXISTS expiry_status VARCHAR(20);
+
+UPDATE batches SET expiry_status = CASE
+    WHEN expiry_date <= CURRENT_DATE THEN 'EXPIRED'
+    WHEN expiry_date <= CURRENT_DATE + 30 THEN 'EXPIRING_30'
+    WHEN expiry_date <= CURRENT_DATE + 90 THEN 'EXPIRING_90'
+    ELSE 'OK' END
+WHERE expiry_status IS NULL;
+
+ALTER TABLE batches ALTER COLUMN expiry_status SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_batch_expiry_status ON batches (expiry_status);
@@ -0,0 +1,24 @@
+-- Append-only stock movement ledger written by StockLedger; a batch's quantity_available is the sum of its movements.
+-- Needed on every database: the opening balances below must exist before the first movement is recorded.
+
+CREATE TABLE IF NOT EXISTS stock_movements (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    batch_id    BIGINT         NOT NULL,
+    medicine_id BIGINT         NOT NULL,
+    type        VARCHAR(20)    NOT NULL,
+    quantity    INTEGER        NOT NULL,
+    unit_cost   NUMERIC(10, 2) NOT NULL,
+    reference   VARCHAR(100),
+    created_at  TIMESTAMP      NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_movement_batch ON stock_movements (batch_id);
+CREATE INDEX IF NOT EXISTS idx_stock_movement_medicine_time ON stock_movements (medicine_id, created_at);
+
+-- Opening balance per batch, skipped for batches that already have movements
+INSERT INTO stock_movements (batch_id, medicine_id, type, quantity, unit_cost, reference, created_at)
+SELECT b.id, b.medicine_id, 'OPENING', b.quantity_available, b.purchase_price, b.batch_number, now()
+FROM batches b
+WHERE b.quantity_available <> 0
+  AND NOT EXISTS (SELECT 1 FROM stock_movements m WHERE m.batch_id = b.id)
+ORDER BY b.id;
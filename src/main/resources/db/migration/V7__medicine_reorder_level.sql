@@ -0,0 +1,4 @@
+-- Per-medicine reorder level: available stock at or below it counts as low stock.
+-- Needed on every database with existing medicines: the column is NOT NULL.
+
+ALTER TABLE medicines ADD COLUMN IF NOT EXISTS reorder_level INTEGER NOT NULL DEFAULT 10;
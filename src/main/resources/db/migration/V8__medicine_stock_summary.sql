@@ -0,0 +1,18 @@
+-- Stock summary columns on medicines, kept current by StockLedger (every stock change) and the expiry sweep.
+-- Needed on every database: the columns are NOT NULL and existing medicines are backfilled from their batches.
+
+ALTER TABLE medicines ADD COLUMN IF NOT EXISTS total_stock INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE medicines ADD COLUMN IF NOT EXISTS available_stock INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE medicines ADD COLUMN IF NOT EXISTS expired_stock INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE medicines ADD COLUMN IF NOT EXISTS next_expiry_date DATE;
+
+UPDATE medicines m SET total_stock = s.total, available_stock = s.available,
+    expired_stock = s.total - s.available, next_expiry_date = s.next_expiry
+FROM (
+    SELECT medicine_id,
+        SUM(quantity_available) AS total,
+        COALESCE(SUM(quantity_available) FILTER (WHERE expiry_status <> 'EXPIRED'), 0) AS available,
+        MIN(expiry_date) FILTER (WHERE quantity_available > 0 AND expiry_status <> 'EXPIRED') AS next_expiry
+    FROM batches GROUP BY medicine_id
+) s
+WHERE m.id = s.medicine_id;
@@ -0,0 +1,23 @@
+-- Units returned so far per bill item, so a return is checked against what is left instead of summing
+-- return history. Needed on every database with existing bills: the column is NOT NULL.
+-- Return items don't reference the bill item they came from, so the backfill matches them by bill and batch
+-- and fills bill items of the same batch in id order.
+
+ALTER TABLE bill_items ADD COLUMN IF NOT EXISTS returned_quantity INTEGER NOT NULL DEFAULT 0;
+
+WITH returned AS (
+    SELECT r.original_bill_id AS bill_id, ri.batch_id, SUM(ri.quantity) AS quantity
+    FROM return_items ri
+    JOIN returns r ON r.id = ri.return_id
+    GROUP BY r.original_bill_id, ri.batch_id
+), filled AS (
+    SELECT bi.id, rt.quantity - COALESCE(SUM(bi.quantity) OVER (
+               PARTITION BY bi.bill_id, bi.batch_id ORDER BY bi.id
+               ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0) AS remaining
+    FROM bill_items bi
+    JOIN returned rt ON rt.bill_id = bi.bill_id AND rt.batch_id = bi.batch_id
+)
+UPDATE bill_items bi
+SET returned_quantity = LEAST(bi.quantity, GREATEST(f.remaining, 0))
+FROM filled f
+WHERE bi.id = f.id;
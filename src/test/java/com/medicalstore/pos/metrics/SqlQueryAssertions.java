@@ -0,0 +1,84 @@
+package com.medicalstore.pos.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query count assertions for tests, so N+1 regressions fail the build:
+ * <pre>
+ * try (SqlQueryAssertions sql = SqlQueryAssertions.start()) {
+ *     reportingService.getStockReport();
+ *     sql.assertStatementsAtMost(3);
+ *     sql.assertNoRepeatedShapes(1);
+ * }
+ * </pre>
+ * Counts statements issued through Hibernate on the calling thread only.
+ */
+public final class SqlQueryAssertions implements AutoCloseable {
+    
+    private final SqlStatementCounter.Counts counts;
+    private boolean closed;
+    
+    private SqlQueryAssertions(SqlStatementCounter.Counts counts) {
+        this.counts = counts;
+    }
+    
+    public static SqlQueryAssertions start() {
+        return new SqlQueryAssertions(SqlStatementCounter.begin());
+    }
+    
+    public int getStatements() {
+        return counts.getStatements();
+    }
+    
+    public int getEntityLoads() {
+        return counts.getEntityLoads();
+    }
+    
+    public SqlQueryAssertions assertStatementsAtMost(int max) {
+        if (counts.getStatements() > max) {
+            throw new AssertionError("Expected at most " + max + " SQL statements but " +
+                    counts.getStatements() + " were executed" + describeRepeats(2));
+        }
+        return this;
+    }
+    
+    public SqlQueryAssertions assertEntityLoadsAtMost(int max) {
+        if (counts.getEntityLoads() > max) {
+            throw new AssertionError("Expected at most " + max + " entity loads but " +
+                    counts.getEntityLoads() + " were loaded");
+        }
+        return this;
+    }
+    
+    /**
+     * Fails when any statement shape runs more than maxRepeats times (N+1 detection);
+     * 1 means every shape may run once.
+     */
+    public SqlQueryAssertions assertNoRepeatedShapes(int maxRepeats) {
+        if (!counts.getRepeatedShapes(maxRepeats + 1).isEmpty()) {
+            throw new AssertionError("Repeated SQL statements detected" + describeRepeats(maxRepeats + 1));
+        }
+        return this;
+    }
+    
+    private String describeRepeats(int minCount) {
+        List<Map.Entry<String, Integer>> repeated = counts.getRepeatedShapes(minCount);
+        if (repeated.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(":");
+        for (Map.Entry<String, Integer> entry : repeated) {
+            sb.append("\n  ").append(entry.getValue()).append("x ").append(entry.getKey());
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            SqlStatementCounter.end();
+        }
+    }
+}
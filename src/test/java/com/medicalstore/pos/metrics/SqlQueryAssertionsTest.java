@@ -0,0 +1,55 @@
+package com.medicalstore.pos.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SqlQueryAssertionsTest {
+    
+    @Test
+    void repeatsUpToTheLimitPass() {
+        try (SqlQueryAssertions sql = SqlQueryAssertions.start()) {
+            SqlStatementCounter.recordStatement("select * from batches where medicine_id = 1");
+            SqlStatementCounter.recordStatement("select * from batches where medicine_id = 2");
+            
+            assertThatCode(() -> sql.assertNoRepeatedShapes(2)).doesNotThrowAnyException();
+        }
+    }
+    
+    @Test
+    void repeatsAboveTheLimitFail() {
+        try (SqlQueryAssertions sql = SqlQueryAssertions.start()) {
+            SqlStatementCounter.recordStatement("select * from medicines");
+            SqlStatementCounter.recordStatement("select * from batches where medicine_id = 1");
+            SqlStatementCounter.recordStatement("select * from batches where medicine_id = 2");
+            
+            assertThatCode(() -> sql.assertNoRepeatedShapes(2)).doesNotThrowAnyException();
+            assertThatThrownBy(() -> sql.assertNoRepeatedShapes(1))
+                    .isInstanceOf(AssertionError.class)
+                    .hasMessageContaining("2x select * from batches where medicine_id = ?");
+        }
+    }
+    
+    @Test
+    void statementBudget() {
+        try (SqlQueryAssertions sql = SqlQueryAssertions.start()) {
+            SqlStatementCounter.recordStatement("select * from medicines");
+            SqlStatementCounter.recordStatement("select * from batches");
+            
+            assertThatCode(() -> sql.assertStatementsAtMost(2)).doesNotThrowAnyException();
+            assertThatThrownBy(() -> sql.assertStatementsAtMost(1))
+                    .isInstanceOf(AssertionError.class)
+                    .hasMessageContaining("2 were executed");
+        }
+    }
+    
+    @Test
+    void nothingIsCountedAfterClose() {
+        SqlQueryAssertions sql = SqlQueryAssertions.start();
+        sql.close();
+        SqlStatementCounter.recordStatement("select * from medicines");
+        
+        assertThatCode(() -> sql.assertStatementsAtMost(0)).doesNotThrowAnyException();
+    }
+}
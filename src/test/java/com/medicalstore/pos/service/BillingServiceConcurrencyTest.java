@@ -0,0 +1,135 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.dto.request.BillItemRequest;
+import com.medicalstore.pos.dto.request.CreateBillRequest;
+import com.medicalstore.pos.dto.request.PaymentRequest;
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.Medicine;
+import com.medicalstore.pos.entity.Payment;
+import com.medicalstore.pos.entity.User;
+import com.medicalstore.pos.repository.BatchRepository;
+import com.medicalstore.pos.repository.BillRepository;
+import com.medicalstore.pos.repository.MedicineRepository;
+import com.medicalstore.pos.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Overlapping checkouts of one medicine: both must commit and leave its stock summary right
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "pos.sql-budget.enabled=false"
+})
+class BillingServiceConcurrencyTest {
+    
+    // Stopped by Testcontainers when the JVM exits
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    static {
+        POSTGRES.start();
+    }
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+    
+    @Autowired
+    private BillingService billingService;
+    
+    @Autowired
+    private MedicineRepository medicineRepository;
+    
+    @Autowired
+    private BatchRepository batchRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @SpyBean
+    private BillRepository billRepository;
+    
+    @Test
+    void overlappingBillsOnOneMedicineBothCommit() throws Exception {
+        Medicine medicine = medicineRepository.save(Medicine.builder()
+                .name("Paracetamol 500")
+                .manufacturer("Maker")
+                .hsnCode("300490")
+                .gstPercentage(new BigDecimal("12.00"))
+                .build());
+        // The first bill empties the early batch, so the second one has to sell from the later batch
+        batchRepository.save(batch(medicine, "EARLY", LocalDate.now().plusMonths(3), 3));
+        batchRepository.save(batch(medicine, "LATE", LocalDate.now().plusMonths(6), 10));
+        User cashier = userRepository.findByUsername("cashier").orElseThrow();
+        
+        // Hold the first bill open after its first statement until the second bill has committed
+        CountDownLatch firstBillStarted = new CountDownLatch(1);
+        CountDownLatch secondBillCommitted = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            Object maxSequence = invocation.callRealMethod();
+            if (first.getAndSet(false)) {
+                firstBillStarted.countDown();
+                secondBillCommitted.await(30, TimeUnit.SECONDS);
+                // Keeps the two bill numbers apart; numbering is not under test
+                return 100L;
+            }
+            return maxSequence;
+        }).when(billRepository).findMaxBillNumberSequence(anyString());
+        
+        CompletableFuture<?> firstBill = CompletableFuture.runAsync(
+                () -> billingService.createBill(request(medicine, 3), cashier, null));
+        assertThat(firstBillStarted.await(30, TimeUnit.SECONDS)).isTrue();
+        billingService.createBill(request(medicine, 5), cashier, null);
+        secondBillCommitted.countDown();
+        firstBill.get(30, TimeUnit.SECONDS);
+        
+        Medicine summary = medicineRepository.findById(medicine.getId()).orElseThrow();
+        assertThat(summary.getTotalStock()).isEqualTo(5);
+        assertThat(summary.getAvailableStock()).isEqualTo(5);
+    }
+    
+    private static CreateBillRequest request(Medicine medicine, int quantity) {
+        BillItemRequest item = new BillItemRequest();
+        item.setMedicineId(medicine.getId());
+        item.setQuantity(quantity);
+        PaymentRequest payment = new PaymentRequest();
+        payment.setMode(Payment.PaymentMode.CASH);
+        payment.setAmount(new BigDecimal("1000.00"));
+        CreateBillRequest request = new CreateBillRequest();
+        request.setItems(List.of(item));
+        request.setPayments(List.of(payment));
+        return request;
+    }
+    
+    private static Batch batch(Medicine medicine, String batchNumber, LocalDate expiryDate, int quantity) {
+        return Batch.builder()
+                .medicine(medicine)
+                .batchNumber(batchNumber)
+                .expiryDate(expiryDate)
+                .purchasePrice(new BigDecimal("8.00"))
+                .sellingPrice(new BigDecimal("10.00"))
+                .quantityAvailable(quantity)
+                .build();
+    }
+}
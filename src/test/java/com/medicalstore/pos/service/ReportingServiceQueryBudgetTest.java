@@ -0,0 +1,134 @@
+package com.medicalstore.pos.service;
+
+import com.medicalstore.pos.dto.response.GstReportResponse;
+import com.medicalstore.pos.dto.response.StockReportResponse;
+import com.medicalstore.pos.entity.Batch;
+import com.medicalstore.pos.entity.Bill;
+import com.medicalstore.pos.entity.BillItem;
+import com.medicalstore.pos.entity.Medicine;
+import com.medicalstore.pos.metrics.SqlQueryAssertions;
+import com.medicalstore.pos.repository.BatchRepository;
+import com.medicalstore.pos.repository.MedicineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statement budgets for the reports, so a per-medicine or per-bill query fails the build
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "pos.sql-budget.enabled=false"
+})
+class ReportingServiceQueryBudgetTest {
+    
+    private static final int MEDICINES = 5;
+    
+    // Stopped by Testcontainers when the JVM exits
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+    
+    static {
+        POSTGRES.start();
+    }
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+    
+    @Autowired
+    private ReportingService reportingService;
+    
+    @Autowired
+    private MedicineRepository medicineRepository;
+    
+    @Autowired
+    private BatchRepository batchRepository;
+    
+    @Autowired
+    private SalesRollup salesRollup;
+    
+    @BeforeEach
+    void seed() {
+        if (medicineRepository.count() > 0) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        List<BillItem> items = new ArrayList<>();
+        for (int i = 0; i < MEDICINES; i++) {
+            Medicine medicine = medicineRepository.save(Medicine.builder()
+                    .name("Medicine " + i)
+                    .manufacturer("Maker")
+                    .hsnCode("30049" + i)
+                    .gstPercentage(new BigDecimal("12.00"))
+                    .build());
+            batchRepository.save(batch(medicine, "B" + i + "A", today.plusMonths(6), Batch.ExpiryStatus.OK));
+            batchRepository.save(batch(medicine, "B" + i + "X", today.minusDays(1), Batch.ExpiryStatus.EXPIRED));
+            items.add(BillItem.builder()
+                    .medicine(medicine)
+                    .quantity(2)
+                    .unitPrice(new BigDecimal("10.00"))
+                    .gstPercentage(new BigDecimal("12.00"))
+                    .gstAmount(new BigDecimal("2.40"))
+                    .build());
+        }
+        salesRollup.billCreated(Bill.builder()
+                .id(1L)
+                .billDate(LocalDateTime.now())
+                .totalAmount(new BigDecimal("112.00"))
+                .totalGst(new BigDecimal("12.00"))
+                .billItems(items)
+                .build());
+    }
+    
+    @Test
+    void stockReportReadsEachTableOnce() {
+        try (SqlQueryAssertions sql = SqlQueryAssertions.start()) {
+            StockReportResponse report = reportingService.getStockReport();
+            
+            assertThat(report.getTotalMedicines()).isEqualTo(MEDICINES);
+            assertThat(report.getTotalBatches()).isEqualTo(MEDICINES * 2);
+            assertThat(report.getExpiredStock()).hasSize(MEDICINES);
+            sql.assertStatementsAtMost(3).assertNoRepeatedShapes(1);
+        }
+    }
+    
+    @Test
+    void gstReportReadsOnlyTheRollups() {
+        try (SqlQueryAssertions sql = SqlQueryAssertions.start()) {
+            GstReportResponse report = reportingService.getGstReport(LocalDate.now(), LocalDate.now());
+            
+            assertThat(report.getGstBreakup()).hasSize(MEDICINES);
+            assertThat(report.getTotalGst()).isEqualByComparingTo("12.00");
+            // The rollups are read over JDBC, so no entity query or load may creep back in
+            sql.assertStatementsAtMost(0).assertEntityLoadsAtMost(0);
+        }
+    }
+    
+    private static Batch batch(Medicine medicine, String batchNumber, LocalDate expiryDate,
+                               Batch.ExpiryStatus expiryStatus) {
+        return Batch.builder()
+                .medicine(medicine)
+                .batchNumber(batchNumber)
+                .expiryDate(expiryDate)
+                .purchasePrice(new BigDecimal("8.00"))
+                .sellingPrice(new BigDecimal("10.00"))
+                .quantityAvailable(10)
+                .expiryStatus(expiryStatus)
+                .build();
+    }
+}